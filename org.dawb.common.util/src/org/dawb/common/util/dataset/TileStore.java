@@ -0,0 +1,250 @@
+/*
+ * Copyright (c) 2026 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.dawb.common.util.dataset;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import org.eclipse.january.IMonitor;
+import org.eclipse.january.dataset.Dataset;
+import org.eclipse.january.dataset.DatasetFactory;
+import org.eclipse.january.dataset.DatasetUtils;
+import org.eclipse.january.dataset.FloatDataset;
+import org.eclipse.january.dataset.IDataset;
+import org.eclipse.january.dataset.ILazyWriteableDataset;
+import org.eclipse.january.dataset.LazyWriteableDataset;
+import org.eclipse.january.dataset.SliceND;
+import org.eclipse.january.io.ILazyAsyncSaver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Scratch store for a stack of float images, such as the rotated tiles of a
+ * stitching or the images of an alignment, which are written once and read back
+ * by the next step of the processing.
+ *
+ * The stack is held off heap when it fits in the memory given, otherwise it is
+ * spilled to a temporary file which is memory mapped. Either way, slices are
+ * copied in place without going through an HDF5 file. The file of a store which
+ * is not closed is deleted once neither the store nor its datasets are reachable.
+ */
+public class TileStore implements ILazyAsyncSaver, Closeable {
+
+	private static final long serialVersionUID = 6254819322154082411L;
+
+	private static final Logger logger = LoggerFactory.getLogger(TileStore.class);
+
+	private static final Cleaner cleaner = Cleaner.create();
+
+	/**
+	 * Bytes held off heap before a store spills to a file, 256MB unless set
+	 * with the system property org.dawnsci.conversion.tileMemory.
+	 */
+	public static final long DEFAULT_MEMORY = Long.getLong("org.dawnsci.conversion.tileMemory", 256L*1024*1024);
+
+	/**
+	 * Floats per buffer, buffers are indexed by int.
+	 */
+	private static final int WINDOW = 1<<28;
+
+	private final int[]  shape;
+	private final long[] strides;
+	private final File   file;
+	private transient FloatBuffer[] buffers;
+	private transient Cleaner.Cleanable cleanable;
+
+	/**
+	 *
+	 * @param shape of the stack
+	 * @param memory bytes which may be held off heap, the stack is spilled to a file when larger
+	 * @throws IOException if the file cannot be created
+	 */
+	public TileStore(int[] shape, long memory) throws IOException {
+		if (shape.length == 0) throw new IllegalArgumentException("A tile store must have at least one dimension");
+		this.shape   = shape.clone();
+		this.strides = new long[shape.length];
+		long size = 1;
+		for (int i = shape.length-1; i >= 0; i--) {
+			strides[i] = size;
+			size *= shape[i];
+		}
+
+		buffers = new FloatBuffer[(int)((size+WINDOW-1)/WINDOW)];
+		File spill = null;
+		if (size*Float.BYTES <= memory) {
+			try {
+				for (int i = 0; i < buffers.length; i++) {
+					buffers[i] = ByteBuffer.allocateDirect(getLength(i, size)*Float.BYTES).order(ByteOrder.nativeOrder()).asFloatBuffer();
+				}
+			} catch (OutOfMemoryError ne) {
+				logger.warn("Cannot hold {} bytes off heap, spilling tiles to a file", size*Float.BYTES);
+				spill = map(size);
+			}
+		} else {
+			spill = map(size);
+		}
+		this.file = spill;
+		if (spill != null) cleanable = cleaner.register(this, new Delete(spill));
+	}
+
+	private int getLength(int window, long size) {
+		return (int)Math.min(WINDOW, size-(long)window*WINDOW);
+	}
+
+	private File map(long size) throws IOException {
+		final File spill = File.createTempFile("tiles", ".dat");
+		spill.deleteOnExit();
+		try (FileChannel channel = FileChannel.open(spill.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			for (int i = 0; i < buffers.length; i++) {
+				final long position = (long)i*WINDOW*Float.BYTES;
+				buffers[i] = channel.map(FileChannel.MapMode.READ_WRITE, position, (long)getLength(i, size)*Float.BYTES)
+						            .order(ByteOrder.nativeOrder()).asFloatBuffer();
+			}
+		}
+		return spill;
+	}
+
+	/**
+	 *
+	 * @param name of the dataset
+	 * @return a float dataset of the shape of the store, read and written through the store
+	 */
+	public ILazyWriteableDataset createLazyDataset(String name) {
+		final int[] chunks = shape.clone();
+		for (int i = 0; i < chunks.length-2; i++) chunks[i] = 1;
+		return new LazyWriteableDataset(name, FloatDataset.class, shape.clone(), shape.clone(), chunks, this);
+	}
+
+	/**
+	 *
+	 * @return true if the stack is held in a file rather than off heap
+	 */
+	public boolean isSpilled() {
+		return file != null;
+	}
+
+	@Override
+	public void initialize() throws IOException {
+		// Allocated when constructed
+	}
+
+	@Override
+	public boolean isFileReadable() {
+		return buffers != null;
+	}
+
+	@Override
+	public boolean isFileWriteable() {
+		return buffers != null;
+	}
+
+	@Override
+	public Dataset getDataset(IMonitor mon, SliceND slice) throws IOException {
+		final float[] values = new float[(int)size(slice.getShape())];
+		transfer(slice, values, false);
+		return DatasetFactory.createFromObject(FloatDataset.class, values, slice.getShape());
+	}
+
+	@Override
+	public void setSlice(IMonitor mon, IDataset data, SliceND slice) throws IOException {
+		FloatDataset values = DatasetUtils.cast(FloatDataset.class, data);
+		if (values.getStrides() != null) values = values.clone();
+		if (values.getSize() != size(slice.getShape())) {
+			throw new IOException("Data of size "+values.getSize()+" does not fit in slice "+slice);
+		}
+		transfer(slice, values.getData(), true);
+	}
+
+	@Override
+	public void setSliceAsync(IMonitor mon, IDataset data, SliceND slice) throws IOException {
+		// Copying in memory is as quick as queueing the copy
+		setSlice(mon, data, slice);
+	}
+
+	/**
+	 * Copies a slice row by row along the last dimension.
+	 */
+	private void transfer(SliceND slice, float[] values, boolean write) throws IOException {
+		final FloatBuffer[] current = buffers;
+		if (current == null) throw new IOException("The tile store is closed");
+
+		final int[] start = slice.getStart();
+		final int[] step  = slice.getStep();
+		final int[] count = slice.getShape();
+		final int   last  = shape.length-1;
+		final int[] pos   = new int[shape.length];
+
+		for (int done = 0; done < values.length; done += count[last]) {
+			long offset = start[last];
+			for (int d = 0; d < last; d++) offset += (start[d]+(long)pos[d]*step[d])*strides[d];
+			if (step[last] == 1) {
+				copy(current, offset, values, done, count[last], write);
+			} else {
+				for (int i = 0; i < count[last]; i++) copy(current, offset+(long)i*step[last], values, done+i, 1, write);
+			}
+			for (int d = last-1; d >= 0; d--) {
+				if (++pos[d] < count[d]) break;
+				pos[d] = 0;
+			}
+		}
+	}
+
+	private static void copy(FloatBuffer[] current, long offset, float[] values, int from, int length, boolean write) {
+		while (length > 0) {
+			final FloatBuffer buffer = current[(int)(offset/WINDOW)];
+			final int index = (int)(offset%WINDOW);
+			final int n = Math.min(length, WINDOW-index);
+			if (write) {
+				buffer.put(index, values, from, n);
+			} else {
+				buffer.get(index, values, from, n);
+			}
+			offset += n;
+			from   += n;
+			length -= n;
+		}
+	}
+
+	private static long size(int[] shape) {
+		long size = 1;
+		for (int s : shape) size *= s;
+		return size;
+	}
+
+	/**
+	 * Releases the buffers and deletes the file of a spilled store.
+	 */
+	@Override
+	public void close() {
+		buffers = null;
+		if (cleanable != null) cleanable.clean();
+	}
+
+	/**
+	 * Deletes the file, it must not refer to the store or the store is never cleaned.
+	 */
+	private static class Delete implements Runnable {
+		private final File file;
+		Delete(File file) {
+			this.file = file;
+		}
+		@Override
+		public void run() {
+			// Otherwise deleted when the JVM exits
+			if (!file.delete()) logger.debug("Cannot delete {} yet", file);
+		}
+	}
+}
@@ -8,29 +8,24 @@
  */
 package org.dawnsci.boofcv.internal;
 
-import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
 import org.apache.commons.math3.util.Pair;
+import org.dawb.common.util.dataset.TileStore;
 import org.dawnsci.boofcv.converter.ConvertIDataset;
 import org.dawnsci.boofcv.registration.ImageHessianRegistration;
 import org.eclipse.dawnsci.analysis.api.image.DetectionAlgoParameters;
 import org.eclipse.dawnsci.analysis.api.image.HessianRegParameters;
 import org.eclipse.dawnsci.analysis.api.image.IImageTransform;
-import org.eclipse.dawnsci.analysis.api.io.ScanFileHolderException;
-import org.eclipse.dawnsci.hdf5.HDF5Utils;
 import org.eclipse.january.IMonitor;
-import org.eclipse.january.dataset.FloatDataset;
 import org.eclipse.january.dataset.IDataset;
 import org.eclipse.january.dataset.ILazyDataset;
 import org.eclipse.january.dataset.ILazyWriteableDataset;
 import org.eclipse.january.dataset.Slice;
 import org.eclipse.january.dataset.SliceND;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 import boofcv.alg.distort.DistortImageOps;
 import boofcv.alg.interpolate.TypeInterpolate;
@@ -52,8 +47,6 @@ public class BoofCVImageTransformImpl<T extends ImageSingleBand<?>, TD extends T
 		System.out.println("Starting BoofCV image transform service.");
 	}
 
-	private static final Logger logger = LoggerFactory.getLogger(BoofCVImageTransformImpl.class);
-
 	public BoofCVImageTransformImpl() {
 		// Important do nothing here, OSGI may start the service more than once.
 	}
@@ -120,46 +113,42 @@ public class BoofCVImageTransformImpl<T extends ImageSingleBand<?>, TD extends T
 		int[] shape = lazydata.getShape();
 		if (shape.length != 3)
 			throw new Exception("Supported Lazy data is 3D, please provide a 3D dataset");
-		// save on a temp file
-		String path = "/entry/data/";
-		String name = "aligned";
-		File tmpFile = File.createTempFile("tmp_aligned", ".h5");
-		tmpFile.deleteOnExit();
-		String file = tmpFile.getAbsolutePath();
 		IDataset firstSlice = lazydata.getSlice(new Slice(1)).squeeze();
-		ILazyWriteableDataset lazy = HDF5Utils.createLazyDataset(file, path, name, shape, null,
-				shape, FloatDataset.class, null, false);
-
-		//convert to boofcv data
-		ImageFloat32 imageA = ConvertIDataset.convertFrom(firstSlice, ImageFloat32.class, 1);
-		// add first image
-		appendDataset(lazy, firstSlice, 0, monitor);
-		if (firstSlice.getShape().length != 2)
-			throw new Exception("Data shape is not 2D");
-		
-		for (int i = 1; i < shape[0]; i++) {
-			IDataset slice = lazydata.getSlice(new Slice(i, i + 1)).squeeze();
-			if (slice.getShape().length != 2)
+		// held off heap, or in a temp file when larger than the tile memory,
+		// the file is deleted once the caller drops the aligned data
+		final TileStore store = new TileStore(shape, TileStore.DEFAULT_MEMORY);
+		try {
+			ILazyWriteableDataset lazy = store.createLazyDataset("Aligned");
+
+			//convert to boofcv data
+			ImageFloat32 imageA = ConvertIDataset.convertFrom(firstSlice, ImageFloat32.class, 1);
+			// add first image
+			appendDataset(lazy, firstSlice, 0, monitor);
+			if (firstSlice.getShape().length != 2)
 				throw new Exception("Data shape is not 2D");
-			ImageFloat32 imageB = ConvertIDataset.convertFrom(slice, ImageFloat32.class, 1);
-			ImageSingleBand<?> aligned = ImageHessianRegistration.registerHessian(imageA, imageB, detectParams, hessianParams);
-			IDataset alignedData = ConvertIDataset.convertTo(aligned, true);
-			alignedData.setName(slice.getName());
-			// add data to lazy file
-			appendDataset(lazy, alignedData, i, monitor);
 
-			if(monitor != null) {
-				if (monitor.isCancelled()) {
-					// reload file
-					lazy.setName("Aligned");
-					return getLazyData(file, path + name);
+			for (int i = 1; i < shape[0]; i++) {
+				IDataset slice = lazydata.getSlice(new Slice(i, i + 1)).squeeze();
+				if (slice.getShape().length != 2)
+					throw new Exception("Data shape is not 2D");
+				ImageFloat32 imageB = ConvertIDataset.convertFrom(slice, ImageFloat32.class, 1);
+				ImageSingleBand<?> aligned = ImageHessianRegistration.registerHessian(imageA, imageB, detectParams, hessianParams);
+				IDataset alignedData = ConvertIDataset.convertTo(aligned, true);
+				alignedData.setName(slice.getName());
+				// add data to lazy file
+				appendDataset(lazy, alignedData, i, monitor);
+
+				if(monitor != null) {
+					if (monitor.isCancelled())
+						return lazy;
+					monitor.worked(1);
 				}
-				monitor.worked(1);
 			}
+			return lazy;
+		} catch (Exception ne) {
+			store.close();
+			throw ne;
 		}
-		// reload file
-		lazy.setName("Aligned");
-		return getLazyData(file, path + name);
 	}
 
 	@Override
@@ -203,16 +192,6 @@ public class BoofCVImageTransformImpl<T extends ImageSingleBand<?>, TD extends T
 		return ConvertIDataset.convertTo(transformed, true);
 	}
 
-	private ILazyDataset getLazyData(String filename, String node) {
-		ILazyDataset shifted = null;
-		try {
-			shifted = HDF5Utils.loadDataset(filename, node);
-		} catch (ScanFileHolderException e) {
-			logger .error("Could not reload the temp h5 file:", e);
-		}
-		return shifted;
-	}
-
 	private static void appendDataset(ILazyWriteableDataset lazy, IDataset data, int idx, IMonitor monitor) throws Exception {
 		int[] shape = data.getShape();
 		SliceND ndSlice = new SliceND(lazy.getShape(), new int[] {idx, 0, 0}, new int[] {(idx+1), shape[0], shape[1]}, null);
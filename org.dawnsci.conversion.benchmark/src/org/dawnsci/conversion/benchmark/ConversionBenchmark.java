@@ -0,0 +1,331 @@
+/*
+ * Copyright (c) 2026 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.dawnsci.conversion.benchmark;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.dawb.common.util.io.FileUtils;
+import org.dawnsci.boofcv.BoofCVImageStitchingProcessCreator;
+import org.dawnsci.boofcv.BoofCVImageTransformCreator;
+import org.dawnsci.conversion.ConversionServiceImpl;
+import org.dawnsci.conversion.IExtendedConversionContext;
+import org.dawnsci.conversion.converters.AlignImagesConverter.ConversionAlignBean;
+import org.dawnsci.conversion.converters.Convert1DtoND.Convert1DInfoBean;
+import org.dawnsci.conversion.converters.CustomTomoConverter.TomoInfoBean;
+import org.dawnsci.conversion.converters.ImagesToStitchedConverter.ConversionStitchedBean;
+import org.dawnsci.conversion.schemes.AlignImagesConverterScheme;
+import org.dawnsci.conversion.schemes.AsciiConvert1DScheme;
+import org.dawnsci.conversion.schemes.AsciiConvert2DScheme;
+import org.dawnsci.conversion.schemes.CompareConverterScheme;
+import org.dawnsci.conversion.schemes.Convert1DtoNDScheme;
+import org.dawnsci.conversion.schemes.CustomTomoConverterScheme;
+import org.dawnsci.conversion.schemes.ImagesToHDFConverterScheme;
+import org.dawnsci.conversion.schemes.ImagesToStitchedConverterScheme;
+import org.dawnsci.conversion.schemes.NumpyConverterScheme;
+import org.eclipse.dawnsci.analysis.api.conversion.IConversionContext;
+import org.eclipse.dawnsci.analysis.api.conversion.IConversionService;
+import org.eclipse.dawnsci.analysis.api.image.IImageStitchingProcess;
+import org.eclipse.dawnsci.analysis.api.image.IImageTransform;
+import org.eclipse.dawnsci.analysis.api.io.ILoaderService;
+import org.eclipse.dawnsci.hdf5.nexus.NexusFileFactoryHDF5;
+import org.eclipse.dawnsci.nexus.INexusFileFactory;
+import org.eclipse.january.dataset.IDataset;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import uk.ac.diamond.osgi.services.ServiceProvider;
+import uk.ac.diamond.scisoft.analysis.io.LoaderServiceImpl;
+
+/**
+ * Throughput of each conversion scheme on synthetic inputs, one conversion per
+ * operation. Run with {@link ConversionBenchmarkRunner} to also get the allocation
+ * rate, or with the JMH command line options to choose the parameters, for instance
+ * -p shape=100x2048x2048 -p chunks=1x256x256 for a larger stack.
+ *
+ * The inputs are written once per trial in a temporary folder, the outputs go to
+ * a new folder per operation which is deleted after each iteration. The process
+ * conversion is not benchmarked as it runs operations from the processing service.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class ConversionBenchmark {
+
+	/**
+	 * The services and folders shared by all the inputs.
+	 */
+	public abstract static class Input {
+
+		protected IConversionService service;
+		protected File               dir;
+		private   File               outputs;
+		private   int                outputCount;
+
+		protected void createServices(String name) throws Exception {
+			ServiceProvider.setService(ILoaderService.class, new LoaderServiceImpl());
+			ServiceProvider.setService(INexusFileFactory.class, new NexusFileFactoryHDF5());
+			service = new ConversionServiceImpl();
+			dir     = Files.createTempDirectory("ConversionBenchmark_"+name).toFile();
+			outputs = new File(dir, "outputs");
+		}
+
+		/**
+		 *
+		 * @return a new folder for the output of one conversion
+		 */
+		protected File nextOutput() {
+			final File output = new File(outputs, "output_"+(outputCount++));
+			output.mkdirs();
+			return output;
+		}
+
+		@TearDown(Level.Iteration)
+		public void deleteOutputs() {
+			FileUtils.recursiveDelete(outputs);
+		}
+
+		@TearDown(Level.Trial)
+		public void deleteInputs() {
+			FileUtils.recursiveDelete(dir);
+			ServiceProvider.reset();
+		}
+	}
+
+	/**
+	 * A float stack in one NeXus file, sliced into images.
+	 */
+	@State(Scope.Benchmark)
+	public static class Stack extends Input {
+
+		@Param({"20x512x512"})
+		public String shape;
+
+		@Param({"1x512x512"})
+		public String chunks;
+
+		/** Bytes read in one block, see {@link IExtendedConversionContext#setBlockReadMemory(long)} */
+		@Param({"0"})
+		public long blockReadMemory;
+
+		File file;
+
+		@Setup(Level.Trial)
+		public void create() throws Exception {
+			createServices("stack");
+			file = SyntheticData.nexusStack(new File(dir, "stack.nxs"), SyntheticData.parseShape(shape), SyntheticData.parseShape(chunks));
+		}
+	}
+
+	/**
+	 * A folder of TIFF images.
+	 */
+	@State(Scope.Benchmark)
+	public static class Images extends Input {
+
+		/** Kept square so that the images can be stitched */
+		@Param({"16"})
+		public int count;
+
+		@Param({"512"})
+		public int size;
+
+		File images;
+
+		@Setup(Level.Trial)
+		public void create() throws Exception {
+			createServices("images");
+			ServiceProvider.setService(IImageStitchingProcess.class, BoofCVImageStitchingProcessCreator.createStitchingProcess());
+			ServiceProvider.setService(IImageTransform.class, BoofCVImageTransformCreator.createTransformService());
+			images = SyntheticData.tiffDirectory(new File(dir, "images"), count, size, size);
+		}
+	}
+
+	/**
+	 * A folder of NeXus files with one spectrum each.
+	 */
+	@State(Scope.Benchmark)
+	public static class Spectra extends Input {
+
+		@Param({"100"})
+		public int count;
+
+		@Param({"4096"})
+		public int length;
+
+		@Param({"false", "true"})
+		public boolean streaming;
+
+		File spectra;
+
+		@Setup(Level.Trial)
+		public void create() throws Exception {
+			createServices("spectra");
+			spectra = SyntheticData.spectra(new File(dir, "spectra"), count, length);
+		}
+	}
+
+	/**
+	 * An NXtomo file.
+	 */
+	@State(Scope.Benchmark)
+	public static class Tomo extends Input {
+
+		@Param({"20"})
+		public int projections;
+
+		@Param({"256"})
+		public int size;
+
+		@Param({"1", "4"})
+		public int writers;
+
+		File file;
+
+		@Setup(Level.Trial)
+		public void create() throws Exception {
+			createServices("tomo");
+			file = SyntheticData.nxTomo(new File(dir, "tomo.nxs"), 2, 2, projections, size, size);
+		}
+	}
+
+	@Benchmark
+	public void asciiConvert2D(Stack in) throws Exception {
+		final IConversionContext context = in.service.open(in.file.getAbsolutePath());
+		context.setOutputPath(in.nextOutput().getAbsolutePath());
+		context.setConversionScheme(new AsciiConvert2DScheme());
+		context.setDatasetName(SyntheticData.STACK_PATH);
+		context.addSliceDimension(0, "all");
+		((IExtendedConversionContext)context).setBlockReadMemory(in.blockReadMemory);
+		in.service.process(context);
+	}
+
+	@Benchmark
+	public void numpy(Stack in) throws Exception {
+		final IConversionContext context = in.service.open(in.file.getAbsolutePath());
+		context.setOutputPath(new File(in.nextOutput(), "stack.npy").getAbsolutePath());
+		context.setConversionScheme(new NumpyConverterScheme());
+		context.setDatasetName(SyntheticData.STACK_PATH);
+		context.addSliceDimension(0, "all");
+		((IExtendedConversionContext)context).setBlockReadMemory(in.blockReadMemory);
+		in.service.process(context);
+	}
+
+	@Benchmark
+	public void asciiConvert1D(Spectra in) throws Exception {
+		final IConversionContext context = in.service.open(in.spectra.getAbsolutePath()+"/spectrum_.*nxs");
+		context.setOutputPath(new File(in.nextOutput(), "spectra.dat").getAbsolutePath());
+		context.setConversionScheme(new AsciiConvert1DScheme());
+		context.setDatasetName(SyntheticData.SPECTRUM_PATH);
+		in.service.process(context);
+	}
+
+	@Benchmark
+	public void compare(Spectra in) throws Exception {
+		final IConversionContext context = in.service.open(in.spectra.getAbsolutePath()+"/spectrum_.*nxs");
+		context.setOutputPath(new File(in.nextOutput(), "compare.h5").getAbsolutePath());
+		context.setConversionScheme(new CompareConverterScheme());
+		context.setDatasetName(SyntheticData.SPECTRUM_PATH);
+		in.service.process(context);
+	}
+
+	@Benchmark
+	public void convert1DtoND(Spectra in) throws Exception {
+		final IConversionContext context = in.service.open(in.spectra.getAbsolutePath()+"/spectrum_.*nxs");
+		context.setOutputPath(new File(in.nextOutput(), "stack.nxs").getAbsolutePath());
+		context.setConversionScheme(new Convert1DtoNDScheme());
+		context.setAxisDatasetName(SyntheticData.AXIS_PATH);
+		context.setDatasetName(SyntheticData.SPECTRUM_PATH);
+		final Convert1DInfoBean bean = new Convert1DInfoBean();
+		bean.streaming = in.streaming;
+		context.setUserObject(bean);
+		in.service.process(context);
+	}
+
+	@Benchmark
+	public void imagesToHDF(Images in) throws Exception {
+		final IConversionContext context = in.service.open(in.images.getAbsolutePath()+"/image_.*tif");
+		context.setOutputPath(new File(in.nextOutput(), "images.h5").getAbsolutePath());
+		context.setConversionScheme(new ImagesToHDFConverterScheme());
+		context.setDatasetName("/entry1/data");
+		in.service.process(context);
+	}
+
+	@Benchmark
+	public void alignImages(Images in) throws Exception {
+		final IConversionContext context = in.service.open(in.images.getAbsolutePath()+"/image_.*tif");
+		context.setOutputPath(in.nextOutput().getAbsolutePath());
+		context.setConversionScheme(new AlignImagesConverterScheme());
+
+		// The images are written as they are, the alignment itself is not benchmarked
+		final List<String>   names   = new ArrayList<String>(in.count);
+		final List<IDataset> aligned = new ArrayList<IDataset>(in.count);
+		for (int i = 0; i < in.count; i++) {
+			final File image = new File(in.images, String.format("image_%05d.tif", i));
+			names.add(image.getAbsolutePath());
+			aligned.add(ServiceProvider.getService(ILoaderService.class).getData(image.getAbsolutePath(), null).getDataset(0));
+		}
+		context.setDatasetNames(names);
+		final ConversionAlignBean bean = new ConversionAlignBean();
+		bean.setAligned(aligned);
+		context.setUserObject(bean);
+		in.service.process(context);
+	}
+
+	@Benchmark
+	public void imagesToStitched(Images in) throws Exception {
+		final IConversionContext context = in.service.open(in.images.getAbsolutePath()+"/image_.*tif");
+		context.setOutputPath(new File(in.nextOutput(), "stitched.tif").getAbsolutePath());
+		context.setConversionScheme(new ImagesToStitchedConverterScheme());
+
+		final int side = (int)Math.round(Math.sqrt(in.count));
+		final ConversionStitchedBean bean = new ConversionStitchedBean();
+		bean.setRows(side);
+		bean.setColumns(side);
+		bean.setAngle(0);
+		bean.setFieldOfView(50);
+		bean.setFeatureAssociated(false);
+		bean.setTranslations(new double[side][side][2]);
+		context.setUserObject(bean);
+		in.service.process(context);
+	}
+
+	@Benchmark
+	public void customTomo(Tomo in) throws Exception {
+		final IConversionContext context = in.service.open(in.file.getAbsolutePath());
+		final TomoInfoBean bean = new TomoInfoBean();
+		if (!bean.setTomographyDefinition(in.file.getAbsolutePath())) throw new Exception("Not a tomography file "+in.file);
+
+		context.setOutputPath(in.nextOutput().getAbsolutePath());
+		context.setConversionScheme(new CustomTomoConverterScheme());
+		context.setDatasetName(bean.getTomoDataName());
+		context.addSliceDimension(0, "all");
+		bean.setBits(16);
+		bean.setDarkFieldPath("%s/d_%05d");
+		bean.setFlatFieldPath("%s/f_%05d");
+		bean.setProjectionPath("%s/p_%05d");
+		bean.setWriters(in.writers);
+		context.setUserObject(bean);
+		in.service.process(context);
+	}
+}
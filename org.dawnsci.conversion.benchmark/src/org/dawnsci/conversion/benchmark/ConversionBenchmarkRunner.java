@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2026 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.dawnsci.conversion.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs {@link ConversionBenchmark} with the GC profiler, which reports the allocation
+ * rate (gc.alloc.rate.norm is bytes per conversion) beside the throughput.
+ *
+ * The benchmarks run in this JVM by default as the bundles are not on the class path
+ * of a forked JVM when run from OSGi. Set -Dbenchmark.forks=1 when running from a
+ * flat class path for more stable results.
+ *
+ * <pre>
+ * ConversionBenchmarkRunner [benchmark regex] [results.json]
+ * </pre>
+ */
+public class ConversionBenchmarkRunner {
+
+	public static void main(String[] args) throws Exception {
+
+		final String include = args.length > 0 ? args[0] : ConversionBenchmark.class.getSimpleName();
+		final String results = args.length > 1 ? args[1] : "conversion-benchmark.json";
+
+		final Options options = new OptionsBuilder()
+				.include(include)
+				.forks(Integer.getInteger("benchmark.forks", 0))
+				.addProfiler(GCProfiler.class)
+				.resultFormat(ResultFormatType.JSON)
+				.result(results)
+				.build();
+
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2026 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.dawnsci.conversion.benchmark;
+
+import java.io.File;
+
+import org.eclipse.dawnsci.analysis.api.tree.GroupNode;
+import org.eclipse.dawnsci.nexus.INexusFileFactory;
+import org.eclipse.dawnsci.nexus.NexusFile;
+import org.eclipse.january.dataset.Dataset;
+import org.eclipse.january.dataset.DatasetFactory;
+import org.eclipse.january.dataset.DatasetUtils;
+import org.eclipse.january.dataset.FloatDataset;
+import org.eclipse.january.dataset.ILazyWriteableDataset;
+import org.eclipse.january.dataset.IntegerDataset;
+import org.eclipse.january.dataset.LazyWriteableDataset;
+import org.eclipse.january.dataset.Random;
+import org.eclipse.january.dataset.ShortDataset;
+import org.eclipse.january.dataset.SliceND;
+import org.eclipse.january.dataset.StringDataset;
+
+import uk.ac.diamond.osgi.services.ServiceProvider;
+import uk.ac.diamond.scisoft.analysis.io.DataHolder;
+import uk.ac.diamond.scisoft.analysis.io.JavaImageSaver;
+
+/**
+ * Writes the inputs of the benchmarks. The data is random with a fixed seed so
+ * that runs are comparable, and is written a frame at a time so that stacks
+ * larger than the heap can be made.
+ */
+public final class SyntheticData {
+
+	/** Path of the stack in the files written by {@link #nexusStack(File, int[], int[])} */
+	public static final String STACK_PATH    = "/entry/data/data";
+	/** Path of the spectrum in the files written by {@link #spectra(File, int, int)} */
+	public static final String SPECTRUM_PATH = "/entry/counter/spectrum";
+	/** Path of the axis in the files written by {@link #spectra(File, int, int)} */
+	public static final String AXIS_PATH     = "/entry/counter/energy";
+
+	private SyntheticData() {
+		// Static methods only
+	}
+
+	/**
+	 * Writes a float stack, one frame along the first dimension at a time.
+	 * @param file
+	 * @param shape at least two dimensions
+	 * @param chunks null for the default chunking
+	 * @return file
+	 * @throws Exception
+	 */
+	public static File nexusStack(File file, int[] shape, int[] chunks) throws Exception {
+		try (NexusFile nfile = ServiceProvider.getService(INexusFileFactory.class).newNexusFile(file.getAbsolutePath())) {
+			nfile.createAndOpenToWrite();
+			final GroupNode group = nfile.getGroup("/entry/data", true);
+			final ILazyWriteableDataset data = new LazyWriteableDataset("data", FloatDataset.class, shape, shape.clone(), chunks, null);
+			nfile.createData(group, data, NexusFile.COMPRESSION_NONE);
+			writeFrames(data, shape, FloatDataset.class);
+		}
+		return file;
+	}
+
+	/**
+	 * Writes an NXtomo file with dark, flat and projection images, as read by the
+	 * custom tomography conversion.
+	 * @param file
+	 * @param nDarks
+	 * @param nFlats
+	 * @param nProjections
+	 * @param rows
+	 * @param cols
+	 * @return file
+	 * @throws Exception
+	 */
+	public static File nxTomo(File file, int nDarks, int nFlats, int nProjections, int rows, int cols) throws Exception {
+		final int   nImages = nDarks+nFlats+nProjections;
+		final int[] shape   = new int[] {nImages, rows, cols};
+		try (NexusFile nfile = ServiceProvider.getService(INexusFileFactory.class).newNexusFile(file.getAbsolutePath())) {
+			nfile.createAndOpenToWrite();
+
+			final GroupNode entry = nfile.getGroup("/entry", true);
+			final StringDataset definition = DatasetFactory.createFromObject(StringDataset.class, "NXtomo");
+			definition.setName("definition");
+			nfile.createData(entry, definition);
+
+			final GroupNode detector = nfile.getGroup("/entry/instrument/detector", true);
+			final ILazyWriteableDataset data = new LazyWriteableDataset("data", ShortDataset.class, shape, shape.clone(), new int[] {1, rows, cols}, null);
+			nfile.createData(detector, data, NexusFile.COMPRESSION_NONE);
+			writeFrames(data, shape, ShortDataset.class);
+
+			// image_key is 2 for darks, 1 for flats and 0 for projections
+			final IntegerDataset key = DatasetFactory.zeros(IntegerDataset.class, nImages);
+			for (int i = 0; i < nDarks; i++) key.set(2, i);
+			for (int i = nDarks; i < nDarks+nFlats; i++) key.set(1, i);
+			key.setName("image_key");
+			nfile.createData(detector, key);
+		}
+		return file;
+	}
+
+	/**
+	 * Writes a folder of 16 bit TIFF images.
+	 * @param dir
+	 * @param count
+	 * @param rows
+	 * @param cols
+	 * @return dir
+	 * @throws Exception
+	 */
+	public static File tiffDirectory(File dir, int count, int rows, int cols) throws Exception {
+		dir.mkdirs();
+		Random.seed(1L);
+		for (int i = 0; i < count; i++) {
+			final Dataset image = Random.randint(0, 4096, new int[] {rows, cols});
+			image.setName("image");
+			final String filename = new File(dir, String.format("image_%05d.tif", i)).getAbsolutePath();
+			final DataHolder dh = new DataHolder();
+			dh.addDataset(image.getName(), image);
+			new JavaImageSaver(filename, "tiff", 16, true).saveFile(dh);
+		}
+		return dir;
+	}
+
+	/**
+	 * Writes a folder of NeXus files, each with one spectrum and its energy axis,
+	 * as a scan saving a file per point would.
+	 * @param dir
+	 * @param count
+	 * @param length
+	 * @return dir
+	 * @throws Exception
+	 */
+	public static File spectra(File dir, int count, int length) throws Exception {
+		dir.mkdirs();
+		Random.seed(1L);
+		final Dataset energy = DatasetFactory.createRange(length);
+		energy.setName("energy");
+		for (int i = 0; i < count; i++) {
+			final File file = new File(dir, String.format("spectrum_%05d.nxs", i));
+			try (NexusFile nfile = ServiceProvider.getService(INexusFileFactory.class).newNexusFile(file.getAbsolutePath())) {
+				nfile.createAndOpenToWrite();
+				final GroupNode group = nfile.getGroup("/entry/counter", true);
+				final Dataset spectrum = Random.rand(length);
+				spectrum.setName("spectrum");
+				nfile.createData(group, spectrum);
+				nfile.createData(group, energy);
+			}
+		}
+		return dir;
+	}
+
+	private static void writeFrames(ILazyWriteableDataset data, int[] shape, Class<? extends Dataset> clazz) throws Exception {
+		Random.seed(1L);
+		final int[] frame = shape.clone();
+		frame[0] = 1;
+		final int[] start = new int[shape.length];
+		final int[] stop  = frame.clone();
+		for (int i = 0; i < shape[0]; i++) {
+			start[0] = i;
+			stop[0]  = i+1;
+			final Dataset values = DatasetUtils.cast(clazz, Random.rand(frame).imultiply(4096));
+			data.setSlice(null, values, new SliceND(shape, shape, start, stop, null));
+		}
+	}
+
+	/**
+	 *
+	 * @param shape as 100x2048x2048, "" or "auto" for null
+	 * @return shape
+	 */
+	public static int[] parseShape(String shape) {
+		if (shape == null || shape.isEmpty() || "auto".equals(shape)) return null;
+		final String[] parts = shape.split("x");
+		final int[] ret = new int[parts.length];
+		for (int i = 0; i < parts.length; i++) ret[i] = Integer.parseInt(parts[i].trim());
+		return ret;
+	}
+}
@@ -77,6 +77,45 @@ public class AlignConvertTest {
 		doTestDir();
 	}
 
+	@Test
+	public void testDirStreaming() throws Exception {
+		final File sourcedir = new File("testfiles/27099_drifted_png");
+		org.apache.commons.io.FileUtils.copyDirectory(sourcedir, dir);
+
+		IConversionService service = new ConversionServiceImpl();
+		final IConversionContext context = service.open(dir.getAbsolutePath());
+
+		List<File> files = listFiles(dir, new String[] { "png" }, false);
+		String[] filePaths = new String[files.size()];
+		List<String> names = new ArrayList<String>(files.size());
+		for (int i = 0; i < filePaths.length; i++) {
+			filePaths[i] = files.get(i).getAbsolutePath();
+			names.add("image_" + i);
+		}
+		context.setDatasetNames(names);
+		context.setFilePaths(filePaths);
+		context.setEchoMacro(false);
+		context.setOutputPath(output.getAbsolutePath());
+		context.setConversionScheme(scheme);
+
+		// Nothing aligned beforehand, each image is registered as it is converted
+		if (transformer == null)
+			transformer = BoofCVImageTransformCreator.createTransformService();
+		ServiceProvider.setService(IImageTransform.class, transformer);
+		context.setUserObject(new ConversionAlignBean());
+		service.process(context);
+
+		List<IDataset> aligned = getAlignedImages(loadData(filePaths));
+		int num = 5;
+		List<IDataset> alignedSaved = loadData(new String[] { output.getAbsolutePath() + "/aligned_" + names.get(num) + ".tiff" });
+		if (!Arrays.equals(aligned.get(num).getShape(), alignedSaved.get(0).getShape())) {
+			fail("Shape of image aligned while converted is not the same as aligned in memory");
+		}
+		if (aligned.get(num).getDouble(10, 10) != alignedSaved.get(0).getDouble(10, 10)) {
+			fail("Data at slice " + num + " aligned while converted is not the same as aligned in memory");
+		}
+	}
+
 	@After
 	public void after() {
 		FileUtils.recursiveDelete(dir);
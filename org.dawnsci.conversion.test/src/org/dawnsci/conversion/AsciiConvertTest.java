@@ -8,23 +8,31 @@
  */
 package org.dawnsci.conversion;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.dawnsci.conversion.converters.AsciiConvert1D;
+import org.dawnsci.conversion.converters.FileSetExpander;
 import org.dawnsci.conversion.schemes.AsciiConvert1DScheme;
+import org.dawnsci.conversion.schemes.CompareConverterScheme;
 import org.eclipse.dawnsci.analysis.api.conversion.IConversionContext;
 import org.eclipse.dawnsci.analysis.api.conversion.IConversionScheme;
 import org.eclipse.dawnsci.analysis.api.conversion.IConversionService;
 import org.eclipse.dawnsci.analysis.api.io.IDataHolder;
 import org.eclipse.dawnsci.analysis.api.io.ILoaderService;
+import org.eclipse.january.dataset.IDataset;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -71,6 +79,53 @@ public class AsciiConvertTest {
 		}
    	}
 	
+	@Test
+	public void testAsciiDataHoldersReleased() throws Exception {
+		
+		IConversionService service = new ConversionServiceImpl();
+		
+		final String path = new File(getTestFilePath(testfile)).getAbsolutePath();
+		
+		final IConversionContext context = service.open(path);
+		final File tmp = File.createTempFile("testHolders", ".dat");
+		tmp.deleteOnExit();
+        context.setOutputPath(tmp.getAbsolutePath());
+        context.setConversionScheme(scheme);
+        context.setDatasetName("/entry1/counterTimer01/(Energy|I0|lnI0It|It)");
+        
+        service.process(context);
+        
+        // The file is only held while the conversion runs
+        final IExtendedConversionContext ext = (IExtendedConversionContext)context;
+        assertTrue(ext.getDataHolder(path) == null);
+        
+        final IDataHolder dh = ServiceProvider.getService(ILoaderService.class).getData(tmp.getAbsolutePath(),null);
+        assertTrue(dh.getDataset("/entry1/counterTimer01/Energy") != null);
+   	}
+	
+	@Test
+	public void testDataHoldersOfCurrentFile() throws Exception {
+		
+		IConversionService service = new ConversionServiceImpl();
+		final File file = new File(getTestFilePath(testfile)).getAbsoluteFile();
+		final IDataHolder dh = ServiceProvider.getService(ILoaderService.class).getData(file.getAbsolutePath(), null);
+		
+		final IExtendedConversionContext context = (IExtendedConversionContext)service.open(file.getAbsolutePath());
+		context.setDataHolder(file.getAbsolutePath(), dh);
+		context.setDataHolder("/other.nxs", dh);
+		
+		// Selecting a file releases those of the other files
+		context.setSelectedConversionFile(file);
+		assertTrue(context.getDataHolder(file.getAbsolutePath()) == dh);
+		assertTrue(context.getDataHolder("/other.nxs") == null);
+		
+		// However many files are read, only the most recent are held
+		for (int i = 0; i < 10; i++) context.setDataHolder("/other"+i+".nxs", dh);
+		assertTrue(context.getDataHolder("/other9.nxs") == dh);
+		assertTrue(context.getDataHolder("/other0.nxs") == null);
+		assertTrue(context.getDataHolder(file.getAbsolutePath()) == null);
+   	}
+	
 	@Test
 	public void testAsciiCustomConfig() throws Exception {
 		
@@ -153,6 +208,183 @@ public class AsciiConvertTest {
         }
  	}
 
+	@Test
+	public void testAsciiDefaultFormat() throws Exception {
+		
+		IConversionService service = new ConversionServiceImpl();
+		
+		final String path = getTestFilePath(testfile);
+		
+		final IConversionContext context = service.open(path);
+		final File tmp = File.createTempFile("testDefaultFormat", ".dat");
+		tmp.deleteOnExit();
+		context.setOutputPath(tmp.getAbsolutePath());
+		context.setConversionScheme(scheme);
+		context.setDatasetName("/entry1/counterTimer01/(Energy|I0)");
+		
+		service.process(context);
+		
+		// Numbers must be written as IDataset.getString(...) formats them
+		final IDataHolder source = ServiceProvider.getService(ILoaderService.class).getData(path, null);
+		final IDataset energy = source.getLazyDataset("/entry1/counterTimer01/Energy").getSlice().squeeze();
+		final IDataset i0     = source.getLazyDataset("/entry1/counterTimer01/I0").getSlice().squeeze();
+		
+		final String[] lines = readFile(tmp).toString().split("\r\n");
+		assertEquals("# /entry1/counterTimer01/Energy\t/entry1/counterTimer01/I0", lines[0]);
+		assertEquals(energy.getSize()+1, lines.length);
+		for (int i = 0; i < energy.getSize(); i++) {
+			assertEquals(energy.getString(i)+"\t"+i0.getString(i), lines[i+1]);
+		}
+	}
+
+	@Test
+	public void testAsciiBatch() throws Exception {
+		
+		ConversionServiceImpl service = new ConversionServiceImpl();
+		
+		final File dir = Files.createTempDirectory("testAsciiBatch").toFile();
+		dir.deleteOnExit();
+		final File out = new File(dir, "out");
+		out.mkdirs();
+		out.deleteOnExit();
+		for (int i = 0; i < 3; i++) {
+			final File copy = new File(dir, "copy_"+i+".nxs");
+			copy.deleteOnExit();
+			Files.copy(new File(getTestFilePath(testfile)).toPath(), copy.toPath());
+		}
+		
+		final IConversionContext context = service.open(dir.getAbsolutePath()+"/copy_.*nxs");
+		context.setOutputPath(out.getAbsolutePath());
+		context.setConversionScheme(scheme);
+		context.setDatasetName("/entry1/counterTimer01/(Energy|I0|lnI0It|It)");
+		
+		final BatchConversionResult result = service.processBatch(context, 2, 0, IBatchOutputPolicy.filePerInput("dat"));
+		
+		assertTrue(result.getFailures().toString(), result.isSuccessful());
+		assertEquals(3, result.getConverted().size());
+		for (int i = 0; i < 3; i++) {
+			final File dat = new File(out, "copy_"+i+".dat");
+			dat.deleteOnExit();
+			assertTrue("Missing output "+dat.getName(), dat.exists());
+		}
+	}
+
+	@Test
+	public void testAsciiBatchRegexNames() throws Exception {
+		
+		ConversionServiceImpl service = new ConversionServiceImpl();
+		
+		final File dir = Files.createTempDirectory("testAsciiBatchRegexNames").toFile();
+		dir.deleteOnExit();
+		final File out = new File(dir, "out");
+		out.mkdirs();
+		out.deleteOnExit();
+		for (int i = 1; i < 3; i++) {
+			final File copy = new File(dir, "scan("+i+").nxs");
+			copy.deleteOnExit();
+			Files.copy(new File(getTestFilePath(testfile)).toPath(), copy.toPath());
+		}
+		
+		// Each file is converted from its quoted name, which holds regex characters
+		final IConversionContext context = service.open(dir.getAbsolutePath()+"/scan.*nxs");
+		context.setOutputPath(out.getAbsolutePath());
+		context.setConversionScheme(scheme);
+		context.setDatasetName("/entry1/counterTimer01/(Energy|I0|lnI0It|It)");
+		
+		final BatchConversionResult result = service.processBatch(context, 2, 0, IBatchOutputPolicy.filePerInput("dat"));
+		
+		assertTrue(result.getFailures().toString(), result.isSuccessful());
+		assertEquals(2, result.getConverted().size());
+		for (int i = 1; i < 3; i++) {
+			final File dat = new File(out, "scan("+i+").dat");
+			dat.deleteOnExit();
+			assertTrue("Missing output "+dat.getName(), dat.exists());
+			assertTrue("Empty output "+dat.getName(), dat.length() > 0);
+		}
+		
+		final File quoted = new File(dir, "scan(1).nxs");
+		final IConversionContext single = service.open(FileSetExpander.quote(quoted));
+		assertEquals(List.of(quoted.getAbsoluteFile()), FileSetExpander.of(single.getFilePaths().get(0)).list());
+	}
+
+	@Test
+	public void testAsciiContextJSON() throws Exception {
+		
+		ConversionServiceImpl service = new ConversionServiceImpl();
+		
+		final IConversionContext context = service.open(getTestFilePath(testfile));
+		context.setOutputPath("/tmp/out.dat");
+		context.setConversionScheme(scheme);
+		context.setDatasetName("/entry1/counterTimer01/(Energy|I0|lnI0It|It)");
+		context.addSliceDimension(0, "all");
+		((IExtendedConversionContext)context).setParallelism(3);
+		
+		final AsciiConvert1D.ConversionInfoBean bean = new AsciiConvert1D.ConversionInfoBean();
+		bean.setNumberFormat("#0.00");
+		bean.setAlernativeNames(Map.of("/entry1/counterTimer01/Energy", "Energy"));
+		context.setUserObject(bean);
+		
+		final IConversionContext read = service.fromJSON(((IExtendedConversionContext)context).toJSON());
+		assertEquals(scheme.getClass(), read.getConversionScheme().getClass());
+		assertEquals(context.getFilePaths(), read.getFilePaths());
+		assertEquals(context.getDatasetNames(), read.getDatasetNames());
+		assertEquals(context.getOutputPath(), read.getOutputPath());
+		assertEquals(context.getSliceDimensions(), read.getSliceDimensions());
+		assertEquals(3, ((IExtendedConversionContext)read).getParallelism());
+		
+		final AsciiConvert1D.ConversionInfoBean readBean = (AsciiConvert1D.ConversionInfoBean)read.getUserObject();
+		assertEquals("#0.00", readBean.getNumberFormat());
+		assertEquals(bean.getAlernativeNames(), readBean.getAlernativeNames());
+	}
+
+	@Test
+	public void testAsciiShardPlan() throws Exception {
+		
+		ConversionServiceImpl service = new ConversionServiceImpl();
+		
+		final File dir = Files.createTempDirectory("testAsciiShardPlan").toFile();
+		dir.deleteOnExit();
+		for (int i = 0; i < 3; i++) {
+			final File copy = new File(dir, "copy_"+i+".nxs");
+			copy.deleteOnExit();
+			Files.copy(new File(getTestFilePath(testfile)).toPath(), copy.toPath());
+		}
+		
+		final IConversionContext context = service.open(dir.getAbsolutePath()+"/copy_.*nxs");
+		context.setOutputPath(new File(dir, "out.dat").getAbsolutePath());
+		context.setConversionScheme(scheme);
+		context.setDatasetName("/entry1/counterTimer01/(Energy|I0|lnI0It|It)");
+		
+		// Split by file, each shard taking a run of the files in order
+		final List<IConversionContext> shards = ShardPlanner.plan(context, 2);
+		assertEquals(2, shards.size());
+		final List<String> files = new ArrayList<String>();
+		for (int i = 0; i < shards.size(); i++) {
+			files.addAll(shards.get(i).getFilePaths());
+			assertEquals(new File(dir, "out_shard"+i+".dat").getAbsolutePath(), shards.get(i).getOutputPath());
+		}
+		final List<String> expected = new ArrayList<String>();
+		for (int i = 0; i < 3; i++) expected.add(FileSetExpander.quote(new File(dir, "copy_"+i+".nxs")));
+		assertEquals(expected, files);
+		
+		// Not split by slice range, the scheme does not allow it
+		final IConversionContext single = service.open(getTestFilePath(testfile));
+		single.setOutputPath(dir.getAbsolutePath());
+		single.setConversionScheme(scheme);
+		single.setDatasetName("/entry1/counterTimer01/Energy");
+		single.addSliceDimension(0, "all");
+		assertEquals(1, ShardPlanner.plan(single, 4).size());
+		
+		// Split by slice range, keeping the step
+		single.setOutputPath(new File(dir, "compare.nxs").getAbsolutePath());
+		single.setConversionScheme(new CompareConverterScheme());
+		single.addSliceDimension(0, "1:9:2");
+		final List<IConversionContext> ranges = ShardPlanner.plan(single, 2);
+		assertEquals(2, ranges.size());
+		assertEquals("1:5:2", ranges.get(0).getSliceDimensions().get(0));
+		assertEquals("5:9:2", ranges.get(1).getSliceDimensions().get(0));
+		assertEquals(new File(dir, "compare_shard1.nxs").getAbsolutePath(), ranges.get(1).getOutputPath());
+	}
 
 	private String getTestFilePath(String fileName) {
 		
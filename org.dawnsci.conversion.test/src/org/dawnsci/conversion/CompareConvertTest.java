@@ -9,22 +9,39 @@
 
 package org.dawnsci.conversion;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 import org.dawb.common.util.io.FileUtils;
+import org.dawnsci.conversion.converters.CompareConverter;
 import org.dawnsci.conversion.schemes.CompareConverterScheme;
 import org.eclipse.dawnsci.analysis.api.conversion.IConversionContext;
 import org.eclipse.dawnsci.analysis.api.conversion.IConversionScheme;
 import org.eclipse.dawnsci.analysis.api.conversion.IConversionService;
 import org.eclipse.dawnsci.analysis.api.io.IDataHolder;
 import org.eclipse.dawnsci.analysis.api.io.ILoaderService;
+import org.eclipse.dawnsci.analysis.api.tree.GroupNode;
 import org.eclipse.dawnsci.hdf5.nexus.NexusFileFactoryHDF5;
 import org.eclipse.dawnsci.nexus.INexusFileFactory;
+import org.eclipse.dawnsci.nexus.NexusFile;
+import org.eclipse.january.dataset.Dataset;
+import org.eclipse.january.dataset.DatasetFactory;
+import org.eclipse.january.dataset.DatasetUtils;
+import org.eclipse.january.dataset.DoubleDataset;
 import org.eclipse.january.dataset.ILazyDataset;
+import org.eclipse.january.dataset.ILazyWriteableDataset;
+import org.eclipse.january.dataset.IntegerDataset;
+import org.eclipse.january.dataset.LazyWriteableDataset;
+import org.eclipse.january.dataset.ShapeUtils;
+import org.eclipse.january.dataset.SliceND;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -54,6 +71,222 @@ public class CompareConvertTest {
 		doTest("testCompareSimple", 10);
 	}
 
+	
+	@Test
+	public void testDataStatistics() throws Exception {
+		
+		final File image = new File("testfiles/pCMF48_red_new_36408_1.nxs");
+		final File dir  = Files.createTempDirectory("CompareTest+testDataStatistics").toFile();
+		try {
+			for (int i = 0; i < 3; i++) {
+				final File nf = new File(dir, "copy_"+i+".nxs");
+				nf.deleteOnExit();
+				FileUtils.copyNio(image, nf);
+			}
+			
+			IConversionService service = new ConversionServiceImpl();
+			
+			final IConversionContext context = service.open(dir.getAbsolutePath()+"/.*nxs");
+			context.setOutputPath(new File(dir, "compare_statistics_test.h5").getAbsolutePath());
+			context.setDatasetNames(Arrays.asList("/entry1/instrument/cold_head_temp/cold_head_temp", 
+											      "/entry1/instrument/xas_scannable/Energy"));
+			context.setConversionScheme(scheme);
+			
+			final IExtendedConversionContext ext = (IExtendedConversionContext)context;
+			final List<ConversionStatistics> finished = new ArrayList<ConversionStatistics>();
+			ext.addConversionListener(finished::add);
+			final File json = new File(dir, "statistics.json");
+			ext.setStatisticsPath(json.getAbsolutePath());
+			
+			service.process(context);
+			
+			assertEquals(1, finished.size());
+			final ConversionStatistics stats = finished.get(0);
+			assertTrue(stats == ext.getStatistics());
+			assertEquals(6, stats.getSlices());
+			assertTrue(stats.getBytesRead() > 0);
+			assertTrue(stats.getBytesWritten() > 0);
+			
+			final String summary = new String(Files.readAllBytes(json.toPath()));
+			assertTrue(summary.contains("\"slices\":6"));
+			assertTrue(summary.contains("\"peakQueuedBytes\""));
+		} finally {
+			FileUtils.recursiveDelete(dir);
+		}
+	}
+	
+	@Test
+	public void testDataBlockReadMemory() throws Exception {
+		
+		final File image = new File("testfiles/pCMF48_red_new_36408_1.nxs");
+		final File dir  = Files.createTempDirectory("CompareTest+testDataBlockReadMemory").toFile();
+		try {
+			for (int i = 0; i < 3; i++) {
+				final File nf = new File(dir, "copy_"+i+".nxs");
+				nf.deleteOnExit();
+				FileUtils.copyNio(image, nf);
+			}
+			
+			IConversionService service = new ConversionServiceImpl();
+			
+			final IConversionContext context = service.open(dir.getAbsolutePath()+"/.*nxs");
+			final File output = new File(dir, "compare_block_test.h5");
+			context.setOutputPath(output.getAbsolutePath());
+			context.setDatasetNames(Arrays.asList("/entry1/instrument/cold_head_temp/cold_head_temp", 
+											      "/entry1/instrument/xas_scannable/Energy"));
+			context.setConversionScheme(scheme);
+			
+			// Far smaller than the datasets, each is still stacked whole once per file
+			final IExtendedConversionContext ext = (IExtendedConversionContext)context;
+			ext.setBlockReadMemory(64);
+			service.process(context);
+			assertEquals(6, ext.getStatistics().getSlices());
+			
+			final ILoaderService loader = ServiceProvider.getService(ILoaderService.class);
+			final int[] shape = loader.getData(image.getAbsolutePath(), null).getLazyDataset("/entry1/instrument/xas_scannable/Energy").getShape();
+			final ILazyDataset stack = loader.getData(output.getAbsolutePath(), null).getLazyDataset("/entry1/instrument/xas_scannable/Energy");
+			assertEquals(3, stack.getShape()[0]);
+			assertEquals(3*ShapeUtils.calcLongSize(shape), (long)stack.getSize());
+		} finally {
+			FileUtils.recursiveDelete(dir);
+		}
+	}
+	
+	@Test
+	public void testDataLinked() throws Exception {
+		
+		final File image = new File("testfiles/pCMF48_red_new_36408_1.nxs");
+		final File dir  = Files.createTempDirectory("CompareTest+testDataLinked").toFile();
+		try {
+			for (int i = 0; i < 3; i++) {
+				final File nf = new File(dir, "copy_"+i+".nxs");
+				nf.deleteOnExit();
+				FileUtils.copyNio(image, nf);
+			}
+			
+			IConversionService service = new ConversionServiceImpl();
+			
+			final IConversionContext context = service.open(dir.getAbsolutePath()+"/.*nxs");
+			final File output = new File(dir, "compare_linked_test.h5");
+			context.setOutputPath(output.getAbsolutePath());
+			context.setDatasetNames(Arrays.asList("/entry1/instrument/cold_head_temp/cold_head_temp", 
+											      "/entry1/instrument/xas_scannable/Energy"));
+			context.setConversionScheme(scheme);
+			final CompareConverter.ConversionInfoBean bean = new CompareConverter.ConversionInfoBean();
+			bean.setLinkSources(true);
+			context.setUserObject(bean);
+			
+			service.process(context);
+			
+			// Linked so nothing is read or copied
+			assertEquals(0, ((IExtendedConversionContext)context).getStatistics().getSlices());
+			
+			final IDataHolder holder = ServiceProvider.getService(ILoaderService.class)
+					.getData(output.getAbsolutePath(),null);
+			for (int i = 0; i < 3; i++) {
+				final ILazyDataset set = holder.getLazyDataset("/entry1/instrument/cold_head_temp/cold_head_temp/copy_"+i);
+				assertArrayEquals(new int[]{436}, set.getShape());
+			}
+		} finally {
+			FileUtils.recursiveDelete(dir);
+		}
+	}
+	
+	@Test
+	public void testDataFollow() throws Exception {
+		
+		final File dir = Files.createTempDirectory("CompareTest+testDataFollow").toFile();
+		final NexusFile source = ServiceProvider.getService(INexusFileFactory.class).newNexusFile(new File(dir, "scan.nxs").getAbsolutePath());
+		Thread writer = null;
+		try {
+			// A scan of nine frames, each filled with its index, of which two are written when the conversion starts
+			source.createAndOpenToWrite();
+			final GroupNode group = source.getGroup("/entry1/data", true);
+			final ILazyWriteableDataset frames = new LazyWriteableDataset("frames", DoubleDataset.class, new int[] {0, 4, 4},
+					                                 new int[] {ILazyWriteableDataset.UNLIMITED, 4, 4}, new int[] {1, 4, 4}, null);
+			source.createData(group, frames, NexusFile.COMPRESSION_NONE);
+			writeFrame(source, frames, 0);
+			writeFrame(source, frames, 1);
+			
+			final Exception[] failed = new Exception[1];
+			writer = new Thread(() -> {
+				try {
+					for (int i = 2; i < 9; i++) {
+						Thread.sleep(150);
+						writeFrame(source, frames, i);
+					}
+					Thread.sleep(150);
+					final Dataset marker = DatasetFactory.createFromObject(1);
+					marker.setName("end_of_scan");
+					source.createData(group, marker);
+					source.flush();
+				} catch (Exception ne) {
+					failed[0] = ne;
+				}
+			}, "Scan writer");
+			
+			IConversionService service = new ConversionServiceImpl();
+			
+			final IConversionContext context = service.open(new File(dir, "scan.nxs").getAbsolutePath());
+			final File output = new File(dir, "compare_follow_test.h5");
+			context.setOutputPath(output.getAbsolutePath());
+			context.setDatasetName("/entry1/data/frames");
+			context.addSliceDimension(0, "0:9:2");
+			context.setConversionScheme(scheme);
+			
+			// The timeout is far longer than the scan, the marker ends it
+			final IExtendedConversionContext ext = (IExtendedConversionContext)context;
+			ext.setFollowTimeout(30000);
+			ext.setFollowEndMarker("/entry1/data/end_of_scan");
+			
+			final long start = System.currentTimeMillis();
+			writer.start();
+			service.process(context);
+			assertTrue("Ended on the timeout rather than the marker", System.currentTimeMillis()-start < 30000);
+			writer.join();
+			if (failed[0] != null) throw failed[0];
+			
+			// Every frame on the step grid once, including the last one held back until the marker was set
+			final Dataset stack = DatasetUtils.sliceAndConvertLazyDataset(ServiceProvider.getService(ILoaderService.class)
+					.getData(output.getAbsolutePath(), null).getLazyDataset("/entry1/data/frames"));
+			assertArrayEquals(new int[] {5, 4, 4}, stack.getShape());
+			final List<Integer> written = new ArrayList<Integer>();
+			for (int i = 0; i < stack.getShape()[0]; i++) written.add(stack.getInt(i, 0, 0));
+			assertEquals(Arrays.asList(0, 2, 4, 6, 8), written);
+		} finally {
+			if (writer != null) writer.join();
+			source.close();
+			FileUtils.recursiveDelete(dir);
+		}
+	}
+	
+	private static void writeFrame(NexusFile file, ILazyWriteableDataset frames, int index) throws Exception {
+		final Dataset frame = DatasetFactory.zeros(DoubleDataset.class, 1, 4, 4).fill(index);
+		frames.setSlice(null, frame, new SliceND(frames.getShape(), frames.getMaxShape(), new int[] {index, 0, 0}, new int[] {index+1, 4, 4}, null));
+		file.flush();
+	}
+	
+	@Test
+	public void testResizePadCrop() throws Exception {
+		
+		final Dataset a = DatasetFactory.createRange(6).reshape(2, 3);
+		
+		final Dataset padded = CompareConverter.resize(a, 3, 2);
+		assertArrayEquals(new int[]{3, 2}, padded.getShape());
+		assertEquals(0, padded.getDouble(0, 0), 0);
+		assertEquals(1, padded.getDouble(0, 1), 0);
+		assertEquals(3, padded.getDouble(1, 0), 0);
+		assertEquals(4, padded.getDouble(1, 1), 0);
+		assertTrue(Double.isNaN(padded.getDouble(2, 0)));
+		
+		final Dataset ints = DatasetFactory.createRange(IntegerDataset.class, 6).reshape(2, 3);
+		final Dataset cropped = CompareConverter.resize(ints, 1, 4);
+		assertArrayEquals(new int[]{1, 4}, cropped.getShape());
+		assertEquals(2, cropped.getInt(0, 2));
+		assertEquals(0, cropped.getInt(0, 3));
+		
+		assertTrue(a == CompareConverter.resize(a, 2, 3));
+	}
 
     private void doTest(String testname, int size) throws Exception {
 
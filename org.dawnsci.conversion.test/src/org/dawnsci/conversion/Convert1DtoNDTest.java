@@ -118,6 +118,114 @@ public class Convert1DtoNDTest {
         assertArrayEquals(new int[] {489},ds.getShape());
    	}
 	
+	@Test
+	public void test1DStreaming() throws Exception {
+		
+		IConversionService service = new ConversionServiceImpl();
+		
+		// Determine path to test file
+		final String path = getTestFilePath(testfile);
+		
+		String[] paths = new String[]{path,path,path,path};
+		
+		final IConversionContext context = service.open(paths);
+		
+		Convert1DInfoBean bean = new Convert1DInfoBean();
+		bean.streaming = true;
+		context.setUserObject(bean);
+		
+		final File tmp = File.createTempFile("testStreaming", ".nxs");
+		tmp.deleteOnExit();
+        context.setOutputPath(tmp.getAbsolutePath());
+        context.setConversionScheme(scheme);
+        context.setAxisDatasetName("/entry1/counterTimer01/Energy");
+        context.setDatasetName("/entry1/counterTimer01/(I0|lnI0It|It)");
+        
+        service.process(context);
+        
+        final IDataHolder dh = ServiceProvider.getService(ILoaderService.class).getData(tmp.getAbsolutePath(),null);
+        final List<String> names = Arrays.asList("/entry1/counterTimer01/I0","/entry1/counterTimer01/lnI0It","/entry1/counterTimer01/It");
+        for (String name : names) {
+            ILazyDataset ds = dh.getLazyDataset(name);
+            assertArrayEquals(new int[] {4,489},ds.getShape());
+		}
+        
+        ILazyDataset ds = dh.getLazyDataset("/entry1/counterTimer01/Energy");
+        assertArrayEquals(new int[] {489},ds.getShape());
+   	}
+	
+	@Test
+	public void test3DStreaming() throws Exception {
+		
+		IConversionService service = new ConversionServiceImpl();
+		
+		// Determine path to test file
+		final String path = getTestFilePath(testfile);
+		
+		String[] paths = new String[]{path,path,path,path,path,path,path,path,path,path,path,path};
+		
+		final IConversionContext context = service.open(paths);
+		
+		Convert1DInfoBean bean = new Convert1DInfoBean();
+		bean.fastAxis = 4;
+		bean.slowAxis = 3;
+		bean.streaming = true;
+		
+		context.setUserObject(bean);
+		
+		final File tmp = File.createTempFile("testStreaming3d", ".nxs");
+		tmp.deleteOnExit();
+        context.setOutputPath(tmp.getAbsolutePath());
+        context.setConversionScheme(scheme);
+        context.setAxisDatasetName("/entry1/counterTimer01/Energy");
+        context.setDatasetName("/entry1/counterTimer01/(I0|lnI0It|It)");
+        
+        service.process(context);
+        
+        final IDataHolder dh = ServiceProvider.getService(ILoaderService.class).getData(tmp.getAbsolutePath(),null);
+        final List<String> names = Arrays.asList("/entry1/counterTimer01/I0","/entry1/counterTimer01/lnI0It","/entry1/counterTimer01/It");
+        for (String name : names) {
+            ILazyDataset ds = dh.getLazyDataset(name);
+            assertArrayEquals(new int[] {3,4,489},ds.getShape());
+		}
+        ILazyDataset ds = dh.getLazyDataset("/entry1/counterTimer01/Energy");
+        assertArrayEquals(new int[] {489},ds.getShape());
+   	}
+	
+	@Test
+	public void testStreamingFewerSpectra() throws Exception {
+		
+		IConversionService service = new ConversionServiceImpl();
+		
+		// The last file has none of the datasets, so one spectrum fewer than expected is written
+		final String path = getTestFilePath(testfile);
+		String[] paths = new String[]{path,path,path,getTestFilePath(nonNexusTest)};
+		
+		for (int fast : new int[] {0, 2}) {
+			final IConversionContext context = service.open(paths);
+			
+			Convert1DInfoBean bean = new Convert1DInfoBean();
+			bean.fastAxis = fast;
+			bean.slowAxis = fast > 0 ? 2 : 0;
+			bean.streaming = true;
+			context.setUserObject(bean);
+			
+			final File tmp = File.createTempFile("testStreamingFewer", ".nxs");
+			tmp.deleteOnExit();
+			context.setOutputPath(tmp.getAbsolutePath());
+			context.setConversionScheme(scheme);
+			context.setAxisDatasetName("/entry1/counterTimer01/Energy");
+			context.setDatasetName("/entry1/counterTimer01/(I0|lnI0It|It)");
+			
+			service.process(context);
+			
+			// No empty spectra at the end of the stacks
+			final IDataHolder dh = ServiceProvider.getService(ILoaderService.class).getData(tmp.getAbsolutePath(),null);
+			ILazyDataset ds = dh.getLazyDataset("/entry1/counterTimer01/I0");
+			assertArrayEquals(fast > 0 ? new int[] {2,2,489} : new int[] {3,489}, ds.getShape());
+		}
+   	}
+	
 	@Test
 	public void test1DNotNexus() throws Exception {
 		
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2026 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.dawnsci.conversion;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.dawb.common.util.io.FileUtils;
+import org.dawnsci.conversion.DatasetIndex.DatasetInfo;
+import org.eclipse.dawnsci.analysis.api.io.IDataHolder;
+import org.eclipse.dawnsci.analysis.api.io.ILoaderService;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import uk.ac.diamond.osgi.services.ServiceProvider;
+import uk.ac.diamond.scisoft.analysis.io.LoaderServiceImpl;
+import uk.ac.diamond.scisoft.analysis.utils.DataHolderUtils;
+
+public class DatasetIndexTest {
+
+	@BeforeClass
+	public static void setupServices() {
+		ServiceProvider.setService(ILoaderService.class, new LoaderServiceImpl());
+	}
+
+	@AfterClass
+	public static void tearDownServices() {
+		ServiceProvider.reset();
+	}
+
+	@Test
+	public void testIndex() throws Exception {
+
+		final File dir = Files.createTempDirectory("testDatasetIndex").toFile();
+		try {
+			final File file = new File(dir, "MoKedge_1_15.nxs");
+			Files.copy(new File("testfiles/MoKedge_1_15.nxs").toPath(), file.toPath());
+			final File indexDir = new File(dir, "index");
+
+			final IDataHolder holder = ServiceProvider.getService(ILoaderService.class).getData(file.getAbsolutePath(), null);
+			final AtomicInteger loads = new AtomicInteger();
+
+			final Map<String, DatasetInfo> datasets = new DatasetIndex(indexDir).getDatasets(file, () -> {
+				loads.incrementAndGet();
+				return holder;
+			});
+			assertEquals(1, loads.get());
+			assertEquals(Arrays.asList(holder.getNames()), datasets.keySet().stream().toList());
+			final DatasetInfo energy = datasets.get("/entry1/counterTimer01/Energy");
+			assertArrayEquals(holder.getLazyDataset("/entry1/counterTimer01/Energy").getShape(), energy.getShape());
+			assertTrue(energy.size() > 1);
+
+			// A new index reads the unchanged file from disk
+			final DatasetIndex index = new DatasetIndex(indexDir);
+			assertEquals(datasets, index.getDatasets(file, () -> {
+				loads.incrementAndGet();
+				return holder;
+			}));
+			assertEquals(1, loads.get());
+
+			// A changed file is loaded again
+			assertTrue(file.setLastModified(file.lastModified()-60000));
+			index.getDatasets(file, () -> {
+				loads.incrementAndGet();
+				return holder;
+			});
+			assertEquals(2, loads.get());
+
+			assertFalse(DatasetIndex.isIndexed(new File(dir, "image.tif")));
+		} finally {
+			FileUtils.recursiveDelete(dir);
+		}
+	}
+
+	@Test
+	public void testSlicableNames() throws Exception {
+
+		final File dir = Files.createTempDirectory("testDatasetIndexNames").toFile();
+		try {
+			final File file = new File(dir, "MoKedge_1_15.nxs");
+			Files.copy(new File("testfiles/MoKedge_1_15.nxs").toPath(), file.toPath());
+
+			final IDataHolder holder = ServiceProvider.getService(ILoaderService.class).getData(file.getAbsolutePath(), null);
+			final Map<String, DatasetInfo> datasets = new DatasetIndex(new File(dir, "index")).getDatasets(file, () -> holder);
+
+			// The index offers the same datasets as the data holder
+			for (int minSize : new int[] {0, 1, 2, 100, 1000}) {
+				assertEquals(DataHolderUtils.getSlicableNames(holder, minSize), DatasetIndex.getSlicableNames(datasets, minSize));
+			}
+		} finally {
+			FileUtils.recursiveDelete(dir);
+		}
+	}
+
+	@Test
+	public void testPrune() throws Exception {
+
+		final File dir = Files.createTempDirectory("testDatasetIndexPrune").toFile();
+		try {
+			final File source = new File("testfiles/MoKedge_1_15.nxs");
+			final IDataHolder holder = ServiceProvider.getService(ILoaderService.class).getData(source.getAbsolutePath(), null);
+			final File indexDir = new File(dir, "index");
+			final DatasetIndex index = new DatasetIndex(indexDir, 4);
+
+			for (int i = 0; i < 5; i++) {
+				final File file = new File(dir, "MoKedge_"+i+".nxs");
+				Files.copy(source.toPath(), file.toPath());
+				index.getDatasets(file, () -> holder);
+				// The index is pruned down to nine tenths of its maximum once over it
+				assertEquals(i < 4 ? i+1 : 3, indexDir.list((d, name) -> name.endsWith(".json")).length);
+			}
+		} finally {
+			FileUtils.recursiveDelete(dir);
+		}
+	}
+}
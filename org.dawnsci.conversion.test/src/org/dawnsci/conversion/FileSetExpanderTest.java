@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2026 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.dawnsci.conversion;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.dawb.common.util.io.FileUtils;
+import org.dawnsci.conversion.converters.AbstractConversion;
+import org.dawnsci.conversion.converters.FileSetExpander;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FileSetExpanderTest {
+
+	private File dir;
+
+	@Before
+	public void createFiles() throws Exception {
+		dir = Files.createTempDirectory("FileSetExpanderTest").toFile();
+		final File sub = new File(dir, "sub");
+		sub.mkdir();
+		for (String name : new String[]{"image_10.tif", "image_9.tif", "image_1.tif", "image_02.tif", "notes.txt"}) {
+			new File(dir, name).createNewFile();
+		}
+		new File(sub, "image_3.tif").createNewFile();
+	}
+
+	@After
+	public void deleteFiles() {
+		FileUtils.recursiveDelete(dir);
+	}
+
+	@Test
+	public void testRegexNatural() throws Exception {
+		final List<File> files = FileSetExpander.of(dir.getAbsolutePath()+"/image_.*.tif").listNatural();
+		assertEquals(List.of("image_1.tif", "image_02.tif", "image_9.tif", "image_10.tif"), names(files));
+	}
+
+	@Test
+	public void testGlobRecursive() throws Exception {
+		final List<File> files = FileSetExpander.of(dir.getAbsolutePath()+"/glob:*.tif").recursive(true).listNatural();
+		// The files of the folder come before those of its sub-folder
+		assertEquals(List.of("image_1.tif", "image_02.tif", "image_9.tif", "image_10.tif", "image_3.tif"), names(files));
+	}
+
+	@Test
+	public void testLiteral() throws Exception {
+		final List<File> files = FileSetExpander.of(dir.getAbsolutePath()+"/notes.txt").list();
+		assertEquals(List.of("notes.txt"), names(files));
+	}
+
+	@Test
+	public void testLiteralDot() throws Exception {
+		new File(dir, "copy_1xnxs").createNewFile();
+		// A name which exists is taken as it is, the dot is not a wildcard
+		new File(dir, "copy_1.nxs").createNewFile();
+		assertEquals(List.of("copy_1.nxs"), names(FileSetExpander.of(dir.getAbsolutePath()+"/copy_1.nxs").list()));
+		// Otherwise it is a regular expression
+		new File(dir, "copy_1.nxs").delete();
+		assertEquals(List.of("copy_1xnxs"), names(FileSetExpander.of(dir.getAbsolutePath()+"/copy_1.nxs").list()));
+	}
+
+	@Test
+	public void testFoldersNatural() throws Exception {
+		final List<File> files = new ArrayList<File>();
+		for (String run : new String[]{"run10", "run2", "run1"}) {
+			final File folder = new File(dir, run);
+			folder.mkdir();
+			final File file = new File(folder, "data.nxs");
+			file.createNewFile();
+			files.add(file);
+		}
+		final List<String> parents = new ArrayList<String>();
+		for (File file : FileSetExpander.sortNatural(files)) parents.add(file.getParentFile().getName());
+		assertEquals(List.of("run1", "run2", "run10"), parents);
+	}
+
+	@Test
+	public void testQuoted() throws Exception {
+		final File scan = new File(dir, "scan(1).nxs");
+		scan.createNewFile();
+		new File(dir, "scan1.nxs").createNewFile();
+		new File(dir, "[a].tif").createNewFile();
+		new File(dir, "a.tif").createNewFile();
+
+		assertEquals(List.of("scan(1).nxs"), names(FileSetExpander.of(FileSetExpander.quote(scan)).list()));
+		assertEquals(List.of("[a].tif"), names(FileSetExpander.of(FileSetExpander.quote(new File(dir, "[a].tif"))).list()));
+		assertTrue(FileSetExpander.of(FileSetExpander.quote(new File(dir, "missing(1).nxs"))).list().isEmpty());
+	}
+
+	@Test
+	public void testEmptyName() throws Exception {
+		assertEquals(6, FileSetExpander.of(dir.getAbsolutePath()+"/").list().size());
+	}
+
+	@Test
+	public void testMissingFolder() throws Exception {
+		assertTrue(FileSetExpander.of(dir.getAbsolutePath()+"/missing/.*").list().isEmpty());
+		assertNull(AbstractConversion.expandPath(dir.getAbsolutePath()+"/missing/.*"));
+	}
+
+	private static List<String> names(List<File> files) {
+		final List<String> names = new ArrayList<String>(files.size());
+		for (File file : files) names.add(file.getName());
+		return names;
+	}
+}
@@ -16,6 +16,7 @@ import java.nio.file.Files;
 import java.util.Arrays;
 
 import org.dawb.common.util.io.FileUtils;
+import org.dawnsci.conversion.converters.ImagesToHDFConverter;
 import org.dawnsci.conversion.schemes.ImagesToHDFConverterScheme;
 import org.eclipse.dawnsci.analysis.api.conversion.IConversionContext;
 import org.eclipse.dawnsci.analysis.api.conversion.IConversionScheme;
@@ -60,6 +61,71 @@ public class ImageToH5Test {
 		doTest("testImageLongPath", "/entry1/a/long/path/data", new int[]{20,2048,2048});
 	}
 
+	@Test
+	public void testImageParallel() throws Exception {
+		
+		System.out.println("starting testImageParallel");
+		doTest("testImageParallel", "/entry/data", new int[]{10,2048,2048}, 4);
+	}
+
+	@Test
+	public void testImageBatchedCompressed() throws Exception {
+		
+		System.out.println("starting testImageBatchedCompressed");
+		final ImagesToHDFConverter.ConversionInfoBean bean = new ImagesToHDFConverter.ConversionInfoBean();
+		bean.setBatchSize(4);
+		bean.setChunkShape(256, 256);
+		bean.setCompressed(true);
+		doTest("testImageBatchedCompressed", "/entry/data", new int[]{10,2048,2048}, 1, bean);
+	}
+
+	@Test
+	public void testImageIncremental() throws Exception {
+		
+		System.out.println("starting testImageIncremental");
+		final File image = new File("testfiles/dir/ref-testscale_1_001.img");
+		final File dir   = Files.createTempDirectory("ImageToH5Test_testImageIncremental").toFile();
+		try {
+			for (int i = 0; i < 4; i++) FileUtils.copyNio(image, new File(dir, "copy_"+i+".img"));
+			final File output = new File(dir, "imageStackTestOutput.h5");
+			
+			runResumable(dir, output);
+			checkShape(output, new int[]{4,2048,2048});
+			final long modified = new File(dir, "copy_0.img").lastModified();
+			
+			// Only the new images should be read and appended to the stack
+			for (int i = 4; i < 7; i++) FileUtils.copyNio(image, new File(dir, "copy_"+i+".img"));
+			runResumable(dir, output);
+			checkShape(output, new int[]{7,2048,2048});
+			if (new File(dir, "copy_0.img").lastModified() != modified) fail("Input was changed by the conversion");
+			
+			// Nothing new, the stack is left as it is
+			runResumable(dir, output);
+			checkShape(output, new int[]{7,2048,2048});
+			
+		} finally {
+			FileUtils.recursiveDelete(dir);
+		}
+	}
+	
+	private void runResumable(File dir, File output) throws Exception {
+		IConversionService service = new ConversionServiceImpl();
+		final IConversionContext context = service.open(dir.getAbsolutePath()+"/copy_.*img");
+		context.setOutputPath(output.getAbsolutePath());
+		context.setDatasetName("/entry/data");
+		context.setConversionScheme(scheme);
+		((IExtendedConversionContext)context).setResumable(true);
+		service.process(context);
+	}
+	
+	private void checkShape(File output, int[] shape) throws Exception {
+		final ILazyDataset set = ServiceProvider.getService(ILoaderService.class)
+				.getData(output.getAbsolutePath(), null).getLazyDataset(0);
+		if (!Arrays.equals(set.getShape(), shape)) {
+			fail("Dataset written with shape "+Arrays.toString(set.getShape())+", but expected shape was "+Arrays.toString(shape));
+		}
+	}
+
 	/**
 	 * Test should be done @ 1000x 2k but this clobbers the test decks.
 	 * We reduce to 100 x 2k for the test decks to run properly.
@@ -74,6 +140,14 @@ public class ImageToH5Test {
 	}
 
     private void doTest(String testname, String dPath, int[] shape) throws Exception {
+    	doTest(testname, dPath, shape, 1);
+    }
+
+    private void doTest(String testname, String dPath, int[] shape, int parallelism) throws Exception {
+    	doTest(testname, dPath, shape, parallelism, null);
+    }
+
+    private void doTest(String testname, String dPath, int[] shape, int parallelism, Object userObject) throws Exception {
 
 		final File image = new File("testfiles/dir/ref-testscale_1_001.img");
 		
@@ -94,6 +168,9 @@ public class ImageToH5Test {
 	        context.setOutputPath(output.getAbsolutePath());
 	        context.setDatasetName(dPath); // With this conversion dataset is the OUTPUT
 	        context.setConversionScheme(scheme);
+	        context.setUserObject(userObject);
+	        ((IExtendedConversionContext)context).setParallelism(parallelism);
+	        ((IExtendedConversionContext)context).setMaxSlicesInFlight(parallelism+2);
 			
 			service.process(context);
 			
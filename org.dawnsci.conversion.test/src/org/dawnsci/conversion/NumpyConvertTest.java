@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2026 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.dawnsci.conversion;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.dawb.common.util.io.FileUtils;
+import org.dawnsci.conversion.schemes.NumpyConverterScheme;
+import org.eclipse.dawnsci.analysis.api.conversion.IConversionContext;
+import org.eclipse.dawnsci.analysis.api.conversion.IConversionScheme;
+import org.eclipse.dawnsci.analysis.api.conversion.IConversionService;
+import org.eclipse.dawnsci.analysis.api.io.ILoaderService;
+import org.eclipse.dawnsci.hdf5.nexus.NexusFileFactoryHDF5;
+import org.eclipse.dawnsci.nexus.INexusFileFactory;
+import org.eclipse.january.IMonitor;
+import org.eclipse.january.dataset.Dataset;
+import org.eclipse.january.dataset.DatasetUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import uk.ac.diamond.osgi.services.ServiceProvider;
+import uk.ac.diamond.scisoft.analysis.io.LoaderServiceImpl;
+
+public class NumpyConvertTest {
+
+	private static final IConversionScheme scheme = new NumpyConverterScheme();
+	private static final String TEMPERATURE = "/entry1/instrument/cold_head_temp/cold_head_temp";
+	private static final String ENERGY      = "/entry1/instrument/xas_scannable/Energy";
+
+	@BeforeClass
+	public static void setUpServices() {
+		ServiceProvider.setService(ILoaderService.class, new LoaderServiceImpl());
+		ServiceProvider.setService(INexusFileFactory.class, new NexusFileFactoryHDF5());
+	}
+
+	@AfterClass
+	public static void tearDownServices() {
+		ServiceProvider.reset();
+	}
+
+	@Test
+	public void testNpy() throws Exception {
+
+		final File dir = Files.createTempDirectory("NumpyConvertTest_testNpy").toFile();
+		try {
+			final File input = new File("testfiles/pCMF48_red_new_36408_1.nxs");
+			final File output = new File(dir, "temperature.npy");
+
+			IConversionService service = new ConversionServiceImpl();
+			final IConversionContext context = service.open(input.getAbsolutePath());
+			context.setOutputPath(output.getAbsolutePath());
+			context.setDatasetNames(Arrays.asList(TEMPERATURE));
+			context.setConversionScheme(scheme);
+			service.process(context);
+
+			final Dataset expected = DatasetUtils.convertToDataset(ServiceProvider.getService(ILoaderService.class)
+					.getDataset(input.getAbsolutePath(), TEMPERATURE, (IMonitor)null));
+			checkArray(Files.readAllBytes(output.toPath()), expected);
+		} finally {
+			FileUtils.recursiveDelete(dir);
+		}
+	}
+
+	@Test
+	public void testNpzParallel() throws Exception {
+
+		final File dir = Files.createTempDirectory("NumpyConvertTest_testNpz").toFile();
+		try {
+			final File image = new File("testfiles/pCMF48_red_new_36408_1.nxs");
+			for (int i = 0; i < 2; i++) FileUtils.copyNio(image, new File(dir, "copy_"+i+".nxs"));
+			final File output = new File(dir, "compare.npz");
+
+			IConversionService service = new ConversionServiceImpl();
+			final IConversionContext context = service.open(dir.getAbsolutePath()+"/.*nxs");
+			context.setOutputPath(output.getAbsolutePath());
+			context.setDatasetNames(Arrays.asList(TEMPERATURE, ENERGY));
+			// One element at a time, written from several threads
+			context.addSliceDimension(0, "all");
+			context.setConversionScheme(scheme);
+			((IExtendedConversionContext)context).setParallelism(4);
+			service.process(context);
+
+			final Dataset expected = DatasetUtils.convertToDataset(ServiceProvider.getService(ILoaderService.class)
+					.getDataset(image.getAbsolutePath(), TEMPERATURE, (IMonitor)null));
+
+			// The stream checks the CRC of each stored entry
+			final List<String> names = new ArrayList<String>();
+			try (ZipInputStream zip = new ZipInputStream(new FileInputStream(output))) {
+				ZipEntry entry;
+				while ((entry = zip.getNextEntry()) != null) {
+					names.add(entry.getName());
+					final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+					zip.transferTo(bytes);
+					if (entry.getName().endsWith("cold_head_temp.npy")) checkArray(bytes.toByteArray(), expected);
+				}
+			}
+			assertEquals(4, names.size());
+			assertTrue(names.contains("copy_1/entry1/instrument/xas_scannable/Energy.npy"));
+		} finally {
+			FileUtils.recursiveDelete(dir);
+		}
+	}
+
+	@Test
+	public void testNpzSameNames() throws Exception {
+
+		final File dir = Files.createTempDirectory("NumpyConvertTest_testNpzSameNames").toFile();
+		try {
+			final File image = new File("testfiles/pCMF48_red_new_36408_1.nxs");
+			for (String folder : new String[] {"a", "b"}) {
+				final File sub = new File(dir, folder);
+				sub.mkdirs();
+				FileUtils.copyNio(image, new File(sub, "copy.nxs"));
+			}
+			final File output = new File(dir, "compare.npz");
+
+			IConversionService service = new ConversionServiceImpl();
+			final IConversionContext context = service.open(dir.getAbsolutePath()+"/.*nxs");
+			context.setOutputPath(output.getAbsolutePath());
+			context.setDatasetNames(Arrays.asList(ENERGY));
+			context.setConversionScheme(scheme);
+			((IExtendedConversionContext)context).setRecursive(true);
+			service.process(context);
+
+			final List<String> names = new ArrayList<String>();
+			try (ZipInputStream zip = new ZipInputStream(new FileInputStream(output))) {
+				ZipEntry entry;
+				while ((entry = zip.getNextEntry()) != null) names.add(entry.getName());
+			}
+			assertEquals(2, names.size());
+			assertTrue(names.contains("copy/entry1/instrument/xas_scannable/Energy.npy"));
+			assertTrue(names.contains("copy_1/entry1/instrument/xas_scannable/Energy.npy"));
+		} finally {
+			FileUtils.recursiveDelete(dir);
+		}
+	}
+
+	@Test
+	public void testNpyManyFiles() throws Exception {
+
+		final File dir = Files.createTempDirectory("NumpyConvertTest_testNpyManyFiles").toFile();
+		try {
+			final File image = new File("testfiles/pCMF48_red_new_36408_1.nxs");
+			for (int i = 0; i < 2; i++) FileUtils.copyNio(image, new File(dir, "copy_"+i+".nxs"));
+
+			IConversionService service = new ConversionServiceImpl();
+			final IConversionContext context = service.open(dir.getAbsolutePath()+"/.*nxs");
+			context.setOutputPath(new File(dir, "temperature.npy").getAbsolutePath());
+			context.setDatasetNames(Arrays.asList(TEMPERATURE));
+			context.setConversionScheme(scheme);
+			try {
+				service.process(context);
+				fail("Two files cannot be written to one .npy file");
+			} catch (Exception expected) {
+				assertTrue(expected.getMessage(), expected.getMessage().contains(".npz"));
+			}
+		} finally {
+			FileUtils.recursiveDelete(dir);
+		}
+	}
+
+	private static void checkArray(byte[] npy, Dataset expected) {
+		final ByteBuffer buf = ByteBuffer.wrap(npy).order(ByteOrder.LITTLE_ENDIAN);
+		assertEquals((byte)0x93, buf.get(0));
+		assertEquals("NUMPY", new String(npy, 1, 5, StandardCharsets.ISO_8859_1));
+		assertEquals(1, buf.get(6));
+		final int length = 10+buf.getShort(8);
+		assertEquals(0, length%64);
+
+		final String header = new String(npy, 10, length-10, StandardCharsets.ISO_8859_1);
+		assertTrue(header, header.contains("'descr': '<f8'"));
+		assertTrue(header, header.contains("'shape': ("+expected.getSize()+",)"));
+		assertEquals(length+8*expected.getSize(), npy.length);
+		for (int i = 0; i < expected.getSize(); i++) {
+			assertEquals(expected.getElementDoubleAbs(i), buf.getDouble(length+8*i), 0);
+		}
+	}
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2026 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.dawnsci.conversion;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.dawb.common.util.io.FileUtils;
+import org.dawnsci.conversion.converters.FileSetExpander;
+import org.dawnsci.conversion.schemes.ImagesToHDFConverterScheme;
+import org.eclipse.dawnsci.analysis.api.conversion.IConversionContext;
+import org.eclipse.dawnsci.analysis.api.io.ILoaderService;
+import org.eclipse.dawnsci.hdf5.nexus.NexusFileFactoryHDF5;
+import org.eclipse.dawnsci.nexus.INexusFileFactory;
+import org.eclipse.january.IMonitor;
+import org.eclipse.january.dataset.Dataset;
+import org.eclipse.january.dataset.DatasetUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import uk.ac.diamond.osgi.services.ServiceProvider;
+import uk.ac.diamond.scisoft.analysis.io.LoaderServiceImpl;
+
+public class ShardedConversionTest {
+
+	@BeforeClass
+	public static void setUpServices() {
+		ServiceProvider.setService(ILoaderService.class, new LoaderServiceImpl());
+		ServiceProvider.setService(INexusFileFactory.class, new NexusFileFactoryHDF5());
+	}
+
+	@AfterClass
+	public static void tearDownServices() {
+		ServiceProvider.reset();
+	}
+
+	@Test
+	public void testMergedStack() throws Exception {
+
+		final File dir = Files.createTempDirectory("ShardedConversionTest_testMergedStack").toFile();
+		try {
+			final File images = new File(dir, "images");
+			images.mkdirs();
+			for (File png : FileSetExpander.of("testfiles/27099_drifted_png/.*png").list()) {
+				FileUtils.copyNio(png, new File(images, png.getName()));
+			}
+
+			final ConversionServiceImpl service = new ConversionServiceImpl();
+			final File whole = new File(dir, "whole.h5");
+			service.process(createContext(service, images, whole));
+
+			// The shards are run here as the worker JVMs need this class path outside OSGi
+			final File sharded = new File(dir, "sharded.h5");
+			final IConversionContext context = createContext(service, images, sharded);
+			final List<IConversionContext> shards = ShardPlanner.plan(context, 3);
+			assertEquals(3, shards.size());
+			// Each shard matches its own run of the images
+			int count = 0;
+			for (IConversionContext shard : shards) {
+				for (String path : shard.getFilePaths()) count += FileSetExpander.of(path).list().size();
+			}
+			assertEquals(10, count);
+			new ShardedConversion(null) {
+				@Override
+				void run(IConversionContext context, List<IConversionContext> shards) throws Exception {
+					for (IConversionContext shard : shards) {
+						service.process(service.fromJSON(((IExtendedConversionContext)shard).toJSON()));
+					}
+				}
+			}.process(context, shards);
+
+			final ILoaderService loader = ServiceProvider.getService(ILoaderService.class);
+			final Dataset expected = DatasetUtils.convertToDataset(loader.getDataset(whole.getAbsolutePath(), "/entry/data", (IMonitor)null));
+			final Dataset merged   = DatasetUtils.convertToDataset(loader.getDataset(sharded.getAbsolutePath(), "/entry/data", (IMonitor)null));
+			assertEquals(10, expected.getShape()[0]);
+			assertEquals("The merged stack must be in the order of a conversion which is not split", expected, merged);
+
+			for (IConversionContext shard : shards) assertFalse(new File(shard.getOutputPath()).exists());
+		} finally {
+			FileUtils.recursiveDelete(dir);
+		}
+	}
+
+	private static IConversionContext createContext(ConversionServiceImpl service, File images, File output) throws Exception {
+		final IConversionContext context = service.open(images.getAbsolutePath()+"/.*png");
+		context.setOutputPath(output.getAbsolutePath());
+		context.setDatasetName("/entry/data");
+		context.setConversionScheme(new ImagesToHDFConverterScheme());
+		return context;
+	}
+}
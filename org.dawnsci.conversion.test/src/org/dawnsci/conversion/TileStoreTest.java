@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2026 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.dawnsci.conversion;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.dawb.common.util.dataset.TileStore;
+import org.eclipse.january.dataset.Dataset;
+import org.eclipse.january.dataset.DatasetFactory;
+import org.eclipse.january.dataset.FloatDataset;
+import org.eclipse.january.dataset.ILazyWriteableDataset;
+import org.eclipse.january.dataset.Slice;
+import org.eclipse.january.dataset.SliceND;
+import org.junit.Test;
+
+public class TileStoreTest {
+
+	private static final int[] SHAPE = new int[] {5, 30, 40};
+
+	@Test
+	public void testOffHeap() throws Exception {
+		try (TileStore store = new TileStore(SHAPE, TileStore.DEFAULT_MEMORY)) {
+			assertFalse(store.isSpilled());
+			checkStack(store.createLazyDataset("tiles"));
+		}
+	}
+
+	@Test
+	public void testSpilled() throws Exception {
+		try (TileStore store = new TileStore(SHAPE, 0)) {
+			assertTrue(store.isSpilled());
+			checkStack(store.createLazyDataset("tiles"));
+		}
+	}
+
+	private static void checkStack(ILazyWriteableDataset lazy) throws Exception {
+		assertArrayEquals(SHAPE, lazy.getShape());
+		for (int i = 0; i < SHAPE[0]; i++) {
+			final Dataset tile = DatasetFactory.createRange(FloatDataset.class, i*1200, (i+1)*1200, 1).reshape(SHAPE[1], SHAPE[2]);
+			lazy.setSlice(null, tile, new SliceND(SHAPE, new int[] {i, 0, 0}, new int[] {i+1, SHAPE[1], SHAPE[2]}, null));
+		}
+
+		final Dataset tile = (Dataset)lazy.getSlice(new Slice(3, 4)).squeeze();
+		assertArrayEquals(new int[] {SHAPE[1], SHAPE[2]}, tile.getShape());
+		assertEquals(3*1200+2*40+7, tile.getDouble(2, 7), 0);
+
+		// Strided read across tiles
+		final Dataset column = (Dataset)lazy.getSlice(new Slice(null, null, 2), new Slice(5, 6), new Slice(39, null, -13));
+		assertArrayEquals(new int[] {3, 1, 4}, column.getShape());
+		assertEquals(4*1200+5*40+0, column.getDouble(2, 0, 3), 0);
+	}
+}
@@ -9,6 +9,8 @@
 package org.dawnsci.conversion;
 
 import java.io.File;
+import java.util.HashSet;
+import java.util.Set;
 
 import org.dawnsci.conversion.converters.CustomTomoConverter;
 import org.dawnsci.conversion.schemes.CustomTomoConverterScheme;
@@ -97,6 +99,242 @@ public class TomoConvertTest {
         }
    	}
 	
+	@Test
+	public void testTomoWriterPool() throws Exception {
+		
+		IConversionService service = new ConversionServiceImpl();
+		final String path = getTestFilePath("extraction_test_small.nxs");
+		
+		final IConversionContext context = service.open(path);
+		final File tmp = File.createTempFile("whatever", ".unknown");
+		final File dir = new File(tmp.getParent(), "tomo_export_testTomoWriterPool_"+System.currentTimeMillis());
+		tmp.delete();
+		dir.mkdirs();
+		dir.deleteOnExit();
+		
+        context.setConversionScheme(scheme);
+        
+        //Guide using the tomo converter bean
+        CustomTomoConverter.TomoInfoBean bean = new CustomTomoConverter.TomoInfoBean();
+        
+        if (!bean.setTomographyDefinition(path)) throw new Exception("Failed determining if a valid file");
+        
+        //set path to save to (leave null if individual images have there own path)
+        context.setOutputPath(dir.getAbsolutePath());
+        //Tomo bean knows the dataset name
+        context.setDatasetName(bean.getTomoDataName());
+        //Should be the same for all tomo blocks?
+        context.addSliceDimension(0, "all");
+        
+        //TODO test for different %xds
+        bean.setBits(8);
+        bean.setDarkFieldPath("%s/d_%05d");
+        bean.setFlatFieldPath("%s/f_%05d");
+        bean.setProjectionPath("%s/p_%05d");
+        bean.setWriters(4);
+        bean.setMaxPendingImages(2);
+        context.setUserObject(bean);
+        
+        service.process(context);
+        
+        File f = new File(dir.getAbsolutePath() + File.separator+ "extraction_test_small");
+        f.deleteOnExit();
+        final File[] fa = f.listFiles();
+        fa.toString();
+        for (File file : fa) {
+        	file.deleteOnExit();
+        	final IDataHolder holder = LoaderFactory.getData(file.getAbsolutePath());
+        	final IDataset   set    = holder.getDataset(0);
+        	if (set.getShape()[0]!=100 || set.getShape()[1]!=100) {
+        		throw new Exception("Incorrect shape of exported dataset!");
+        	}
+        }
+        
+        // Names must not depend on the order the writers finish
+        final File[] proj = f.listFiles((d, name) -> name.startsWith("p_"));
+        final Set<String> names = new HashSet<String>();
+        for (File file : proj) names.add(file.getName().replaceAll("\\..*$", ""));
+        for (int i = 0; i < proj.length; i++) {
+        	if (!names.contains(String.format("p_%05d", i))) {
+        		throw new Exception("Missing projection "+i);
+        	}
+        }
+        
+        // Check that 7 datasets were exported.
+        if (fa.length!=7) {
+        	String msg = "The directory: "+dir.getAbsolutePath()+" does not contain 7 images!";
+        	System.out.println(msg);
+        	throw new Exception(msg);
+        }
+   	}
+	
+	@Test
+	public void testTomoBlockRead() throws Exception {
+		
+		IConversionService service = new ConversionServiceImpl();
+		final String path = getTestFilePath("extraction_test_small.nxs");
+		
+		final IConversionContext context = service.open(path);
+		final File tmp = File.createTempFile("whatever", ".unknown");
+		final File dir = new File(tmp.getParent(), "tomo_export_testTomoBlockRead_"+System.currentTimeMillis());
+		tmp.delete();
+		dir.mkdirs();
+		dir.deleteOnExit();
+		
+        context.setConversionScheme(scheme);
+        
+        CustomTomoConverter.TomoInfoBean bean = new CustomTomoConverter.TomoInfoBean();
+        
+        if (!bean.setTomographyDefinition(path)) throw new Exception("Failed determining if a valid file");
+        
+        context.setOutputPath(dir.getAbsolutePath());
+        context.setDatasetName(bean.getTomoDataName());
+        context.addSliceDimension(0, "all");
+        
+        // Three images per read, the last block is short
+        ((IExtendedConversionContext)context).setBlockReadMemory(3*100*100*8);
+        
+        bean.setBits(8);
+        bean.setDarkFieldPath("%s/d_%05d");
+        bean.setFlatFieldPath("%s/f_%05d");
+        bean.setProjectionPath("%s/p_%05d");
+        context.setUserObject(bean);
+        
+        service.process(context);
+        
+        File f = new File(dir.getAbsolutePath() + File.separator+ "extraction_test_small");
+        f.deleteOnExit();
+        final File[] fa = f.listFiles();
+        for (File file : fa) {
+        	file.deleteOnExit();
+        	final IDataHolder holder = LoaderFactory.getData(file.getAbsolutePath());
+        	final IDataset   set    = holder.getDataset(0);
+        	if (set.getShape()[0]!=100 || set.getShape()[1]!=100) {
+        		throw new Exception("Incorrect shape of exported dataset!");
+        	}
+        }
+        
+        if (fa.length!=7) {
+        	String msg = "The directory: "+dir.getAbsolutePath()+" does not contain 7 images!";
+        	System.out.println(msg);
+        	throw new Exception(msg);
+        }
+   	}
+	
+	@Test
+	public void testTomoFollow() throws Exception {
+		
+		IConversionService service = new ConversionServiceImpl();
+		final String path = getTestFilePath("extraction_test_small.nxs");
+		
+		final IConversionContext context = service.open(path);
+		final File tmp = File.createTempFile("whatever", ".unknown");
+		final File dir = new File(tmp.getParent(), "tomo_export_testTomoFollow_"+System.currentTimeMillis());
+		tmp.delete();
+		dir.mkdirs();
+		dir.deleteOnExit();
+		
+        context.setConversionScheme(scheme);
+        
+        CustomTomoConverter.TomoInfoBean bean = new CustomTomoConverter.TomoInfoBean();
+        
+        if (!bean.setTomographyDefinition(path)) throw new Exception("Failed determining if a valid file");
+        
+        context.setOutputPath(dir.getAbsolutePath());
+        context.setDatasetName(bean.getTomoDataName());
+        context.addSliceDimension(0, "all");
+        
+        // The file is complete and has no end marker, all images are written once it has
+        // not grown for the timeout. Frames arriving and the marker are in CompareConvertTest
+        ((IExtendedConversionContext)context).setFollowTimeout(500);
+        ((IExtendedConversionContext)context).setFollowEndMarker("/entry1/end_of_scan");
+        
+        bean.setBits(8);
+        bean.setDarkFieldPath("%s/d_%05d");
+        bean.setFlatFieldPath("%s/f_%05d");
+        bean.setProjectionPath("%s/p_%05d");
+        context.setUserObject(bean);
+        
+        service.process(context);
+        
+        File f = new File(dir.getAbsolutePath() + File.separator+ "extraction_test_small");
+        f.deleteOnExit();
+        final File[] fa = f.listFiles();
+        for (File file : fa) {
+        	file.deleteOnExit();
+        	final IDataHolder holder = LoaderFactory.getData(file.getAbsolutePath());
+        	final IDataset   set    = holder.getDataset(0);
+        	if (set.getShape()[0]!=100 || set.getShape()[1]!=100) {
+        		throw new Exception("Incorrect shape of exported dataset!");
+        	}
+        }
+        
+        if (fa.length!=7) {
+        	String msg = "The directory: "+dir.getAbsolutePath()+" does not contain 7 images!";
+        	System.out.println(msg);
+        	throw new Exception(msg);
+        }
+   	}
+	
+	@Test
+	public void testTomoFlatField() throws Exception {
+		
+		IConversionService service = new ConversionServiceImpl();
+		final String path = getTestFilePath("extraction_test_small.nxs");
+		
+		final IConversionContext context = service.open(path);
+		final File tmp = File.createTempFile("whatever", ".unknown");
+		final File dir = new File(tmp.getParent(), "tomo_export_testTomoFlatField_"+System.currentTimeMillis());
+		tmp.delete();
+		dir.mkdirs();
+		dir.deleteOnExit();
+		
+        context.setConversionScheme(scheme);
+        
+        CustomTomoConverter.TomoInfoBean bean = new CustomTomoConverter.TomoInfoBean();
+        
+        if (!bean.setTomographyDefinition(path)) throw new Exception("Failed determining if a valid file");
+        
+        context.setOutputPath(dir.getAbsolutePath());
+        context.setDatasetName(bean.getTomoDataName());
+        context.addSliceDimension(0, "all");
+        
+        bean.setBits(8);
+        bean.setDarkFieldPath("%s/d_%05d");
+        bean.setFlatFieldPath("%s/f_%05d");
+        bean.setProjectionPath("%s/p_%05d");
+        bean.setFlatFieldCorrection(CustomTomoConverter.FlatFieldCorrection.CORRECTED);
+        context.setUserObject(bean);
+        
+        service.process(context);
+        
+        // One average written for each kind of field in the image key
+        final Set<Integer> kinds = new HashSet<Integer>();
+        for (int i = 0; i < bean.getNumberOfImages(); i++) kinds.add(bean.getImageKey().getInt(i));
+        final int averages = (kinds.contains(1) ? 1 : 0) + (kinds.contains(2) ? 1 : 0);
+        
+        File f = new File(dir.getAbsolutePath() + File.separator+ "extraction_test_small");
+        f.deleteOnExit();
+        final File[] fa = f.listFiles();
+        for (File file : fa) {
+        	file.deleteOnExit();
+        	final IDataHolder holder = LoaderFactory.getData(file.getAbsolutePath());
+        	final IDataset   set    = holder.getDataset(0);
+        	if (set.getShape()[0]!=100 || set.getShape()[1]!=100) {
+        		throw new Exception("Incorrect shape of exported dataset!");
+        	}
+        	if ((file.getName().startsWith("p_") || file.getName().contains("average")) && set.getElementClass()!=Float.class) {
+        		throw new Exception("Projection or average "+file.getName()+" is not written as floats!");
+        	}
+        }
+        
+        if (fa.length!=7+averages) {
+        	String msg = "The directory: "+dir.getAbsolutePath()+" does not contain "+(7+averages)+" images!";
+        	System.out.println(msg);
+        	throw new Exception(msg);
+        }
+   	}
+	
 	@Test
 	public void testTomoDifferentPaths() throws Exception {
 		
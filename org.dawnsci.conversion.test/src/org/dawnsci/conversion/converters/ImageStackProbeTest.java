@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2026 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.dawnsci.conversion.converters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.dawb.common.util.io.FileUtils;
+import org.eclipse.dawnsci.analysis.api.io.ILoaderService;
+import org.eclipse.january.IMonitor;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import uk.ac.diamond.osgi.services.ServiceProvider;
+import uk.ac.diamond.scisoft.analysis.io.LoaderServiceImpl;
+
+public class ImageStackProbeTest {
+
+	private File       dir;
+	private List<File> images;
+	private File       notes;
+
+	@BeforeClass
+	public static void setupServices() {
+		ServiceProvider.setService(ILoaderService.class, new LoaderServiceImpl());
+	}
+
+	@AfterClass
+	public static void tearDownServices() {
+		ServiceProvider.reset();
+	}
+
+	@Before
+	public void createFiles() throws Exception {
+		dir = Files.createTempDirectory("ImageStackProbeTest").toFile();
+		images = new ArrayList<File>();
+		for (File png : FileSetExpander.of("testfiles/27099_drifted_png/.*png").listNatural()) {
+			final File copy = new File(dir, png.getName());
+			Files.copy(png.toPath(), copy.toPath());
+			images.add(copy);
+		}
+		notes = new File(dir, "notes.png");
+		Files.writeString(notes.toPath(), "Not an image");
+	}
+
+	@After
+	public void deleteFiles() {
+		FileUtils.recursiveDelete(dir);
+	}
+
+	@Test
+	public void testFindImages() throws Exception {
+		final List<File> files = new ArrayList<File>(images);
+		files.add(3, notes);
+		Collections.reverse(files);
+
+		final List<String> found = ImageStackProbe.findImages(files, 2, null);
+		final List<String> expected = new ArrayList<String>();
+		for (File file : files) if (file != notes) expected.add(file.getAbsolutePath());
+		assertEquals("The images must be in the order of the files given", expected, found);
+
+		assertTrue(ImageStackProbe.findImages(files, 3, null).isEmpty());
+	}
+
+	@Test
+	public void testProbe() throws Exception {
+		final ImageStackProbe.Probe probe = ImageStackProbe.probe(images.get(0));
+		assertEquals(2, probe.getRank());
+
+		final ImageStackProbe.Probe broken = ImageStackProbe.probe(notes);
+		assertNull(broken.getShape());
+		assertEquals(-1, broken.getRank());
+	}
+
+	@Test
+	public void testCache() throws Exception {
+		final File image = images.get(0);
+		final ImageStackProbe.Probe probe = ImageStackProbe.probe(image);
+		assertSame(probe, ImageStackProbe.probe(image));
+
+		// A changed file is probed again
+		assertTrue(image.setLastModified(image.lastModified()-60000));
+		assertNotSame(probe, ImageStackProbe.probe(image));
+	}
+
+	@Test
+	public void testCancelled() throws Exception {
+		final IMonitor cancelled = new IMonitor.Stub() {
+			@Override
+			public boolean isCancelled() {
+				return true;
+			}
+		};
+		try {
+			ImageStackProbe.findImages(images, 2, cancelled);
+			fail("A cancelled probe should throw");
+		} catch (Exception expected) {
+			assertEquals("Conversion is cancelled!", expected.getMessage());
+		}
+	}
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2026 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.dawnsci.conversion.converters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.dawnsci.analysis.dataset.slicer.SliceFromSeriesMetadata;
+import org.eclipse.dawnsci.analysis.dataset.slicer.SliceViewIterator;
+import org.eclipse.dawnsci.analysis.dataset.slicer.SliceVisitor;
+import org.eclipse.january.IMonitor;
+import org.eclipse.january.dataset.Dataset;
+import org.eclipse.january.dataset.DatasetFactory;
+import org.eclipse.january.dataset.DatasetUtils;
+import org.eclipse.january.dataset.DoubleDataset;
+import org.eclipse.january.dataset.IDataset;
+import org.eclipse.january.dataset.ILazyDataset;
+import org.eclipse.january.dataset.LazyDataset;
+import org.eclipse.january.dataset.Slice;
+import org.eclipse.january.dataset.SliceND;
+import org.eclipse.january.io.ILazyLoader;
+import org.junit.Test;
+
+public class SlicePlannerTest {
+
+	private static final int[] SHAPE = new int[] {6, 1, 4};
+
+	@Test
+	public void testChunked() throws Exception {
+		final AtomicInteger reads = new AtomicInteger();
+		final ILazyDataset lz = createStack(reads);
+		final SlicePlanner planner = new SlicePlanner(lz, new int[] {3, 1, 4}, 0);
+		assertTrue(planner.isUseful());
+
+		final List<IDataset> slices = visit(planner, new SliceViewIterator(lz, new SliceND(SHAPE), 1, 2));
+		checkSlices(lz, new SliceND(SHAPE), slices);
+		assertEquals("One read per chunk", 2, reads.get());
+	}
+
+	@Test
+	public void testBudget() throws Exception {
+		final AtomicInteger reads = new AtomicInteger();
+		final ILazyDataset lz = createStack(reads);
+		// Two slices of four doubles per block
+		final SlicePlanner planner = new SlicePlanner(lz, null, 2*4*8);
+		assertTrue(planner.isUseful());
+
+		final List<IDataset> slices = visit(planner, new SliceViewIterator(lz, new SliceND(SHAPE), 1, 2));
+		checkSlices(lz, new SliceND(SHAPE), slices);
+		assertEquals(3, reads.get());
+	}
+
+	@Test
+	public void testNotUseful() throws Exception {
+		assertFalse(new SlicePlanner(createStack(null), null, 0).isUseful());
+		assertFalse(new SlicePlanner(createStack(null), new int[] {1, 1, 4}, 0).isUseful());
+		// Chunks of the wrong rank are ignored
+		assertFalse(new SlicePlanner(createStack(null), new int[] {3, 4}, 0).isUseful());
+	}
+
+	@Test
+	public void testStep() throws Exception {
+		final ILazyDataset lz = createStack(null);
+		final SliceND sampling = new SliceND(SHAPE, new Slice(0, 6, 2), null, null);
+		final SlicePlanner planner = new SlicePlanner(lz, new int[] {3, 1, 4}, 0);
+
+		final List<IDataset> slices = visit(planner, new SliceViewIterator(lz, sampling, 1, 2));
+		assertEquals(3, slices.size());
+		checkSlices(lz, sampling, slices);
+	}
+
+	@Test
+	public void testSqueezed() throws Exception {
+		final ILazyDataset lz = createStack(null);
+		final SlicePlanner planner = new SlicePlanner(lz, new int[] {3, 1, 4}, 0);
+
+		// The slices keep the rank of their view, the converter squeezes them
+		for (IDataset slice : visit(planner, new SliceViewIterator(lz, new SliceND(SHAPE), 1, 2))) {
+			assertEquals(3, slice.getRank());
+			slice.squeeze();
+			assertEquals(1, slice.getRank());
+			assertEquals(4, slice.getSize());
+			assertNotNull(slice.getFirstMetadata(SliceFromSeriesMetadata.class));
+		}
+	}
+
+	@Test
+	public void testNullSlice() throws Exception {
+		final ILazyDataset lz = createStack(null);
+		final SlicePlanner planner = new SlicePlanner(lz, new int[] {3, 1, 4}, 0);
+
+		// The third view has no slice from its input, it is read on its own
+		final SliceViewIterator it = new SliceViewIterator(lz, new SliceND(SHAPE), 1, 2) {
+			private int count;
+			@Override
+			public ILazyDataset next() {
+				final ILazyDataset view = super.next();
+				if (count++ == 2) view.clearMetadata(SliceFromSeriesMetadata.class);
+				return view;
+			}
+		};
+		final List<IDataset> slices = visit(planner, it);
+		assertEquals(SHAPE[0], slices.size());
+		for (int i = 0; i < slices.size(); i++) {
+			assertEquals(i*4, DatasetUtils.convertToDataset(slices.get(i)).getElementDoubleAbs(0), 0);
+		}
+	}
+
+	private static List<IDataset> visit(SlicePlanner planner, SliceViewIterator it) throws Exception {
+		final List<IDataset> slices = new ArrayList<IDataset>();
+		planner.run(it, new SliceVisitor() {
+			@Override
+			public void visit(IDataset slice) throws Exception {
+				slices.add(slice);
+			}
+			@Override
+			public boolean isCancelled() {
+				return false;
+			}
+		});
+		return slices;
+	}
+
+	/**
+	 * The slices must be those read one by one, in the same order.
+	 */
+	private static void checkSlices(ILazyDataset lz, SliceND sampling, List<IDataset> slices) throws Exception {
+		final SliceViewIterator it = new SliceViewIterator(lz, sampling, 1, 2);
+		int i = 0;
+		while (it.hasNext()) {
+			final Dataset expected = DatasetUtils.convertToDataset(it.next().getSlice());
+			final Dataset actual   = DatasetUtils.convertToDataset(slices.get(i++));
+			assertEquals(expected.squeeze(), actual.getSliceView().squeeze());
+		}
+		assertEquals(i, slices.size());
+	}
+
+	/**
+	 *
+	 * @param reads counts the reads from the loader, may be null
+	 * @return a lazy stack of SHAPE counting up from 0
+	 */
+	private static ILazyDataset createStack(final AtomicInteger reads) {
+		final Dataset data = DatasetFactory.createRange(DoubleDataset.class, SHAPE[0]*SHAPE[1]*SHAPE[2]).reshape(SHAPE);
+		final ILazyLoader loader = new ILazyLoader() {
+			private static final long serialVersionUID = 1L;
+			@Override
+			public boolean isFileReadable() {
+				return true;
+			}
+			@Override
+			public IDataset getDataset(IMonitor mon, SliceND slice) throws IOException {
+				if (reads != null) reads.incrementAndGet();
+				return data.getSlice(slice);
+			}
+		};
+		return new LazyDataset(loader, "stack", DoubleDataset.class, SHAPE);
+	}
+}
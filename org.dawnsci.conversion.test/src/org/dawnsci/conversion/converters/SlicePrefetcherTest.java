@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2026 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.dawnsci.conversion.converters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.dawnsci.conversion.ConversionStatistics;
+import org.eclipse.dawnsci.analysis.dataset.slicer.SliceViewIterator;
+import org.eclipse.january.IMonitor;
+import org.eclipse.january.dataset.Dataset;
+import org.eclipse.january.dataset.DatasetFactory;
+import org.eclipse.january.dataset.DatasetUtils;
+import org.eclipse.january.dataset.DoubleDataset;
+import org.eclipse.january.dataset.IDataset;
+import org.eclipse.january.dataset.ILazyDataset;
+import org.eclipse.january.dataset.LazyDataset;
+import org.eclipse.january.dataset.SliceND;
+import org.eclipse.january.io.ILazyLoader;
+import org.junit.Test;
+
+public class SlicePrefetcherTest {
+
+	private static final int   SLICES      = 20;
+	private static final int   WIDTH       = 4;
+	private static final long  SLICE_BYTES = WIDTH*8;
+
+	@Test
+	public void testOrder() throws Exception {
+		try (SlicePrefetcher prefetcher = new SlicePrefetcher(iterate(createStack(-1, null)), 3*SLICE_BYTES, null)) {
+			for (int i = 0; i < SLICES; i++) {
+				final IDataset slice = prefetcher.next();
+				assertEquals(i*WIDTH, DatasetUtils.convertToDataset(slice).getElementDoubleAbs(0), 0);
+			}
+			assertNull(prefetcher.next());
+			assertNull(prefetcher.next());
+		}
+	}
+
+	@Test
+	public void testBudget() throws Exception {
+		final ConversionStatistics statistics = new ConversionStatistics();
+		try (SlicePrefetcher prefetcher = new SlicePrefetcher(iterate(createStack(-1, null)), 3*SLICE_BYTES, statistics)) {
+			prefetcher.next();
+			Thread.sleep(200); // Let the reader fill the queue
+			int count = 1;
+			while (prefetcher.next() != null) count++;
+			assertEquals(SLICES, count);
+		}
+		// Three slices queued and one waiting to be queued at most
+		assertTrue(statistics.getPeakQueuedBytes() > 0);
+		assertTrue(statistics.getPeakQueuedBytes() <= 4*SLICE_BYTES);
+	}
+
+	@Test
+	public void testError() throws Exception {
+		try (SlicePrefetcher prefetcher = new SlicePrefetcher(iterate(createStack(5, null)), 3*SLICE_BYTES, null)) {
+			for (int i = 0; i < 5; i++) {
+				assertEquals(i*WIDTH, DatasetUtils.convertToDataset(prefetcher.next()).getElementDoubleAbs(0), 0);
+			}
+			try {
+				prefetcher.next();
+				fail("The error reading slice 5 should be thrown to the converter");
+			} catch (Exception expected) {
+				// Thrown by the loader on the background thread, may be wrapped by the lazy dataset
+			}
+			assertNull(prefetcher.next());
+		}
+	}
+
+	@Test
+	public void testClose() throws Exception {
+		final AtomicInteger loads = new AtomicInteger();
+		final SlicePrefetcher prefetcher = new SlicePrefetcher(iterate(createStack(-1, loads)), SLICE_BYTES, null);
+		prefetcher.next();
+		Thread.sleep(200); // The reader blocks on the full queue
+		prefetcher.close();
+
+		Thread.sleep(200);
+		final int count = loads.get();
+		Thread.sleep(200);
+		assertEquals("Slices were read after close", count, loads.get());
+		assertTrue(count < SLICES);
+	}
+
+	private static SliceViewIterator iterate(ILazyDataset lazy) {
+		return new SliceViewIterator(lazy, new SliceND(lazy.getShape()), 1);
+	}
+
+	/**
+	 *
+	 * @param failAt slice the loader fails to read, -1 to read them all
+	 * @param loads counts the slices read, may be null
+	 * @return a lazy stack of SLICES rows of WIDTH doubles, counting up from 0
+	 */
+	private static ILazyDataset createStack(final int failAt, final AtomicInteger loads) {
+		final Dataset data = DatasetFactory.createRange(DoubleDataset.class, SLICES*WIDTH).reshape(SLICES, WIDTH);
+		final ILazyLoader loader = new ILazyLoader() {
+			private static final long serialVersionUID = 1L;
+			@Override
+			public boolean isFileReadable() {
+				return true;
+			}
+			@Override
+			public IDataset getDataset(IMonitor mon, SliceND slice) throws IOException {
+				if (loads != null) loads.incrementAndGet();
+				if (slice.getStart()[0] == failAt) throw new IOException("Cannot read slice "+failAt);
+				return data.getSlice(slice);
+			}
+		};
+		return new LazyDataset(loader, "stack", DoubleDataset.class, SLICES, WIDTH);
+	}
+}
@@ -8,6 +8,7 @@
  */ 
 package org.dawnsci.conversion.ui;
 
+import org.dawnsci.conversion.DatasetIndex;
 import org.eclipse.jface.resource.ImageDescriptor;
 import org.eclipse.swt.graphics.Image;
 import org.eclipse.ui.plugin.AbstractUIPlugin;
@@ -37,6 +38,8 @@ public class Activator extends AbstractUIPlugin {
 	public void start(BundleContext context) throws Exception {
 		super.start(context);
 		plugin = this;
+		// The wizard keeps the dataset index between sessions, headless conversions do not
+		DatasetIndex.useUserFolder();
 	}
 
 	/*
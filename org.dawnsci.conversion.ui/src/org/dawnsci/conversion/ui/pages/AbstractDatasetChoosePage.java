@@ -8,11 +8,18 @@
  */
 package org.dawnsci.conversion.ui.pages;
 
+import java.io.File;
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.dawb.common.ui.util.GridUtils;
 import org.dawb.common.ui.wizard.ResourceChoosePage;
+import org.dawnsci.conversion.DatasetIndex;
+import org.dawnsci.conversion.DatasetIndex.DatasetInfo;
 import org.dawnsci.conversion.ui.Activator;
 import org.dawnsci.conversion.ui.api.IConversionWizardPage;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -66,6 +73,12 @@ public abstract class AbstractDatasetChoosePage extends ResourceChoosePage imple
 
 	protected IMetadata          imeta;
 	protected IDataHolder        holder;
+	protected Map<String, int[]> shapes;
+
+	/**
+	 * Maximum number of files of the folder of the source indexed in the background.
+	 */
+	private static final int MAX_SIBLINGS = 50;
 	
 
 	protected AbstractDatasetChoosePage(String pageName, String description, ImageDescriptor icon) {
@@ -205,6 +218,22 @@ public abstract class AbstractDatasetChoosePage extends ResourceChoosePage imple
 
 					final String source = getSourcePath(context);
 					if (source==null || "".equals(source)) return;
+					shapes = null;
+
+					// HDF5 and NeXus files are listed from the index, only loaded if they have changed since indexed
+					final File file = new File(source);
+					if (DatasetIndex.isIndexed(file)) {
+						final Map<String, DatasetInfo> datasets = DatasetIndex.getDefault().getDatasets(file,
+								() -> ServiceProvider.getService(ILoaderService.class).getData(source, new ProgressMonitorWrapper(monitor)));
+						final List<String> names = DatasetIndex.getSlicableNames(datasets, getMinimumDataSize());
+						final Map<String, int[]> indexed = new LinkedHashMap<String, int[]>(names.size());
+						for (String name : names) indexed.put(name, datasets.get(name).getShape());
+						shapes = indexed;
+						setDataNames(names.toArray(new String[names.size()]), null, null);
+						refreshSiblings(file);
+						return;
+					}
+
 					// Attempt to use meta data, save memory
 					IDataHolder holder = ServiceProvider.getService(ILoaderService.class).getData(source, new ProgressMonitorWrapper(monitor));
 					final List<String> names = DataHolderUtils.getSlicableNames(holder, getMinimumDataSize());
@@ -220,6 +249,20 @@ public abstract class AbstractDatasetChoosePage extends ResourceChoosePage imple
 		});
 	}
 
+	/**
+	 * Indexes the other HDF5 and NeXus files of the folder of a file in the background,
+	 * as they are likely to be converted next.
+	 * @param file
+	 */
+	private static void refreshSiblings(final File file) {
+		final File   dir   = file.getAbsoluteFile().getParentFile();
+		final File[] files = dir!=null ? dir.listFiles(f -> f.isFile() && DatasetIndex.isIndexed(f) && !f.equals(file.getAbsoluteFile())) : null;
+		if (files==null || files.length==0) return;
+		Arrays.sort(files);
+		final List<File> siblings = new ArrayList<File>(Arrays.asList(files));
+		DatasetIndex.getDefault().refresh(siblings.subList(0, Math.min(MAX_SIBLINGS, siblings.size())));
+	}
+
 	protected abstract int getMinimumDataSize();
 
 	protected void setDataNames(String[] array, final IMetadata imeta, final IDataHolder holder) {
@@ -245,6 +288,9 @@ public abstract class AbstractDatasetChoosePage extends ResourceChoosePage imple
 				     ? imeta.getDataShapes().get(name).length
 				     : -1;
 			}
+			if (rank<0 && shapes!=null && shapes.get(name)!=null) {
+				rank = getSqueezedRank(shapes.get(name));
+			}
 			if (rank<0 && holder!=null) {
 				final ILazyDataset ld = holder.getLazyDataset(name);
 				rank = ld!=null ? ld.squeezeEnds().getRank() : -1;
@@ -256,6 +302,18 @@ public abstract class AbstractDatasetChoosePage extends ResourceChoosePage imple
 		}		
 	}
 
+	/**
+	 * 
+	 * @param shape
+	 * @return the rank of the shape without its leading and trailing dimensions of size one
+	 */
+	private static int getSqueezedRank(int[] shape) {
+		int start = 0, end = shape.length;
+		while (start < end && shape[start]==1) start++;
+		while (end > start && shape[end-1]==1) end--;
+		return end-start;
+	}
+
 	public String[] getSelected() {
 		Object[] elements = checkboxTableViewer.getCheckedElements();
 		final String[] ret= new String[elements.length];
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2026 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.dawnsci.conversion;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The outcome of a batch conversion, the files which converted and
+ * those which failed with the reason for the failure.
+ */
+public class BatchConversionResult {
+
+	private final List<File>           converted = new ArrayList<>(89);
+	private final Map<File, Exception> failures  = new LinkedHashMap<>(7);
+	private boolean                    cancelled;
+
+	synchronized void addConverted(File file) {
+		converted.add(file);
+	}
+
+	synchronized void addFailure(File file, Exception error) {
+		failures.put(file, error);
+	}
+
+	synchronized void setCancelled(boolean cancelled) {
+		this.cancelled = cancelled;
+	}
+
+	/**
+	 *
+	 * @return the files converted without error, in order of completion
+	 */
+	public synchronized List<File> getConverted() {
+		return Collections.unmodifiableList(new ArrayList<>(converted));
+	}
+
+	/**
+	 *
+	 * @return the files which failed to convert and the exception each failed with
+	 */
+	public synchronized Map<File, Exception> getFailures() {
+		return Collections.unmodifiableMap(new LinkedHashMap<>(failures));
+	}
+
+	/**
+	 *
+	 * @return true if the batch was cancelled before every file was converted
+	 */
+	public synchronized boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 *
+	 * @return true if every file converted
+	 */
+	public synchronized boolean isSuccessful() {
+		return failures.isEmpty() && !cancelled;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "BatchConversionResult [converted=" + converted.size() + ", failed=" + failures.size()
+				+ ", cancelled=" + cancelled + "]";
+	}
+}
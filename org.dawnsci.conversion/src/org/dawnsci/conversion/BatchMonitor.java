@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2026 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.dawnsci.conversion;
+
+import java.io.File;
+
+import org.eclipse.january.IMonitor;
+
+/**
+ * Aggregates the progress of the conversions of a batch into one monitor.
+ * Each conversion gets its own child monitor, the work of all the children
+ * is reported to the parent which is only ever called by one thread at a time.
+ * Cancelling the parent cancels every conversion.
+ */
+class BatchMonitor {
+
+	private final IMonitor parent;
+
+	BatchMonitor(IMonitor parent) {
+		this.parent = parent;
+	}
+
+	boolean isCancelled() {
+		if (parent == null) return false;
+		synchronized (this) {
+			return parent.isCancelled();
+		}
+	}
+
+	synchronized void fileDone(File file) {
+		if (parent != null) parent.subTask("Converted '"+file.getName()+"'");
+	}
+
+	/**
+	 *
+	 * @param file
+	 * @return monitor for the conversion of file, null if there is no parent monitor
+	 */
+	IMonitor createChild(final File file) {
+		if (parent == null) return null;
+		return new IMonitor() {
+			@Override
+			public void worked(int amount) {
+				synchronized (BatchMonitor.this) {
+					parent.worked(amount);
+				}
+			}
+
+			@Override
+			public boolean isCancelled() {
+				return BatchMonitor.this.isCancelled();
+			}
+
+			@Override
+			public void subTask(String taskName) {
+				synchronized (BatchMonitor.this) {
+					parent.subTask(file.getName()+": "+taskName);
+				}
+			}
+		};
+	}
+}
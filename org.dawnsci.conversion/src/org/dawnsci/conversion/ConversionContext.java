@@ -12,19 +12,32 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
-import org.eclipse.dawnsci.analysis.api.conversion.IConversionContext;
+import org.dawnsci.conversion.converters.FileSetExpander;
 import org.eclipse.dawnsci.analysis.api.conversion.IConversionScheme;
 import org.eclipse.dawnsci.analysis.api.conversion.IConversionVisitor;
+import org.eclipse.dawnsci.analysis.api.io.IDataHolder;
 import org.eclipse.january.IMonitor;
 import org.eclipse.january.dataset.ILazyDataset;
 import org.eclipse.january.dataset.Slice;
 
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
 
-class ConversionContext implements IConversionContext {
+class ConversionContext implements IExtendedConversionContext {
+
+	/**
+	 * Files other than the one converted, for instance those compared with it, are
+	 * held too, the least recently used being released first.
+	 */
+	private static final int MAX_HOLDERS = 4;
 
 	// Core data to drive the context (some can still be null)
 	private IConversionScheme   conversionScheme;
@@ -46,12 +59,188 @@ class ConversionContext implements IConversionContext {
 	private int[]               selectedShape;
 	private File                selectedConversionFile;
 	private String              selectedH5Path;
+	private final Map<String,IDataHolder> dataHolders = new LinkedHashMap<String,IDataHolder>(7, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, IDataHolder> eldest) {
+			return size() > MAX_HOLDERS;
+		}
+	};
 
 	// Monitoring
 	private IMonitor            monitor;
 	private int                 workSize=100;
 	private boolean             echoMacro = true;
 
+	// Performance
+	private int                 parallelism=1;
+	private int                 maxSlicesInFlight=0;
+	private long                prefetchMemory=0;
+	private long                blockReadMemory=0;
+	private boolean             recursive=false;
+	private boolean             resumable=false;
+	private long                followTimeout=0;
+	private String              followEndMarker;
+
+	// Instrumentation
+	private final List<IConversionListener> listeners = new CopyOnWriteArrayList<IConversionListener>();
+	private ConversionStatistics statistics = new ConversionStatistics(listeners);
+	private String              statisticsPath;
+
+	
+	/**
+	 * Creates a context with the same configuration as this one, used to
+	 * run one conversion per file in a batch. The transient and monitoring
+	 * data are not copied.
+	 * 
+	 * @return copy
+	 */
+	ConversionContext copy() {
+		final ConversionContext copy = new ConversionContext();
+		copy.conversionScheme  = conversionScheme;
+		copy.filePaths         = filePaths!=null ? new ArrayList<String>(filePaths) : null;
+		copy.datasetNames      = datasetNames!=null ? new ArrayList<String>(datasetNames) : null;
+		copy.outputFolder      = outputFolder;
+		copy.sliceDimensions   = sliceDimensions!=null ? new HashMap<Integer,String>(sliceDimensions) : null;
+		copy.userObject        = userObject;
+		copy.lazyDataset       = lazyDataset;
+		copy.conversionVisitor = conversionVisitor;
+		copy.expression        = expression;
+		copy.axisDatasetName   = axisDatasetName;
+		copy.axesNames         = axesNames!=null ? new HashMap<Integer,String>(axesNames) : null;
+		copy.workSize          = workSize;
+		copy.echoMacro         = echoMacro;
+		copy.parallelism       = parallelism;
+		copy.maxSlicesInFlight = maxSlicesInFlight;
+		copy.prefetchMemory    = prefetchMemory;
+		copy.blockReadMemory   = blockReadMemory;
+		copy.recursive         = recursive;
+		copy.resumable         = resumable;
+		copy.followTimeout     = followTimeout;
+		copy.followEndMarker   = followEndMarker;
+		// Not the statistics path, each copy would overwrite the statistics of the others
+		copy.listeners.addAll(listeners);
+		return copy;
+	}
+
+	/**
+	 * 
+	 * @param suffix
+	 * @return the statistics path with _suffix before its extension, null if
+	 * the statistics are not written
+	 */
+	String getStatisticsPath(String suffix) {
+		if (statisticsPath == null) return null;
+		final File   file = new File(statisticsPath);
+		final String name = file.getName();
+		final int    pos  = name.lastIndexOf('.');
+		final String derived = pos > 0 ? name.substring(0, pos)+"_"+suffix+name.substring(pos) : name+"_"+suffix;
+		return new File(file.getParentFile(), derived).getPath();
+	}
+	
+	/**
+	 * Writes the configuration of the context as JSON, as copy() copies it. The
+	 * scheme is written as its class name, which must have a no argument constructor,
+	 * and the user object as its class name and its properties.
+	 * 
+	 * @return JSON object
+	 * @throws IllegalArgumentException if the context has a lazy dataset or a visitor,
+	 * which cannot be written
+	 * @throws Exception if the user object cannot be written
+	 */
+	@Override
+	public String toJSON() throws Exception {
+		if (lazyDataset!=null || conversionVisitor!=null) {
+			throw new IllegalArgumentException("A context with a lazy dataset or a conversion visitor cannot be written as JSON");
+		}
+		final Map<String, Object> map = new LinkedHashMap<String, Object>(23);
+		map.put("conversionScheme",  conversionScheme!=null ? conversionScheme.getClass().getName() : null);
+		map.put("filePaths",         filePaths);
+		map.put("datasetNames",      datasetNames);
+		map.put("outputPath",        outputFolder);
+		map.put("sliceDimensions",   sliceDimensions);
+		map.put("userObjectClass",   userObject!=null ? userObject.getClass().getName() : null);
+		map.put("userObject",        userObject);
+		map.put("expression",        expression);
+		map.put("axisDatasetName",   axisDatasetName);
+		map.put("axesNames",         axesNames);
+		map.put("workSize",          workSize);
+		map.put("echoMacro",         echoMacro);
+		map.put("parallelism",       parallelism);
+		map.put("maxSlicesInFlight", maxSlicesInFlight);
+		map.put("prefetchMemory",    prefetchMemory);
+		map.put("blockReadMemory",   blockReadMemory);
+		map.put("recursive",         recursive);
+		map.put("resumable",         resumable);
+		map.put("followTimeout",     followTimeout);
+		map.put("followEndMarker",   followEndMarker);
+		map.put("statisticsPath",    statisticsPath);
+		return createMapper().writeValueAsString(map);
+	}
+	
+	/**
+	 * Reads a context written by toJSON().
+	 * 
+	 * @param json
+	 * @return context
+	 * @throws Exception if the scheme or user object classes cannot be created
+	 */
+	static ConversionContext fromJSON(String json) throws Exception {
+		final ObjectMapper mapper = createMapper();
+		final JsonNode     root   = mapper.readTree(json);
+		
+		final ConversionContext context = new ConversionContext();
+		final String scheme = getText(root, "conversionScheme");
+		if (scheme!=null) context.conversionScheme = (IConversionScheme)Class.forName(scheme).getConstructor().newInstance();
+		if (root.hasNonNull("filePaths"))    context.filePaths    = getList(root.get("filePaths"));
+		if (root.hasNonNull("datasetNames")) context.datasetNames = getList(root.get("datasetNames"));
+		context.outputFolder    = getText(root, "outputPath");
+		context.sliceDimensions = getDimensionMap(root.get("sliceDimensions"));
+		final String userClass = getText(root, "userObjectClass");
+		if (userClass!=null) context.userObject = mapper.treeToValue(root.get("userObject"), Class.forName(userClass));
+		context.expression      = root.path("expression").asBoolean(false);
+		context.axisDatasetName = getText(root, "axisDatasetName");
+		context.axesNames       = getDimensionMap(root.get("axesNames"));
+		context.workSize        = root.path("workSize").asInt(100);
+		context.echoMacro       = root.path("echoMacro").asBoolean(true);
+		context.setParallelism(root.path("parallelism").asInt(1));
+		context.setMaxSlicesInFlight(root.path("maxSlicesInFlight").asInt(0));
+		context.setPrefetchMemory(root.path("prefetchMemory").asLong(0));
+		context.setBlockReadMemory(root.path("blockReadMemory").asLong(0));
+		context.recursive       = root.path("recursive").asBoolean(false);
+		context.resumable       = root.path("resumable").asBoolean(false);
+		context.setFollowTimeout(root.path("followTimeout").asLong(0));
+		context.followEndMarker = getText(root, "followEndMarker");
+		context.statisticsPath  = getText(root, "statisticsPath");
+		return context;
+	}
+
+	private static ObjectMapper createMapper() {
+		final ObjectMapper mapper = new ObjectMapper();
+		mapper.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
+		mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+		return mapper;
+	}
+
+	private static String getText(JsonNode root, String name) {
+		return root.hasNonNull(name) ? root.get(name).asText() : null;
+	}
+
+	private static List<String> getList(JsonNode array) {
+		final List<String> list = new ArrayList<String>(array.size());
+		for (JsonNode item : array) list.add(item.asText());
+		return list;
+	}
+
+	private static Map<Integer, String> getDimensionMap(JsonNode object) {
+		if (object==null || object.isNull()) return null;
+		final Map<Integer, String> map = new HashMap<Integer, String>(7);
+		for (Iterator<Map.Entry<String, JsonNode>> it = object.fields(); it.hasNext();) {
+			final Map.Entry<String, JsonNode> entry = it.next();
+			map.put(Integer.valueOf(entry.getKey()), entry.getValue().asText());
+		}
+		return map;
+	}
 	
 	public boolean isEchoMacro() {
 		return echoMacro;
@@ -73,10 +262,10 @@ class ConversionContext implements IConversionContext {
 		this.filePaths = new ArrayList<String>(paths.length);
 		
 		for (int i = 0; i < paths.length; i++) {
-			// In order to parse the regex, it must have / not \
+			// In order to parse the regex, it must have / not \, the name of a file quoted is kept as it is
 			if (paths[i] == null)
 				throw new Exception("A folder, file or list of files compatible with the conversion tool needs to be selected.");
-			String path = paths[i].replace('\\', '/');
+			String path = FileSetExpander.toSlashes(paths[i]);
 			if (path.startsWith("file:/")) {
 				path = path.substring("file:/".length());
 			}
@@ -169,6 +358,17 @@ class ConversionContext implements IConversionContext {
 				+ ((lazyDataset == null) ? 0 : lazyDataset.hashCode());
 		result = prime * result
 				+ ((outputFolder == null) ? 0 : outputFolder.hashCode());
+		result = prime * result + parallelism;
+		result = prime * result + maxSlicesInFlight;
+		result = prime * result + (int) (prefetchMemory ^ (prefetchMemory >>> 32));
+		result = prime * result + (int) (blockReadMemory ^ (blockReadMemory >>> 32));
+		result = prime * result + (recursive ? 1231 : 1237);
+		result = prime * result + (resumable ? 1231 : 1237);
+		result = prime * result + (int) (followTimeout ^ (followTimeout >>> 32));
+		result = prime * result
+				+ ((followEndMarker == null) ? 0 : followEndMarker.hashCode());
+		result = prime * result
+				+ ((statisticsPath == null) ? 0 : statisticsPath.hashCode());
 		result = prime
 				* result
 				+ ((selectedConversionFile == null) ? 0
@@ -218,6 +418,30 @@ class ConversionContext implements IConversionContext {
 				return false;
 		} else if (!outputFolder.equals(other.outputFolder))
 			return false;
+		if (parallelism != other.parallelism)
+			return false;
+		if (maxSlicesInFlight != other.maxSlicesInFlight)
+			return false;
+		if (prefetchMemory != other.prefetchMemory)
+			return false;
+		if (blockReadMemory != other.blockReadMemory)
+			return false;
+		if (recursive != other.recursive)
+			return false;
+		if (resumable != other.resumable)
+			return false;
+		if (followTimeout != other.followTimeout)
+			return false;
+		if (followEndMarker == null) {
+			if (other.followEndMarker != null)
+				return false;
+		} else if (!followEndMarker.equals(other.followEndMarker))
+			return false;
+		if (statisticsPath == null) {
+			if (other.statisticsPath != null)
+				return false;
+		} else if (!statisticsPath.equals(other.statisticsPath))
+			return false;
 		if (selectedConversionFile == null) {
 			if (other.selectedConversionFile != null)
 				return false;
@@ -247,6 +471,13 @@ class ConversionContext implements IConversionContext {
 		return selectedConversionFile;
 	}
 	public void setSelectedConversionFile(File selectedConversionFile) {
+		// The holders of the files done with are released as the next file is converted
+		if (selectedConversionFile != null && !selectedConversionFile.equals(this.selectedConversionFile)) {
+			final String path = selectedConversionFile.getAbsolutePath();
+			synchronized (dataHolders) {
+				dataHolders.keySet().removeIf(p -> !p.equals(path));
+			}
+		}
 		this.selectedConversionFile = selectedConversionFile;
 	}
 	@Override
@@ -264,6 +495,116 @@ class ConversionContext implements IConversionContext {
 	public void setWorkSize(int workSize) {
 		this.workSize = workSize;
 	}
+	@Override
+	public int getParallelism() {
+		return parallelism;
+	}
+	@Override
+	public void setParallelism(int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+	}
+	@Override
+	public int getMaxSlicesInFlight() {
+		return maxSlicesInFlight;
+	}
+	@Override
+	public void setMaxSlicesInFlight(int maxSlices) {
+		this.maxSlicesInFlight = Math.max(0, maxSlices);
+	}
+	@Override
+	public long getPrefetchMemory() {
+		return prefetchMemory;
+	}
+	@Override
+	public void setPrefetchMemory(long bytes) {
+		this.prefetchMemory = Math.max(0, bytes);
+	}
+	@Override
+	public long getBlockReadMemory() {
+		return blockReadMemory;
+	}
+	@Override
+	public void setBlockReadMemory(long bytes) {
+		this.blockReadMemory = Math.max(0, bytes);
+	}
+	@Override
+	public boolean isRecursive() {
+		return recursive;
+	}
+	@Override
+	public void setRecursive(boolean recursive) {
+		this.recursive = recursive;
+	}
+	@Override
+	public boolean isResumable() {
+		return resumable;
+	}
+	@Override
+	public void setResumable(boolean resumable) {
+		this.resumable = resumable;
+	}
+	@Override
+	public long getFollowTimeout() {
+		return followTimeout;
+	}
+	@Override
+	public void setFollowTimeout(long millis) {
+		this.followTimeout = Math.max(0, millis);
+	}
+	@Override
+	public String getFollowEndMarker() {
+		return followEndMarker;
+	}
+	@Override
+	public void setFollowEndMarker(String path) {
+		this.followEndMarker = path;
+	}
+	@Override
+	public void addConversionListener(IConversionListener listener) {
+		listeners.add(listener);
+	}
+	@Override
+	public void removeConversionListener(IConversionListener listener) {
+		listeners.remove(listener);
+	}
+	@Override
+	public ConversionStatistics getStatistics() {
+		return statistics;
+	}
+	/**
+	 * Starts new statistics for a conversion.
+	 * @return the statistics
+	 */
+	ConversionStatistics resetStatistics() {
+		statistics = new ConversionStatistics(listeners);
+		return statistics;
+	}
+	@Override
+	public String getStatisticsPath() {
+		return statisticsPath;
+	}
+	@Override
+	public void setStatisticsPath(String path) {
+		this.statisticsPath = path;
+	}
+	@Override
+	public IDataHolder getDataHolder(String path) {
+		synchronized (dataHolders) {
+			return dataHolders.get(path);
+		}
+	}
+	@Override
+	public void setDataHolder(String path, IDataHolder holder) {
+		synchronized (dataHolders) {
+			dataHolders.put(path, holder);
+		}
+	}
+	@Override
+	public void clearDataHolders() {
+		synchronized (dataHolders) {
+			dataHolders.clear();
+		}
+	}
 	public boolean isExpression() {
 		return expression;
 	}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2026 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.dawnsci.conversion;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JDK Flight Recorder events for conversions, so that batch conversions can be
+ * profiled with a recording. Events are only created when a recording has them
+ * enabled.
+ *
+ * The jdk.jfr module might not be in the runtime, check {@link #isAvailable()}
+ * before calling the other methods so that this class is not loaded without it.
+ */
+final class ConversionEvents {
+
+	private static final boolean AVAILABLE = isJfrPresent();
+
+	private ConversionEvents() {
+		// Static methods only
+	}
+
+	private static boolean isJfrPresent() {
+		try {
+			Class.forName("jdk.jfr.Event", false, ConversionStatistics.class.getClassLoader());
+			return true;
+		} catch (Throwable ne) {
+			return false;
+		}
+	}
+
+	static boolean isAvailable() {
+		return AVAILABLE;
+	}
+
+	static void slice(String name, long loadNanos, long convertNanos, long bytes) {
+		final SliceEvent event = new SliceEvent();
+		if (!event.isEnabled()) return;
+		event.dataset     = name;
+		event.loadTime    = loadNanos;
+		event.convertTime = convertNanos;
+		event.bytes       = bytes;
+		event.commit();
+	}
+
+	static void conversion(ConversionStatistics stats) {
+		final ConversionEvent event = new ConversionEvent();
+		if (!event.isEnabled()) return;
+		event.elapsedTime     = stats.getElapsedTime();
+		event.loadTime        = stats.getLoadTime();
+		event.convertTime     = stats.getConvertTime();
+		event.writeTime       = stats.getWriteTime();
+		event.slices          = stats.getSlices();
+		event.bytesRead       = stats.getBytesRead();
+		event.bytesWritten    = stats.getBytesWritten();
+		event.peakQueuedBytes = stats.getPeakQueuedBytes();
+		event.commit();
+	}
+
+	@Name("org.dawnsci.conversion.Slice")
+	@Label("Slice Converted")
+	@Category({"DAWN", "Conversion"})
+	@StackTrace(false)
+	static class SliceEvent extends Event {
+		@Label("Dataset")
+		String dataset;
+		@Label("Load Time") @Timespan(Timespan.NANOSECONDS)
+		long loadTime;
+		@Label("Convert Time") @Timespan(Timespan.NANOSECONDS)
+		long convertTime;
+		@Label("Bytes") @DataAmount
+		long bytes;
+	}
+
+	@Name("org.dawnsci.conversion.Conversion")
+	@Label("Conversion")
+	@Description("Statistics of a whole conversion")
+	@Category({"DAWN", "Conversion"})
+	@StackTrace(false)
+	static class ConversionEvent extends Event {
+		@Label("Elapsed Time") @Timespan(Timespan.MILLISECONDS)
+		long elapsedTime;
+		@Label("Load Time") @Timespan(Timespan.MILLISECONDS)
+		long loadTime;
+		@Label("Convert Time") @Timespan(Timespan.MILLISECONDS)
+		long convertTime;
+		@Label("Write Time") @Timespan(Timespan.MILLISECONDS)
+		long writeTime;
+		@Label("Slices")
+		long slices;
+		@Label("Bytes Read") @DataAmount
+		long bytesRead;
+		@Label("Bytes Written") @DataAmount
+		long bytesWritten;
+		@Label("Peak Queued Bytes") @DataAmount
+		long peakQueuedBytes;
+	}
+}
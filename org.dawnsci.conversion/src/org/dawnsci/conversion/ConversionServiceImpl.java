@@ -8,9 +8,19 @@
  */
 package org.dawnsci.conversion;
 
+import java.io.File;
 import java.lang.reflect.Constructor;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.dawb.common.util.io.FileUtils;
 import org.dawnsci.conversion.converters.AbstractConversion;
+import org.dawnsci.conversion.converters.FileSetExpander;
 import org.dawnsci.conversion.converters.VisitorConversion;
 import org.eclipse.dawnsci.analysis.api.conversion.IConversion;
 import org.eclipse.dawnsci.analysis.api.conversion.IConversionContext;
@@ -43,9 +53,23 @@ public class ConversionServiceImpl implements IConversionService {
 		return context;
 	}
 
+	/**
+	 * Reads a context written with IExtendedConversionContext.toJSON(), for
+	 * instance by another process.
+	 * 
+	 * @param json
+	 * @return context to process
+	 * @throws Exception if the scheme or user object cannot be created
+	 */
+	public IConversionContext fromJSON(String json) throws Exception {
+		return ConversionContext.fromJSON(json);
+	}
+
 	@Override
 	public void process(IConversionContext context) throws Exception {
 		AbstractConversion delegate=null;
+		final ConversionStatistics stats = context instanceof ConversionContext cc ? cc.resetStatistics() : null;
+		if (stats!=null) stats.start();
 		try {
 			if (context.getConversionVisitor()!=null) {
 				delegate = new VisitorConversion(context);
@@ -58,7 +82,138 @@ public class ConversionServiceImpl implements IConversionService {
 			
 			delegate.process(context);
 		} finally {
-			if (delegate!=null) delegate.close(context);
+			try {
+				if (delegate!=null) delegate.close(context);
+			} finally {
+				// In case the converter overrides close without calling super
+				if (context instanceof IExtendedConversionContext ext) ext.clearDataHolders();
+				if (stats!=null) finish(stats, ((ConversionContext)context).getStatisticsPath());
+			}
+		}
+	}
+
+	private void finish(ConversionStatistics stats, String path) {
+		stats.finish();
+		logger.debug("Conversion finished {}", stats);
+		if (path == null) return;
+		try {
+			final File file = new File(path);
+			if (file.getParentFile()!=null) file.getParentFile().mkdirs();
+			Files.writeString(file.toPath(), stats.toJSON());
+		} catch (Exception ne) {
+			logger.error("Cannot write conversion statistics to "+path, ne);
+		}
+	}
+
+	/**
+	 * Converts each file matched by the file paths of the context with its own
+	 * converter, several files at a time. One file failing to convert is recorded
+	 * in the result and does not stop the batch.
+	 * 
+	 * The memory cap limits the total size on disk of the input files being converted
+	 * at any one time, a file larger than the cap is converted on its own. Only the
+	 * length of each input file is counted, not the memory its converter uses to
+	 * decompress, convert or write it. The user object of the context is shared by
+	 * all the conversions.
+	 * 
+	 * @param context which must have been returned from open(...), the monitor of the
+	 *        context receives the progress of all the conversions.
+	 * @param nThreads number of files to convert at a time
+	 * @param memoryCap maximum bytes of input files, by length on disk, being converted
+	 *        at a time, 0 for no cap
+	 * @param policy decides the output path of each conversion
+	 * @return the files converted and the files which failed
+	 * @throws Exception if the batch cannot be started
+	 */
+	public BatchConversionResult processBatch(final IConversionContext context,
+			                                  final int nThreads,
+			                                  final long memoryCap,
+			                                  final IBatchOutputPolicy policy) throws Exception {
+		
+		if (!(context instanceof ConversionContext)) throw new IllegalArgumentException("The context for a batch conversion must be created with open(...)");
+		if (context.getLazyDataset()!=null) throw new IllegalArgumentException("A batch conversion cannot be run on a lazy dataset");
+		final ConversionContext template = (ConversionContext)context;
+		
+		final List<File> inputs = new ArrayList<File>(89);
+		for (String filePathRegEx : template.getFilePaths()) {
+			final List<File> files = AbstractConversion.expandPath(filePathRegEx);
+			if (files == null) continue;
+			for (File file : files) if (file.isFile()) inputs.add(file);
+		}
+		
+		final BatchConversionResult result  = new BatchConversionResult();
+		final BatchMonitor          monitor = new BatchMonitor(context.getMonitor());
+		final MemoryGate            gate    = new MemoryGate(memoryCap);
+		
+		final AtomicInteger count = new AtomicInteger();
+		final ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, nThreads), r -> {
+			final Thread thread = new Thread(r, "Batch conversion "+count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			final List<Future<?>> futures = new ArrayList<Future<?>>(inputs.size());
+			for (int i = 0; i < inputs.size(); i++) {
+				final File input = inputs.get(i);
+				final int  index = i;
+				futures.add(pool.submit(() -> {
+					if (monitor.isCancelled()) {
+						result.setCancelled(true);
+						return;
+					}
+					long bytes = 0;
+					try {
+						bytes = gate.acquire(input.length());
+						final ConversionContext fileContext = template.copy();
+						fileContext.setFilePaths(FileSetExpander.quote(input));
+						fileContext.setOutputPath(policy.getOutputPath(input, template.getOutputPath()));
+						fileContext.setMonitor(monitor.createChild(input));
+						fileContext.setStatisticsPath(template.getStatisticsPath(index+"_"+FileUtils.getFileNameNoExtension(input)));
+						process(fileContext);
+						result.addConverted(input);
+						monitor.fileDone(input);
+					} catch (InterruptedException ie) {
+						result.setCancelled(true);
+					} catch (Exception ne) {
+						logger.error("Cannot convert "+input.getAbsolutePath(), ne);
+						result.addFailure(input, ne);
+					} finally {
+						gate.release(bytes);
+					}
+				}));
+			}
+			for (Future<?> future : futures) future.get();
+		} finally {
+			pool.shutdownNow();
+		}
+		return result;
+	}
+
+	/**
+	 * Splits the conversion into shards with the ShardPlanner, by file or by slice
+	 * range, and runs each shard in its own JVM. This gives process level parallelism
+	 * to conversions which do not scale with threads, for instance when reading
+	 * HDF5 files which a JVM can only read one at a time.
+	 * 
+	 * A conversion which cannot be split is run in this JVM. The outputs of shards
+	 * writing NeXus files are merged into the output of the conversion, with the
+	 * layout a conversion run by process(...) writes. Other outputs are left as the
+	 * shards wrote them.
+	 * 
+	 * @param context which must have been returned from open(...), with a user object
+	 *        which can be written as JSON
+	 * @param nShards maximum number of worker JVMs
+	 * @param workerCommand command starting a JVM which can load the conversion classes,
+	 *        followed by the class name and arguments of the worker. Null to start the java
+	 *        of this JVM with its class path, which only works outside OSGi.
+	 * @throws Exception if a shard failed
+	 */
+	public void processSharded(final IConversionContext context, final int nShards, final List<String> workerCommand) throws Exception {
+		final List<IConversionContext> shards = ShardPlanner.plan(context, nShards);
+		if (shards.size() < 2) {
+			process(context);
+			return;
 		}
+		new ShardedConversion(workerCommand).process(context, shards);
 	}
 }
@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2026 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.dawnsci.conversion;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Counts where the time of a conversion goes, so that a slow conversion can be
+ * seen to be bound by reading, converting or writing.
+ *
+ * <ul>
+ * <li>load time is the time spent waiting for the next slice to be read,</li>
+ * <li>convert time is the time spent in convert(...), including any writes the converter does there,</li>
+ * <li>write time is the time spent writing, wherever the converter writes.</li>
+ * </ul>
+ * Times are summed over threads so may add up to more than the elapsed time
+ * when the conversion runs in parallel.
+ *
+ * The statistics are updated from any thread. The listeners of the context are told
+ * of each slice converted and of the end of the conversion, and JDK Flight Recorder
+ * events are emitted for both when a recording is running.
+ */
+public class ConversionStatistics {
+
+	private static final Logger logger = LoggerFactory.getLogger(ConversionStatistics.class);
+
+	private final List<IConversionListener> listeners;
+
+	private final LongAdder  loadNanos    = new LongAdder();
+	private final LongAdder  convertNanos = new LongAdder();
+	private final LongAdder  writeNanos   = new LongAdder();
+	private final LongAdder  bytesRead    = new LongAdder();
+	private final LongAdder  bytesWritten = new LongAdder();
+	private final LongAdder  slices       = new LongAdder();
+	private final AtomicLong queuedBytes  = new AtomicLong();
+	private final AtomicLong peakQueuedBytes = new AtomicLong();
+
+	private volatile long    startNanos;
+	private volatile long    endNanos;
+
+	public ConversionStatistics() {
+		this(Collections.emptyList());
+	}
+
+	/**
+	 *
+	 * @param listeners told about the conversion, the list may change while it runs
+	 */
+	ConversionStatistics(List<IConversionListener> listeners) {
+		this.listeners = listeners;
+	}
+
+	/**
+	 * Called when the conversion starts.
+	 */
+	void start() {
+		startNanos = System.nanoTime();
+		endNanos   = 0;
+	}
+
+	/**
+	 * Called when the conversion ends, whether it worked or not.
+	 */
+	void finish() {
+		endNanos = System.nanoTime();
+		if (ConversionEvents.isAvailable()) ConversionEvents.conversion(this);
+		for (IConversionListener l : listeners) {
+			try {
+				l.conversionFinished(this);
+			} catch (Exception ne) {
+				logger.error("Conversion listener failed", ne);
+			}
+		}
+	}
+
+	/**
+	 * Record a slice read and converted.
+	 * @param name of the slice
+	 * @param loadNanos time waiting for the slice to be read
+	 * @param convertNanos time in convert(...)
+	 * @param bytes size of the slice
+	 */
+	public void sliceConverted(String name, long loadNanos, long convertNanos, long bytes) {
+		this.loadNanos.add(loadNanos);
+		this.convertNanos.add(convertNanos);
+		this.bytesRead.add(bytes);
+		this.slices.increment();
+		if (ConversionEvents.isAvailable()) ConversionEvents.slice(name, loadNanos, convertNanos, bytes);
+		for (IConversionListener l : listeners) {
+			try {
+				l.sliceConverted(this);
+			} catch (Exception ne) {
+				logger.error("Conversion listener failed", ne);
+			}
+		}
+	}
+
+	/**
+	 * Record data read other than by slices, for instance a dataset loaded whole.
+	 * @param nanos
+	 * @param bytes
+	 */
+	public void addLoad(long nanos, long bytes) {
+		loadNanos.add(nanos);
+		bytesRead.add(bytes);
+	}
+
+	/**
+	 * Record a write.
+	 * @param nanos time taken to write
+	 * @param bytes written
+	 */
+	public void addWrite(long nanos, long bytes) {
+		writeNanos.add(nanos);
+		bytesWritten.add(bytes);
+	}
+
+	/**
+	 * Record data read but not yet converted, or converted but not yet written.
+	 * @param bytes positive when data is queued, negative when it leaves the queue
+	 */
+	public void queued(long bytes) {
+		final long now = queuedBytes.addAndGet(bytes);
+		peakQueuedBytes.accumulateAndGet(now, Math::max);
+	}
+
+	public long getLoadTime() {
+		return TimeUnit.NANOSECONDS.toMillis(loadNanos.sum());
+	}
+
+	public long getConvertTime() {
+		return TimeUnit.NANOSECONDS.toMillis(convertNanos.sum());
+	}
+
+	public long getWriteTime() {
+		return TimeUnit.NANOSECONDS.toMillis(writeNanos.sum());
+	}
+
+	/**
+	 *
+	 * @return ms since the conversion started, up to its end if it has ended
+	 */
+	public long getElapsedTime() {
+		if (startNanos == 0) return 0;
+		final long end = endNanos != 0 ? endNanos : System.nanoTime();
+		return TimeUnit.NANOSECONDS.toMillis(end - startNanos);
+	}
+
+	public long getBytesRead() {
+		return bytesRead.sum();
+	}
+
+	public long getBytesWritten() {
+		return bytesWritten.sum();
+	}
+
+	public long getSlices() {
+		return slices.sum();
+	}
+
+	public double getSlicesPerSecond() {
+		final long ms = getElapsedTime();
+		return ms > 0 ? getSlices()*1000d/ms : 0;
+	}
+
+	public long getPeakQueuedBytes() {
+		return peakQueuedBytes.get();
+	}
+
+	/**
+	 *
+	 * @return the statistics as a map of name to value, in a fixed order
+	 */
+	public Map<String, Object> toMap() {
+		final Map<String, Object> map = new LinkedHashMap<String, Object>(13);
+		map.put("elapsedTime",     getElapsedTime());
+		map.put("loadTime",        getLoadTime());
+		map.put("convertTime",     getConvertTime());
+		map.put("writeTime",       getWriteTime());
+		map.put("slices",          getSlices());
+		map.put("slicesPerSecond", getSlicesPerSecond());
+		map.put("bytesRead",       getBytesRead());
+		map.put("bytesWritten",    getBytesWritten());
+		map.put("peakQueuedBytes", getPeakQueuedBytes());
+		return map;
+	}
+
+	/**
+	 *
+	 * @return the statistics as a JSON object, times in ms
+	 * @throws Exception
+	 */
+	public String toJSON() throws Exception {
+		return new ObjectMapper().writeValueAsString(toMap());
+	}
+
+	@Override
+	public String toString() {
+		return "ConversionStatistics "+toMap();
+	}
+}
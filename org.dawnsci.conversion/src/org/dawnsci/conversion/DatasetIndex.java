@@ -0,0 +1,453 @@
+/*
+ * Copyright (c) 2026 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.dawnsci.conversion;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.eclipse.dawnsci.analysis.api.io.IDataHolder;
+import org.eclipse.dawnsci.analysis.api.io.ILoaderService;
+import org.eclipse.dawnsci.analysis.api.tree.DataNode;
+import org.eclipse.dawnsci.analysis.api.tree.Node;
+import org.eclipse.dawnsci.analysis.api.tree.NodeLink;
+import org.eclipse.january.dataset.ILazyDataset;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import uk.ac.diamond.osgi.services.ServiceProvider;
+
+/**
+ * Index of the datasets of HDF5 and NeXus files, their path, shape, element type
+ * and chunking, so that the datasets of a file can be listed and matched without
+ * opening it again.
+ *
+ * The index of a file is kept in memory and on disk, as a JSON file per file, and
+ * is valid as long as the size and modification time of the file are those indexed.
+ * The index of a file which has changed is read again when it is asked for. Files
+ * likely to be asked for next, for instance the other files of a folder being browsed,
+ * can be indexed in the background.
+ *
+ * The default index is kept in memory only, so conversions run headless write nothing
+ * to the user home. It is kept in the folder set with the system property
+ * org.dawnsci.conversion.indexDir if there is one, or in .dawn/dataset_index in the
+ * user home once {@link #useUserFolder()} is called, as the workbench does. An index
+ * on disk keeps at most org.dawnsci.conversion.indexMaxFiles files, 10000 by default,
+ * those used least recently are deleted first.
+ */
+public class DatasetIndex {
+
+	private static final Logger logger = LoggerFactory.getLogger(DatasetIndex.class);
+
+	private static final List<String> EXTENSIONS  = List.of("nxs", "h5", "hdf5", "hdf", "nx5");
+	private static final int          MAX_ENTRIES = 1000;
+	private static final String       INDEX_DIR   = "org.dawnsci.conversion.indexDir";
+
+	private static DatasetIndex defaultIndex;
+
+	private final File         dir;
+	private final int          maxFiles;
+	private int                files = -1;
+	private final ObjectMapper mapper;
+	private final Map<String, FileIndex> entries;
+	private ExecutorService    background;
+
+	/**
+	 *
+	 * @param dir folder the index is kept in, null to keep it in memory only
+	 */
+	public DatasetIndex(File dir) {
+		this(dir, Integer.getInteger("org.dawnsci.conversion.indexMaxFiles", 10000));
+	}
+
+	/**
+	 *
+	 * @param dir folder the index is kept in, null to keep it in memory only
+	 * @param maxFiles maximum number of files of the index in the folder
+	 */
+	DatasetIndex(File dir, int maxFiles) {
+		this.dir      = dir;
+		this.maxFiles = Math.max(1, maxFiles);
+		this.mapper   = new ObjectMapper();
+		mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+		this.entries  = Collections.synchronizedMap(new LinkedHashMap<String, FileIndex>(89, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, FileIndex> eldest) {
+				return size() > MAX_ENTRIES;
+			}
+		});
+	}
+
+	/**
+	 *
+	 * @return the index shared by conversions and the conversion wizard
+	 */
+	public static synchronized DatasetIndex getDefault() {
+		if (defaultIndex == null) {
+			final String property = System.getProperty(INDEX_DIR);
+			defaultIndex = new DatasetIndex(property == null || property.isEmpty() ? null : new File(property));
+		}
+		return defaultIndex;
+	}
+
+	/**
+	 * Keeps the default index in .dawn/dataset_index in the user home, unless the
+	 * system property org.dawnsci.conversion.indexDir is set. To be called by
+	 * interactive clients, the default index of headless ones stays in memory.
+	 */
+	public static synchronized void useUserFolder() {
+		if (System.getProperty(INDEX_DIR) != null) return;
+		if (defaultIndex != null && defaultIndex.dir != null) return;
+		final DatasetIndex index = new DatasetIndex(new File(System.getProperty("user.home"), ".dawn"+File.separator+"dataset_index"));
+		if (defaultIndex != null) index.entries.putAll(defaultIndex.entries);
+		defaultIndex = index;
+	}
+
+	/**
+	 *
+	 * @param file
+	 * @return true if the file is indexed, a HDF5 or NeXus file
+	 */
+	public static boolean isIndexed(File file) {
+		final String name = file.getName();
+		final int    pos  = name.lastIndexOf('.');
+		return pos > 0 && EXTENSIONS.contains(name.substring(pos+1).toLowerCase(Locale.ROOT));
+	}
+
+	/**
+	 * Lists the datasets of a file, from the index if the file has not changed,
+	 * otherwise loading the file with the loader service.
+	 *
+	 * @param file
+	 * @return dataset paths to their information, in the order of the data holder of the file
+	 * @throws Exception if the file cannot be loaded
+	 */
+	public Map<String, DatasetInfo> getDatasets(File file) throws Exception {
+		return getDatasets(file, null);
+	}
+
+	/**
+	 * Lists the datasets of a file, from the index if the file has not changed,
+	 * otherwise loading the file with the loader given.
+	 *
+	 * @param file
+	 * @param loader loads the file if it is not indexed, null to use the loader service
+	 * @return dataset paths to their information, in the order of the data holder of the file
+	 * @throws Exception if the file cannot be loaded
+	 */
+	public Map<String, DatasetInfo> getDatasets(final File file, Callable<IDataHolder> loader) throws Exception {
+		final String path = file.getAbsolutePath();
+		FileIndex index = entries.get(path);
+		if (index == null || !index.isCurrent(file)) {
+			index = read(file);
+			if (index == null || !index.isCurrent(file)) {
+				index = create(file, loader);
+				write(index);
+			}
+			entries.put(path, index);
+		}
+		return index.datasets;
+	}
+
+	/**
+	 *
+	 * @param file
+	 * @return dataset paths, in the order of the data holder of the file
+	 * @throws Exception if the file cannot be loaded
+	 */
+	public List<String> getNames(File file) throws Exception {
+		return new ArrayList<String>(getDatasets(file).keySet());
+	}
+
+	/**
+	 * The datasets which can be sliced, those with a dimension of at least the minimum
+	 * size, as DataHolderUtils.getSlicableNames lists them from the data holder of a file.
+	 *
+	 * @param datasets of a file
+	 * @param minSize minimum size of one dimension, 2 if not positive
+	 * @return dataset paths, in the order of the datasets
+	 */
+	public static List<String> getSlicableNames(Map<String, DatasetInfo> datasets, int minSize) {
+		if (minSize <= 0) minSize = 2;
+		final List<String> ret = new ArrayList<String>(datasets.size());
+		for (Map.Entry<String, DatasetInfo> entry : datasets.entrySet()) {
+			final int[] shape = entry.getValue().getShape();
+			if (shape == null) continue;
+			for (int s : shape) {
+				if (s >= minSize) {
+					ret.add(entry.getKey());
+					break;
+				}
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Indexes files in the background, those already indexed and unchanged are
+	 * not loaded again. Files which are not HDF5 or NeXus files are ignored.
+	 *
+	 * @param files
+	 */
+	public void refresh(Collection<File> files) {
+		final List<File> indexed = new ArrayList<File>(files.size());
+		for (File file : files) if (file.isFile() && isIndexed(file)) indexed.add(file);
+		if (indexed.isEmpty()) return;
+
+		final ExecutorService executor = getBackground();
+		for (final File file : indexed) {
+			executor.execute(() -> {
+				try {
+					getDatasets(file);
+				} catch (Exception ne) {
+					logger.debug("Cannot index {}", file, ne);
+				}
+			});
+		}
+	}
+
+	private synchronized ExecutorService getBackground() {
+		if (background == null) {
+			background = Executors.newSingleThreadExecutor(r -> {
+				final Thread thread = new Thread(r, "Dataset index");
+				thread.setDaemon(true);
+				thread.setPriority(Thread.MIN_PRIORITY);
+				return thread;
+			});
+		}
+		return background;
+	}
+
+	private FileIndex create(File file, Callable<IDataHolder> loader) throws Exception {
+		// Read before loading so that a file changing while loaded is indexed again
+		final FileIndex index = new FileIndex(file.getAbsolutePath(), file.length(), file.lastModified());
+		final IDataHolder holder = loader != null ? loader.call()
+				                 : ServiceProvider.getService(ILoaderService.class).getData(index.path, null);
+		if (holder == null || holder.getNames() == null) return index;
+
+		for (String name : holder.getNames()) {
+			final DatasetInfo  info = new DatasetInfo();
+			final ILazyDataset lz   = holder.getLazyDataset(name);
+			if (lz != null) {
+				info.setShape(lz.getShape());
+				info.setType(lz.getElementClass() != null ? lz.getElementClass().getSimpleName() : null);
+				info.setChunks(getChunks(holder, name, lz.getRank()));
+			}
+			index.datasets.put(name, info);
+		}
+		return index;
+	}
+
+	private static int[] getChunks(IDataHolder holder, String name, int rank) {
+		try {
+			if (holder.getTree() == null) return null;
+			final NodeLink link = holder.getTree().findNodeLink(name.startsWith(Node.SEPARATOR) ? name : Node.SEPARATOR+name);
+			if (link == null || !(link.getDestination() instanceof DataNode node)) return null;
+			final int[] chunks = node.getChunkShape();
+			return chunks != null && chunks.length == rank ? chunks : null;
+		} catch (Exception ne) {
+			return null;
+		}
+	}
+
+	private File getIndexFile(String path) {
+		return new File(dir, UUID.nameUUIDFromBytes(path.getBytes(StandardCharsets.UTF_8))+".json");
+	}
+
+	private FileIndex read(File file) {
+		if (dir == null) return null;
+		final File json = getIndexFile(file.getAbsolutePath());
+		if (!json.isFile()) return null;
+		try {
+			final JsonNode root = mapper.readTree(json);
+			final FileIndex index = new FileIndex(root.path("path").asText(), root.path("size").asLong(-1), root.path("modified").asLong(-1));
+			if (!index.path.equals(file.getAbsolutePath())) return null;
+			final JsonNode datasets = root.path("datasets");
+			for (Iterator<Map.Entry<String, JsonNode>> it = datasets.fields(); it.hasNext();) {
+				final Map.Entry<String, JsonNode> entry = it.next();
+				index.datasets.put(entry.getKey(), mapper.treeToValue(entry.getValue(), DatasetInfo.class));
+			}
+			// Pruned by modification time, so those read are kept longer
+			json.setLastModified(System.currentTimeMillis());
+			return index;
+		} catch (Exception ne) {
+			logger.debug("Cannot read index {}", json, ne);
+			return null;
+		}
+	}
+
+	private void write(FileIndex index) {
+		if (dir == null) return;
+		try {
+			dir.mkdirs();
+			final Map<String, Object> map = new LinkedHashMap<String, Object>(5);
+			map.put("path",     index.path);
+			map.put("size",     index.size);
+			map.put("modified", index.modified);
+			map.put("datasets", index.datasets);
+
+			final File    json  = getIndexFile(index.path);
+			final boolean added = !json.exists();
+			final File    tmp   = File.createTempFile(json.getName(), ".tmp", dir);
+			mapper.writeValue(tmp, map);
+			Files.move(tmp.toPath(), json.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			if (added) countAdded();
+		} catch (Exception ne) {
+			logger.debug("Cannot write index of {}", index.path, ne);
+		}
+	}
+
+	/**
+	 * Counts a file added to the folder of the index, deleting those least recently
+	 * used when there are more than the maximum, down to nine tenths of it.
+	 */
+	private synchronized void countAdded() {
+		if (files < 0 || files >= maxFiles) {
+			final File[] jsons = dir.listFiles(f -> f.isFile() && f.getName().endsWith(".json"));
+			if (jsons == null) return;
+			files = jsons.length;
+			if (files > maxFiles) {
+				final long[] modified = new long[jsons.length];
+				final Integer[] order = new Integer[jsons.length];
+				for (int i = 0; i < jsons.length; i++) {
+					modified[i] = jsons[i].lastModified();
+					order[i]    = i;
+				}
+				Arrays.sort(order, (a, b) -> Long.compare(modified[a], modified[b]));
+				for (int i = 0; i < order.length-1 && files > maxFiles*9/10; i++) {
+					if (jsons[order[i]].delete()) files--;
+				}
+			}
+		} else {
+			files++;
+		}
+	}
+
+	/**
+	 * The datasets of a file when it was indexed.
+	 */
+	private static final class FileIndex {
+		private final String path;
+		private final long   size;
+		private final long   modified;
+		private final Map<String, DatasetInfo> datasets = Collections.synchronizedMap(new LinkedHashMap<String, DatasetInfo>());
+
+		FileIndex(String path, long size, long modified) {
+			this.path     = path;
+			this.size     = size;
+			this.modified = modified;
+		}
+
+		boolean isCurrent(File file) {
+			return size == file.length() && modified == file.lastModified();
+		}
+	}
+
+	/**
+	 * Information on a dataset read without reading its data.
+	 */
+	public static final class DatasetInfo {
+		private int[]  shape;
+		private String type;
+		private int[]  chunks;
+
+		/**
+		 *
+		 * @return shape of the dataset, null if it could not be read
+		 */
+		public int[] getShape() {
+			return shape;
+		}
+		public void setShape(int[] shape) {
+			this.shape = shape;
+		}
+		/**
+		 *
+		 * @return simple name of the element class of the dataset, for instance Double or String
+		 */
+		public String getType() {
+			return type;
+		}
+		public void setType(String type) {
+			this.type = type;
+		}
+		/**
+		 *
+		 * @return chunk shape of the dataset, null if it is not chunked
+		 */
+		public int[] getChunks() {
+			return chunks;
+		}
+		public void setChunks(int[] chunks) {
+			this.chunks = chunks;
+		}
+		/**
+		 *
+		 * @return number of elements of the dataset, -1 if the shape could not be read
+		 */
+		public long size() {
+			if (shape == null) return -1;
+			long size = 1;
+			for (int s : shape) size *= s;
+			return size;
+		}
+		@Override
+		public int hashCode() {
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + Arrays.hashCode(chunks);
+			result = prime * result + Arrays.hashCode(shape);
+			result = prime * result + ((type == null) ? 0 : type.hashCode());
+			return result;
+		}
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (obj == null)
+				return false;
+			if (getClass() != obj.getClass())
+				return false;
+			DatasetInfo other = (DatasetInfo) obj;
+			if (!Arrays.equals(chunks, other.chunks))
+				return false;
+			if (!Arrays.equals(shape, other.shape))
+				return false;
+			if (type == null) {
+				if (other.type != null)
+					return false;
+			} else if (!type.equals(other.type))
+				return false;
+			return true;
+		}
+		@Override
+		public String toString() {
+			return "DatasetInfo [shape=" + Arrays.toString(shape) + ", type=" + type + ", chunks=" + Arrays.toString(chunks) + "]";
+		}
+	}
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2026 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.dawnsci.conversion;
+
+import java.io.File;
+
+/**
+ * Decides where the output of each file of a batch conversion is written.
+ *
+ * @see ConversionServiceImpl#processBatch(org.eclipse.dawnsci.analysis.api.conversion.IConversionContext, int, long, IBatchOutputPolicy)
+ */
+@FunctionalInterface
+public interface IBatchOutputPolicy {
+
+	/**
+	 *
+	 * @param input the file being converted
+	 * @param outputPath the output path of the batch context
+	 * @return the output path of the conversion of input
+	 */
+	public String getOutputPath(File input, String outputPath);
+
+	/**
+	 * Every conversion writes to the output path of the batch. Use with converters
+	 * which write a folder per input, for instance the image converters.
+	 * @return policy
+	 */
+	public static IBatchOutputPolicy sameFolder() {
+		return (input, outputPath) -> outputPath;
+	}
+
+	/**
+	 * Every conversion writes to its own file in the output folder of the batch,
+	 * named as the input with the extension replaced.
+	 *
+	 * @param extension of the output files, without the dot
+	 * @return policy
+	 */
+	public static IBatchOutputPolicy filePerInput(final String extension) {
+		return (input, outputPath) -> {
+			final String name = input.getName();
+			final int    pos  = name.lastIndexOf('.');
+			final String stem = pos == -1 ? name : name.substring(0, pos);
+			return outputPath + File.separator + stem + "." + extension;
+		};
+	}
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) 2026 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.dawnsci.conversion;
+
+/**
+ * Told about the progress of a conversion, see {@link IExtendedConversionContext#addConversionListener(IConversionListener)}.
+ *
+ * The methods may be called from the threads converting the data so should
+ * return quickly.
+ */
+public interface IConversionListener {
+
+	/**
+	 * Called after each slice is converted.
+	 * @param statistics of the conversion so far
+	 */
+	default void sliceConverted(ConversionStatistics statistics) {
+		// Nothing by default
+	}
+
+	/**
+	 * Called once the conversion has finished, whether it worked or not.
+	 * @param statistics of the whole conversion
+	 */
+	void conversionFinished(ConversionStatistics statistics);
+}
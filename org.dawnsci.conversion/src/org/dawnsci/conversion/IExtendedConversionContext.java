@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2026 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.dawnsci.conversion;
+
+import org.eclipse.dawnsci.analysis.api.conversion.IConversionContext;
+import org.eclipse.dawnsci.analysis.api.io.IDataHolder;
+
+/**
+ * Options which change how a conversion is run rather than what it produces.
+ *
+ * The contexts returned by {@link ConversionServiceImpl#open(String...)} implement
+ * this interface, cast to it to tune a conversion. Converters should read the options
+ * through {@link org.dawnsci.conversion.converters.AbstractConversion} so that plain
+ * {@link IConversionContext} implementations keep working with the defaults.
+ */
+public interface IExtendedConversionContext extends IConversionContext {
+
+	/**
+	 *
+	 * @return the number of threads used to read and convert slices, 1 (the default)
+	 * means that the conversion runs on the calling thread only.
+	 */
+	public int getParallelism();
+
+	/**
+	 * Set the number of threads used to read and convert slices. Slices are always
+	 * committed in order, so output naming and progress is the same as for a serial
+	 * conversion. Converters which do not support concurrent calls to convert only
+	 * have their reads done in parallel.
+	 *
+	 * @param parallelism number of worker threads, values less than 2 disable the pool.
+	 */
+	public void setParallelism(int parallelism);
+
+	/**
+	 *
+	 * @return the maximum number of slices read by the workers but not yet converted,
+	 * 0 (the default) for twice the parallelism.
+	 */
+	public int getMaxSlicesInFlight();
+
+	/**
+	 * Set the maximum number of slices read by the workers and waiting to be converted.
+	 * This bounds the memory used to reorder slices, for instance images decoded in
+	 * parallel and waiting for the single writer of an image stack. Values lower than
+	 * the parallelism leave some workers idle.
+	 *
+	 * @param maxSlices 0 for twice the parallelism.
+	 */
+	public void setMaxSlicesInFlight(int maxSlices);
+
+	/**
+	 *
+	 * @return the number of bytes which may be used to hold slices read ahead of
+	 * the converter, 0 (the default) if slices are read on demand.
+	 */
+	public long getPrefetchMemory();
+
+	/**
+	 * Set the memory budget for slices read ahead of the converter. When set, a
+	 * background thread keeps reading the next slices while the current one is
+	 * converted and written so that disk I/O and conversion overlap. At least one
+	 * slice is read ahead whatever the budget. Ignored when the parallelism is
+	 * greater than one, as the workers already read ahead.
+	 *
+	 * @param bytes memory budget, 0 to disable read ahead.
+	 */
+	public void setPrefetchMemory(long bytes);
+
+	/**
+	 *
+	 * @return the number of bytes which may be read from the source in one go,
+	 * 0 (the default) if slices are read one by one.
+	 */
+	public long getBlockReadMemory();
+
+	/**
+	 * Set the memory budget for reading consecutive slices in one block. When set,
+	 * as many consecutive slices as fit in the budget are read with one call to the
+	 * source and handed to the converter as views of the block, which saves the
+	 * cost of a read per slice when the slices are small. A slice larger than the
+	 * budget is read on its own.
+	 *
+	 * Datasets converted without slice dimensions, which are otherwise loaded whole,
+	 * are converted in blocks along their first dimension when larger than the budget
+	 * if the converter supports it, as the numpy converter does.
+	 *
+	 * Ignored when the parallelism is greater than one or read ahead is set.
+	 *
+	 * @param bytes memory budget, 0 to read slices one by one.
+	 */
+	public void setBlockReadMemory(long bytes);
+
+	/**
+	 *
+	 * @return true if the file paths are matched in the sub-folders too, false by default.
+	 */
+	public boolean isRecursive();
+
+	/**
+	 * Set whether the file name expression of each file path is matched in the
+	 * sub-folders of its folder too.
+	 *
+	 * @param recursive
+	 */
+	public void setRecursive(boolean recursive);
+
+	/**
+	 *
+	 * @return true if conversions keep a checkpoint journal beside their output,
+	 * false by default.
+	 */
+	public boolean isResumable();
+
+	/**
+	 * Set whether the converters which support it keep a checkpoint journal
+	 * beside their output. The journal records the size and modification time
+	 * of the inputs and the slices written, so that running the conversion
+	 * again after it was stopped resumes from the last slice written, and
+	 * running it again after new input files arrived only converts those.
+	 * The output is written from scratch if an input it was made from has
+	 * changed.
+	 *
+	 * @param resumable
+	 */
+	public void setResumable(boolean resumable);
+
+	/**
+	 *
+	 * @return the time in ms without new slices after which a source being written
+	 * is considered finished, 0 (the default) if the sources are converted as they are.
+	 */
+	public long getFollowTimeout();
+
+	/**
+	 * Set to convert NeXus files while they are still being written, for instance
+	 * to export the frames of a detector during the scan. The source is read in
+	 * SWMR mode and its shape refreshed regularly, the slices which arrived since
+	 * are converted each time. The last slice is converted once the next one has
+	 * arrived or the scan has ended, as it might still be being written.
+	 *
+	 * The scan has ended when the end marker is set or when no slice has arrived
+	 * for the timeout.
+	 *
+	 * @param millis 0 to convert the sources as they are.
+	 */
+	public void setFollowTimeout(long millis);
+
+	/**
+	 *
+	 * @return the path of the dataset marking the end of the scan, null by default.
+	 */
+	public String getFollowEndMarker();
+
+	/**
+	 * Set a dataset of the source which marks the end of the scan when it is present
+	 * and not zero, so that a followed conversion ends without waiting for the timeout.
+	 *
+	 * @param path of the marker in the source, null to rely on the timeout only.
+	 */
+	public void setFollowEndMarker(String path);
+
+	/**
+	 * Add a listener told about each slice converted and the end of each conversion
+	 * run with this context. Listeners are shared with the contexts copied for a
+	 * batch conversion.
+	 *
+	 * @param listener
+	 */
+	public void addConversionListener(IConversionListener listener);
+
+	/**
+	 *
+	 * @param listener
+	 */
+	public void removeConversionListener(IConversionListener listener);
+
+	/**
+	 *
+	 * @return the statistics of the conversion running or last run with this context.
+	 */
+	public ConversionStatistics getStatistics();
+
+	/**
+	 *
+	 * @return the file the statistics are written to as JSON at the end of a conversion,
+	 * null (the default) if they are not written.
+	 */
+	public String getStatisticsPath();
+
+	/**
+	 * Set a file to write the statistics of the conversion to, as a JSON object,
+	 * when the conversion ends. The file is overwritten by each conversion. Each
+	 * file of a batch conversion and each shard of a sharded conversion write their
+	 * own file, named as this one with the index of the file or shard added.
+	 *
+	 * @param path null not to write the statistics
+	 */
+	public void setStatisticsPath(String path);
+
+	/**
+	 * The data holders of the files opened during a conversion are kept by the
+	 * context so that each file is loaded once, however many of its datasets
+	 * are converted. They are released when the next file is selected for
+	 * conversion, so only a few files are held at a time whatever the number
+	 * of files converted.
+	 *
+	 * @param path absolute path of the file
+	 * @return the holder loaded for path during this conversion, null if it has not been loaded.
+	 */
+	public IDataHolder getDataHolder(String path);
+
+	/**
+	 * Keep the holder of a file while it is converted.
+	 *
+	 * @param path absolute path of the file
+	 * @param holder
+	 */
+	public void setDataHolder(String path, IDataHolder holder);
+
+	/**
+	 * Release the data holders kept, called when the conversion is closed.
+	 */
+	public void clearDataHolders();
+
+	/**
+	 * Writes the configuration of the context as JSON, so that the conversion can be
+	 * run by another process, for instance a shard of a sharded conversion. Read it
+	 * back with ConversionServiceImpl.fromJSON(String).
+	 *
+	 * @return JSON object
+	 * @throws Exception if the context has a lazy dataset, a visitor or a user object
+	 * which cannot be written as JSON
+	 */
+	public String toJSON() throws Exception;
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2026 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.dawnsci.conversion;
+
+/**
+ * Blocks callers until the memory they ask for fits in a global cap.
+ * A request larger than the cap is allowed once nothing else holds memory,
+ * so that one large file cannot stall a batch.
+ */
+class MemoryGate {
+
+	private final long cap;
+	private long       used;
+
+	/**
+	 *
+	 * @param cap bytes, 0 or less for no cap
+	 */
+	MemoryGate(long cap) {
+		this.cap = cap;
+	}
+
+	/**
+	 * Wait until the bytes may be used.
+	 * @param bytes
+	 * @return the bytes acquired which must be passed to release.
+	 * @throws InterruptedException
+	 */
+	synchronized long acquire(long bytes) throws InterruptedException {
+		if (cap <= 0) return 0;
+		final long request = Math.min(Math.max(0, bytes), cap);
+		while (used > 0 && used + request > cap) {
+			wait();
+		}
+		used += request;
+		return request;
+	}
+
+	synchronized void release(long bytes) {
+		if (bytes <= 0) return;
+		used -= bytes;
+		notifyAll();
+	}
+}
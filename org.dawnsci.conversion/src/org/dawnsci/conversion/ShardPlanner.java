@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) 2026 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.dawnsci.conversion;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.dawnsci.conversion.converters.FileSetExpander;
+import org.dawnsci.conversion.schemes.AbstractConversionScheme;
+import org.eclipse.dawnsci.analysis.api.conversion.IConversionContext;
+import org.eclipse.dawnsci.analysis.api.io.IDataHolder;
+import org.eclipse.dawnsci.analysis.api.io.ILoaderService;
+import org.eclipse.january.dataset.ILazyDataset;
+
+import uk.ac.diamond.osgi.services.ServiceProvider;
+
+/**
+ * Splits a conversion into shards, contexts which each convert part of the
+ * input and can be run in separate processes.
+ *
+ * A conversion of several files is split by file, each shard taking a run of
+ * the files in their natural order, see FileSetExpander.sortNatural(...), so
+ * that the shards have about the same number of bytes to read. Stacks written
+ * by the shards then follow one another in the order of a conversion which is
+ * not split. A conversion of one file is split by slice range, along the first
+ * sliced dimension which is not held constant, when its scheme allows it, see
+ * AbstractConversionScheme.isSliceShardable().
+ *
+ * Shards of a conversion writing to a folder write to the same folder. Shards of
+ * a conversion writing to a file write to their own file, named as the output with
+ * _shard and the index of the shard before the extension.
+ */
+public class ShardPlanner {
+
+	private ShardPlanner() {
+		// Static methods only
+	}
+
+	/**
+	 *
+	 * @param context which must have been returned from open(...)
+	 * @param nShards maximum number of shards
+	 * @return the contexts of the shards, at least one
+	 * @throws Exception if the input cannot be read
+	 */
+	public static List<IConversionContext> plan(IConversionContext context, int nShards) throws Exception {
+
+		if (!(context instanceof ConversionContext)) throw new IllegalArgumentException("The context for a sharded conversion must be created with open(...)");
+		if (context.getLazyDataset()!=null || context.getConversionVisitor()!=null) {
+			throw new IllegalArgumentException("A conversion of a lazy dataset or with a visitor cannot be sharded");
+		}
+		final ConversionContext template = (ConversionContext)context;
+		final AbstractConversionScheme scheme = template.getConversionScheme() instanceof AbstractConversionScheme s ? s : null;
+
+		final List<File> inputs = new ArrayList<File>(89);
+		for (String filePathRegEx : template.getFilePaths()) {
+			for (File file : FileSetExpander.of(filePathRegEx).recursive(template.isRecursive()).list()) {
+				if (file.isFile()) inputs.add(file);
+			}
+		}
+
+		final List<IConversionContext> shards;
+		if (scheme != null && !scheme.isShardable(template)) {
+			shards = new ArrayList<IConversionContext>(1);
+		} else if (inputs.size() > 1) {
+			shards = planByFile(template, FileSetExpander.sortNatural(inputs), nShards);
+		} else if (inputs.size() == 1 && scheme != null && scheme.isSliceShardable()) {
+			shards = planBySlice(template, inputs.get(0), nShards);
+		} else {
+			shards = new ArrayList<IConversionContext>(1);
+		}
+		if (shards.isEmpty()) {
+			final ConversionContext whole = template.copy();
+			whole.setStatisticsPath(template.getStatisticsPath());
+			shards.add(whole);
+		}
+		return shards;
+	}
+
+	/**
+	 * Gives each shard a run of the inputs, ending each run at the file which brings
+	 * the bytes of the runs so far nearest to their share of the total.
+	 * @param inputs in the order of the conversion
+	 */
+	private static List<IConversionContext> planByFile(ConversionContext template, List<File> inputs, int nShards) throws Exception {
+
+		final int n = Math.max(1, Math.min(nShards, inputs.size()));
+		long total = 0;
+		for (File file : inputs) total += file.length();
+
+		final List<IConversionContext> shards = new ArrayList<IConversionContext>(n);
+		long done = 0;
+		int  from = 0;
+		for (int i = 0; i < n; i++) {
+			final long share = (long)((double)total*(i+1)/n);
+			// At least one file for this shard and for each of the next ones
+			int to = from+1;
+			done += inputs.get(from).length();
+			final int last = inputs.size()-(n-1-i);
+			while (to < last && (i == n-1 || done+inputs.get(to).length()/2 <= share)) {
+				done += inputs.get(to).length();
+				to++;
+			}
+
+			final String[] paths = new String[to-from];
+			for (int j = 0; j < paths.length; j++) paths[j] = FileSetExpander.quote(inputs.get(from+j));
+
+			final ConversionContext shard = template.copy();
+			shard.setFilePaths(paths);
+			shard.setRecursive(false);
+			shard.setOutputPath(getShardOutputPath(template.getOutputPath(), i, n));
+			shard.setStatisticsPath(template.getStatisticsPath("shard"+i));
+			shards.add(shard);
+			from = to;
+		}
+		return shards;
+	}
+
+	private static List<IConversionContext> planBySlice(ConversionContext template, File input, int nShards) throws Exception {
+
+		final Map<Integer, String> dims = template.getSliceDimensions();
+		if (dims == null || dims.isEmpty() || nShards < 2) return new ArrayList<IConversionContext>(1);
+
+		final ILazyDataset lz = getDataset(template, input);
+		if (lz == null) return new ArrayList<IConversionContext>(1);
+		final int[] shape = lz.getShape();
+
+		// The first dimension sliced over more than one position
+		int   dim   = -1;
+		int[] range = null;
+		for (Map.Entry<Integer, String> entry : new TreeMap<Integer, String>(dims).entrySet()) {
+			if (entry.getKey() >= shape.length) continue;
+			range = getRange(entry.getValue(), shape[entry.getKey()]);
+			if (range != null && getPositions(range) > 1) {
+				dim = entry.getKey();
+				break;
+			}
+		}
+		if (dim < 0) return new ArrayList<IConversionContext>(1);
+
+		// The shards split the positions so that each slice keeps the step
+		final int positions = getPositions(range);
+		final int n         = Math.min(nShards, positions);
+		final List<IConversionContext> shards = new ArrayList<IConversionContext>(n);
+		for (int i = 0; i < n; i++) {
+			final int start = range[0] + (int)((long)positions*i/n)*range[2];
+			final int stop  = Math.min(range[1], range[0] + (int)((long)positions*(i+1)/n)*range[2]);
+
+			final ConversionContext shard = template.copy();
+			final Map<Integer, String> shardDims = new HashMap<Integer, String>(dims);
+			shardDims.put(dim, start+":"+stop+":"+range[2]);
+			shard.setSliceDimensions(shardDims);
+			shard.setFilePaths(FileSetExpander.quote(input));
+			shard.setRecursive(false);
+			shard.setOutputPath(getShardOutputPath(template.getOutputPath(), i, n));
+			shard.setStatisticsPath(template.getStatisticsPath("shard"+i));
+			shards.add(shard);
+		}
+		return shards;
+	}
+
+	private static ILazyDataset getDataset(ConversionContext template, File input) throws Exception {
+		final List<String> names = template.getDatasetNames();
+		if (names == null || names.isEmpty()) return null;
+
+		final IDataHolder holder = ServiceProvider.getService(ILoaderService.class).getData(input.getAbsolutePath(), null);
+		final String name = names.get(0);
+		ILazyDataset lz = holder.getLazyDataset(name);
+		if (lz != null) return lz;
+		// Dataset names may be regular expressions
+		final List<String> matches = new ArrayList<String>();
+		for (String candidate : holder.getNames()) {
+			if (candidate.matches(name)) matches.add(candidate);
+		}
+		Collections.sort(matches);
+		return matches.isEmpty() ? null : holder.getLazyDataset(matches.get(0));
+	}
+
+	/**
+	 *
+	 * @param slice "all", "start:end", "start:end:step" or an index
+	 * @param size of the dimension
+	 * @return start, end and step of the range, null if the dimension is held constant
+	 * or the step is not positive
+	 */
+	static int[] getRange(String slice, int size) {
+		if (slice == null) return null;
+		final String value = slice.trim();
+		if ("all".equalsIgnoreCase(value)) return new int[] {0, size, 1};
+		if (!value.contains(":")) return null;
+		final String[] ends = value.split(":");
+		try {
+			final int start = ends.length > 0 && !ends[0].isBlank() ? Integer.parseInt(ends[0].trim()) : 0;
+			final int stop  = ends.length > 1 && !ends[1].isBlank() ? Integer.parseInt(ends[1].trim()) : size;
+			final int step  = ends.length > 2 && !ends[2].isBlank() ? Integer.parseInt(ends[2].trim()) : 1;
+			if (step < 1) return null;
+			return new int[] {Math.max(0, start), Math.min(size, stop), step};
+		} catch (NumberFormatException ne) {
+			return null;
+		}
+	}
+
+	/**
+	 *
+	 * @param range start, end and step
+	 * @return number of positions in the range
+	 */
+	private static int getPositions(int[] range) {
+		return range[1] > range[0] ? (range[1]-range[0]+range[2]-1)/range[2] : 0;
+	}
+
+	/**
+	 *
+	 * @param outputPath of the conversion
+	 * @param index of the shard
+	 * @param nShards number of shards
+	 * @return the output path of the shard
+	 */
+	static String getShardOutputPath(String outputPath, int index, int nShards) {
+		if (!isFileOutput(outputPath) || nShards < 2) return outputPath;
+		final int pos = outputPath.lastIndexOf('.');
+		return outputPath.substring(0, pos) + "_shard" + index + outputPath.substring(pos);
+	}
+
+	/**
+	 *
+	 * @param outputPath
+	 * @return true if the output is a file, false if it is a folder
+	 */
+	static boolean isFileOutput(String outputPath) {
+		if (outputPath == null) return false;
+		final File output = new File(outputPath);
+		if (output.isDirectory()) return false;
+		final int pos = output.getName().lastIndexOf('.');
+		return pos > 0 && pos < output.getName().length()-1;
+	}
+}
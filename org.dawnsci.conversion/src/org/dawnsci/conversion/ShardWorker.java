@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2026 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.dawnsci.conversion;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import org.eclipse.dawnsci.analysis.api.io.ILoaderService;
+import org.eclipse.dawnsci.hdf5.nexus.NexusFileFactoryHDF5;
+import org.eclipse.dawnsci.nexus.INexusFileFactory;
+
+import uk.ac.diamond.osgi.services.ServiceProvider;
+import uk.ac.diamond.scisoft.analysis.io.LoaderServiceImpl;
+
+/**
+ * Runs one shard of a sharded conversion in its own JVM, outside OSGi.
+ *
+ * Usage: ShardWorker &lt;context.json&gt;, where the file holds a context written
+ * with IExtendedConversionContext.toJSON(). The exit code is 0 if the conversion
+ * succeeded, 1 if it failed and 2 if the arguments are wrong.
+ */
+public class ShardWorker {
+
+	public static void main(String[] args) {
+		if (args.length != 1) {
+			System.err.println("Usage: "+ShardWorker.class.getName()+" <context.json>");
+			System.exit(2);
+		}
+		try {
+			ServiceProvider.setService(ILoaderService.class, new LoaderServiceImpl());
+			ServiceProvider.setService(INexusFileFactory.class, new NexusFileFactoryHDF5());
+
+			final ConversionServiceImpl service = new ConversionServiceImpl();
+			service.process(service.fromJSON(Files.readString(Paths.get(args[0]))));
+		} catch (Throwable ne) {
+			ne.printStackTrace();
+			System.exit(1);
+		}
+		System.exit(0);
+	}
+}
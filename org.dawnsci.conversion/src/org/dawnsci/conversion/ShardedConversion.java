@@ -0,0 +1,302 @@
+/*
+ * Copyright (c) 2026 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.dawnsci.conversion;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.dawb.common.util.io.FileUtils;
+import org.eclipse.dawnsci.analysis.api.conversion.IConversionContext;
+import org.eclipse.dawnsci.analysis.api.tree.DataNode;
+import org.eclipse.dawnsci.analysis.api.tree.GroupNode;
+import org.eclipse.dawnsci.analysis.api.tree.Node;
+import org.eclipse.dawnsci.nexus.INexusFileFactory;
+import org.eclipse.dawnsci.nexus.NexusException;
+import org.eclipse.dawnsci.nexus.NexusFile;
+import org.eclipse.january.dataset.Dataset;
+import org.eclipse.january.dataset.DatasetUtils;
+import org.eclipse.january.dataset.ILazyDataset;
+import org.eclipse.january.dataset.ILazyWriteableDataset;
+import org.eclipse.january.dataset.LazyWriteableDataset;
+import org.eclipse.january.dataset.SliceND;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.ac.diamond.osgi.services.ServiceProvider;
+
+/**
+ * Runs the shards of a conversion in worker JVMs, at the same time, and merges
+ * their outputs when they are NeXus files.
+ *
+ * The shards take runs of the files or of the slices in order, so the converters
+ * write the same stacks as a conversion which is not split, each shard holding
+ * a run of the first dimension. The merged file has the groups of the shard files
+ * and their stacks joined along the first dimension, in shard order. The data is
+ * copied as a VDS cannot be built through the NexusFile API. The shard files are
+ * deleted once merged, unless the conversion is resumable so that each shard
+ * resumes from its own file.
+ */
+class ShardedConversion {
+
+	private static final Logger logger = LoggerFactory.getLogger(ShardedConversion.class);
+
+	/**
+	 * Time between two checks of the workers in ms.
+	 */
+	private static final long POLL_INTERVAL = 250;
+
+	private static final List<String> NEXUS_EXTENSIONS = List.of("nxs", "h5", "hdf5", "hdf", "nx5");
+
+	/**
+	 * Bytes copied at a time when merging a stack.
+	 */
+	private static final long COPY_BYTES = 64L*1024*1024;
+
+	private final List<String> command;
+
+	/**
+	 *
+	 * @param command to start a JVM which can load the conversion classes, null to
+	 * start the java of this JVM with its class path.
+	 */
+	ShardedConversion(List<String> command) {
+		this.command = command != null ? command : getDefaultCommand();
+	}
+
+	private static List<String> getDefaultCommand() {
+		final String java = ProcessHandle.current().info().command()
+				.orElse(System.getProperty("java.home")+File.separator+"bin"+File.separator+"java");
+		return List.of(java, "-cp", System.getProperty("java.class.path"));
+	}
+
+	/**
+	 * Runs the shards, waits for them all to finish and merges their outputs.
+	 * @param context of the whole conversion, its monitor may cancel the workers
+	 * @param shards as planned by the ShardPlanner
+	 * @throws Exception if a shard failed
+	 */
+	void process(IConversionContext context, List<IConversionContext> shards) throws Exception {
+		run(context, shards);
+		merge(context, shards);
+	}
+
+	/**
+	 * Runs each shard in a worker JVM and waits for them all to finish.
+	 * @param context of the whole conversion, its monitor may cancel the workers
+	 * @param shards as planned by the ShardPlanner
+	 * @throws Exception if a shard failed
+	 */
+	void run(IConversionContext context, List<IConversionContext> shards) throws Exception {
+
+		final File dir = Files.createTempDirectory("conversion_shards").toFile();
+		final List<Process> workers = new ArrayList<Process>(shards.size());
+		final List<File>    logs    = new ArrayList<File>(shards.size());
+		boolean ok = false;
+		try {
+			for (int i = 0; i < shards.size(); i++) {
+				final File json = new File(dir, "shard_"+i+".json");
+				final File log  = new File(dir, "shard_"+i+".log");
+				Files.writeString(json.toPath(), ((IExtendedConversionContext)shards.get(i)).toJSON());
+
+				final List<String> args = new ArrayList<String>(command);
+				args.add(ShardWorker.class.getName());
+				args.add(json.getAbsolutePath());
+				final ProcessBuilder builder = new ProcessBuilder(args);
+				builder.redirectErrorStream(true);
+				builder.redirectOutput(log);
+				workers.add(builder.start());
+				logs.add(log);
+			}
+
+			waitFor(context, workers);
+
+			final StringBuilder failed = new StringBuilder();
+			for (int i = 0; i < workers.size(); i++) {
+				final int code = workers.get(i).exitValue();
+				if (code != 0) failed.append("\nShard "+i+" exited with "+code+", see "+logs.get(i));
+			}
+			if (failed.length() > 0) throw new Exception("Sharded conversion failed:"+failed);
+			ok = true;
+		} finally {
+			for (Process worker : workers) if (worker.isAlive()) worker.destroyForcibly();
+			// The logs are kept when a shard failed
+			if (ok) FileUtils.recursiveDelete(dir);
+		}
+	}
+
+	private void waitFor(IConversionContext context, List<Process> workers) throws Exception {
+		for (Process worker : workers) {
+			while (!worker.waitFor(POLL_INTERVAL, TimeUnit.MILLISECONDS)) {
+				if (context.getMonitor() != null && context.getMonitor().isCancelled()) {
+					for (Process other : workers) other.destroy();
+					throw new Exception("Sharded conversion is cancelled");
+				}
+			}
+		}
+	}
+
+	/**
+	 * Merges the outputs of the shards into the output of the conversion when they
+	 * are NeXus files, the outputs of other files are left as they are.
+	 */
+	private void merge(IConversionContext context, List<IConversionContext> shards) throws Exception {
+		final String outputPath = context.getOutputPath();
+		if (shards.size() < 2 || !ShardPlanner.isFileOutput(outputPath)) return;
+		final String extension = outputPath.substring(outputPath.lastIndexOf('.')+1).toLowerCase(Locale.ROOT);
+		if (!NEXUS_EXTENSIONS.contains(extension)) {
+			logger.info("Outputs of the shards of {} are not NeXus files and are left unmerged", outputPath);
+			return;
+		}
+
+		final INexusFileFactory factory = ServiceProvider.getService(INexusFileFactory.class);
+		final List<File>      files = new ArrayList<File>(shards.size());
+		final List<NexusFile> parts = new ArrayList<NexusFile>(shards.size());
+		try {
+			for (IConversionContext shard : shards) {
+				final File shardFile = new File(shard.getOutputPath());
+				if (!shardFile.exists()) continue; // Nothing to convert in this shard
+				final NexusFile part = factory.newNexusFile(shardFile.getAbsolutePath());
+				part.openToRead();
+				parts.add(part);
+				files.add(shardFile);
+			}
+			if (parts.isEmpty()) return;
+
+			try (NexusFile merged = factory.newNexusFile(outputPath)) {
+				merged.createAndOpenToWrite();
+				mergeGroup(merged, parts, Node.SEPARATOR, getAxisPath(context));
+			}
+		} finally {
+			for (NexusFile part : parts) part.close();
+		}
+
+		if (context instanceof IExtendedConversionContext ext && ext.isResumable()) return;
+		for (File shardFile : files) {
+			if (!shardFile.delete()) logger.warn("Cannot delete {}", shardFile);
+		}
+	}
+
+	/**
+	 *
+	 * @return the path of the axis of the conversion, which each shard writes whole, or null
+	 */
+	private static String getAxisPath(IConversionContext context) {
+		final String axis = context.getAxisDatasetName();
+		if (axis == null) return null;
+		return axis.startsWith(Node.SEPARATOR) ? axis : Node.SEPARATOR+axis;
+	}
+
+	/**
+	 * Writes the group at path in the first part, with its attributes, and merges
+	 * the nodes under it.
+	 */
+	private static void mergeGroup(NexusFile merged, List<NexusFile> parts, String path, String axisPath) throws Exception {
+		final GroupNode group  = parts.get(0).getGroup(path, false);
+		final GroupNode target = merged.getGroup(path, true);
+		// The root holds the attributes of the file itself
+		if (!Node.SEPARATOR.equals(path)) copyAttributes(merged, group, target);
+
+		for (String name : group.getNames()) {
+			final String child = path.endsWith(Node.SEPARATOR) ? path+name : path+Node.SEPARATOR+name;
+			if (group.containsGroupNode(name)) {
+				mergeGroup(merged, parts, child, axisPath);
+			} else if (group.containsDataNode(name)) {
+				mergeData(merged, parts, target, child, name, axisPath);
+			}
+		}
+	}
+
+	/**
+	 * Joins the dataset of each part along its first dimension, or copies that of
+	 * the first part when it is the axis, a scalar or not in every part with the
+	 * same shape after the first dimension.
+	 */
+	private static void mergeData(NexusFile merged, List<NexusFile> parts, GroupNode target, String path, String name, String axisPath) throws Exception {
+		final DataNode first = parts.get(0).getData(path);
+		final int[]    shape = first.getDataset().getShape();
+		if (shape.length == 0) {
+			final Dataset value = DatasetUtils.convertToDataset(first.getDataset().getSlice());
+			value.setName(name);
+			copyAttributes(merged, first, merged.createData(target, value));
+			return;
+		}
+
+		final List<ILazyDataset> stacks = new ArrayList<ILazyDataset>(parts.size());
+		boolean joined = !path.equals(axisPath);
+		for (NexusFile part : parts) {
+			if (!joined) break;
+			final DataNode node  = getData(part, path);
+			final int[]    other = node != null ? node.getDataset().getShape() : null;
+			joined = other != null && other.length == shape.length
+					&& Arrays.equals(Arrays.copyOfRange(other, 1, other.length), Arrays.copyOfRange(shape, 1, shape.length));
+			if (joined) stacks.add(node.getDataset());
+		}
+		if (!joined) {
+			stacks.clear();
+			stacks.add(first.getDataset());
+		}
+
+		final int[] total = shape.clone();
+		total[0] = 0;
+		for (ILazyDataset stack : stacks) total[0] += stack.getShape()[0];
+
+		// Copied in blocks of whole rows of the first dimension
+		long rowSize = first.getDataset().getElementsPerItem()*8L;
+		for (int i = 1; i < total.length; i++) rowSize *= total[i];
+		final int rows = (int)Math.max(1, COPY_BYTES/Math.max(1, rowSize));
+
+		ILazyWriteableDataset writeable = null;
+		int done = 0;
+		for (ILazyDataset stack : stacks) {
+			final int length = stack.getShape()[0];
+			for (int from = 0; from < length; from += rows) {
+				final int to = Math.min(length, from+rows);
+				final int[] start = new int[total.length];
+				final int[] stop  = stack.getShape();
+				start[0] = from;
+				stop[0]  = to;
+				final Dataset block = DatasetUtils.convertToDataset(stack.getSlice(start, stop, null));
+				if (writeable == null) {
+					final int[] chunks = total.clone();
+					chunks[0] = 1;
+					writeable = new LazyWriteableDataset(name, block.getClass(), total, total.clone(), chunks, null);
+					copyAttributes(merged, first, merged.createData(target, writeable, NexusFile.COMPRESSION_NONE));
+				}
+				start[0] = done+from;
+				stop[0]  = done+to;
+				writeable.setSlice(null, block, new SliceND(total, start, stop, null));
+			}
+			done += length;
+		}
+	}
+
+	/**
+	 *
+	 * @return the dataset at path, null if the part does not hold it
+	 */
+	private static DataNode getData(NexusFile part, String path) {
+		try {
+			return part.getData(path);
+		} catch (NexusException ne) {
+			return null;
+		}
+	}
+
+	private static void copyAttributes(NexusFile merged, Node from, Node to) throws Exception {
+		for (Iterator<String> it = from.getAttributeNameIterator(); it.hasNext();) {
+			merged.addAttribute(to, from.getAttribute(it.next()));
+		}
+	}
+}
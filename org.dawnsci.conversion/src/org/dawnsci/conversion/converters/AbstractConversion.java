@@ -12,19 +12,28 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
+import org.dawnsci.conversion.ConversionStatistics;
+import org.dawnsci.conversion.DatasetIndex;
+import org.dawnsci.conversion.IExtendedConversionContext;
 import org.eclipse.dawnsci.analysis.api.conversion.IConversion;
 import org.eclipse.dawnsci.analysis.api.conversion.IConversionContext;
 import org.eclipse.dawnsci.analysis.api.conversion.IConversionVisitor;
 import org.eclipse.dawnsci.analysis.api.io.IDataHolder;
 import org.eclipse.dawnsci.analysis.api.io.ILoaderService;
+import org.eclipse.dawnsci.analysis.api.tree.DataNode;
+import org.eclipse.dawnsci.analysis.api.tree.Node;
+import org.eclipse.dawnsci.analysis.api.tree.NodeLink;
 import org.eclipse.dawnsci.analysis.dataset.slicer.SliceFromSeriesMetadata;
 import org.eclipse.dawnsci.analysis.dataset.slicer.SliceViewIterator;
 import org.eclipse.dawnsci.analysis.dataset.slicer.SliceVisitor;
 import org.eclipse.dawnsci.analysis.dataset.slicer.Slicer;
 import org.eclipse.january.IMonitor;
+import org.eclipse.january.dataset.DatasetUtils;
 import org.eclipse.january.dataset.IDataset;
 import org.eclipse.january.dataset.ILazyDataset;
 import org.eclipse.january.dataset.SliceND;
@@ -41,6 +50,7 @@ import uk.ac.diamond.osgi.services.ServiceProvider;
 public abstract class AbstractConversion implements IConversion {
 	
 	protected IConversionContext context;
+	private ConversionStatistics statistics;
 
 	AbstractConversion() {
 		// OSGi
@@ -61,24 +71,27 @@ public abstract class AbstractConversion implements IConversion {
 			iterate(lz, lz.getName(), context);
 		} else if (filePaths != null && !filePaths.isEmpty()) {
 			for (String filePathRegEx : filePaths) {
-				final List<File> paths = expand(filePathRegEx);
-				for (File path : paths) {
-					
-					context.setSelectedConversionFile(path);
-					if (path.isFile()) {
-						final List<String> sets  = getDataNames(path);
-						final List<String> names = context.getDatasetNames();
-						for (String nameRegExp : names) {
-							final List<String> data = getData(sets, nameRegExp);
-							if (data == null) continue;
-							for (String dsPath : data) {
-								lz = getLazyDataset(path, dsPath, context);
-								if (lz!=null) iterate(lz, dsPath, context);
+				// Streamed so that large folders are converted as they are read
+				try (Stream<File> paths = expandStream(filePathRegEx)) {
+					for (Iterator<File> it = paths.iterator(); it.hasNext();) {
+						final File path = it.next();
+						
+						context.setSelectedConversionFile(path);
+						if (path.isFile()) {
+							final List<String> sets  = getDataNames(path);
+							final List<String> names = context.getDatasetNames();
+							for (String nameRegExp : names) {
+								final List<String> data = getData(sets, nameRegExp);
+								if (data == null) continue;
+								for (String dsPath : data) {
+									lz = getLazyDataset(path, dsPath, context);
+									if (lz!=null) iterate(lz, dsPath, context);
+								}
 							}
+						} else { 
+							lz = getLazyDataset(path, null, context);
+							iterate(lz, path.getName(), context);
 						}
-					} else { 
-						lz = getLazyDataset(path, null, context);
-						iterate(lz, path.getName(), context);
 					}
 				}
 			}
@@ -100,7 +113,7 @@ public abstract class AbstractConversion implements IConversion {
 	 */
 	@Override
 	public void close(IConversionContext context) throws Exception{
-		//do nothing
+		if (context instanceof IExtendedConversionContext ext) ext.clearDataHolders();
 	}
 	
 	protected IConversionContext getContext() {
@@ -137,14 +150,24 @@ public abstract class AbstractConversion implements IConversion {
 		if (lazy != null)
 			return lazy;
 
-		final IDataHolder dh = ServiceProvider.getService(ILoaderService.class).getData(path.getAbsolutePath(), null);
+		final IDataHolder dh = getDataHolder(path);
 		context.setSelectedH5Path(dsPath);
 		if (context.getSliceDimensions()==null) {
+			final long budget = isBlockConvertSupported() ? getBlockReadMemory() : 0;
+			lazy = budget > 0 ? dh.getLazyDataset(dsPath) : null;
+			if (lazy != null && lazy.getRank() > 0 && lazy.getSize()*(long)SlicePlanner.getItemBytes(lazy) > budget) {
+				convertInBlocks(lazy, dsPath, budget);
+				return null;
+			}
 			// Because the data might be lazy and unloadable. We want to load all the data now.
-			IDataset data = ServiceProvider.getService(ILoaderService.class)
+			final long start = System.nanoTime();
+			IDataset data = dh.getDataset(dsPath);
+			if (data == null) data = ServiceProvider.getService(ILoaderService.class)
 					.getDataset(path.getAbsolutePath(),dsPath,(IMonitor)null);
 			data.setName(dsPath);
-			convert(data);
+			context.setSelectedSlice(null);
+			context.setSelectedShape(data.getShape());
+			convertSlice(data, System.nanoTime()-start);
 			return null;
 		}
 		if (context.getMonitor()!=null) {
@@ -152,6 +175,42 @@ public abstract class AbstractConversion implements IConversion {
 		}
 		return dh.getLazyDataset(dsPath);
 	}
+
+	/**
+	 * Converts a dataset which is too large for the block read budget in blocks
+	 * along its first dimension, each named as the dataset.
+	 */
+	private void convertInBlocks(final ILazyDataset lz, final String name, final long budget) throws Exception {
+		final int[] shape = lz.getShape();
+		final long  rowBytes = lz.getSize()/shape[0]*(long)SlicePlanner.getItemBytes(lz);
+		final int   rows = SlicePlanner.getItemsInBudget(rowBytes, budget);
+		for (int start = 0; start < shape[0]; start+=rows) {
+			if (context.getMonitor()!=null && context.getMonitor().isCancelled()) return;
+			final int[] from = new int[shape.length];
+			final int[] to   = shape.clone();
+			from[0] = start;
+			to[0]   = Math.min(shape[0], start+rows);
+			final SliceND slice = new SliceND(shape, from, to, null);
+			final long begin = System.nanoTime();
+			final IDataset block = lz.getSlice(slice);
+			block.setName(name);
+			context.setSelectedSlice(slice.convertToSlice());
+			context.setSelectedShape(shape);
+			convertSlice(block, System.nanoTime()-begin);
+		}
+	}
+
+	/**
+	 * Converts a slice and records it in the statistics of the conversion.
+	 * @param slice
+	 * @param loadNanos time taken to read the slice
+	 */
+	private void convertSlice(IDataset slice, long loadNanos) throws Exception {
+		final long start = System.nanoTime();
+		convert(slice);
+		getStatistics().sliceConverted(slice.getName(), loadNanos, System.nanoTime()-start,
+				                       DatasetUtils.convertToDataset(slice).getNbytes());
+	}
 		
 	protected void iterate(final ILazyDataset         lz, 
 			               final String               nameFrag,
@@ -172,6 +231,7 @@ public abstract class AbstractConversion implements IConversion {
 		if (filePaths.isEmpty() || filePaths.get(0).isEmpty()) return null;
 		for (String filePathRegEx : filePaths) {
 			final List<File> paths = expand(filePathRegEx);
+			if (paths == null) continue;
 			for (File path : paths) {
 				
 				context.setSelectedConversionFile(path);
@@ -194,20 +254,82 @@ public abstract class AbstractConversion implements IConversion {
 		                           final IConversionContext   context) throws Exception {
 		
 		final Map<Integer, String> dims = context.getSliceDimensions();
+		if (isFollowing() && context.getSelectedConversionFile()!=null && context.getSelectedH5Path()!=null) {
+			follow(lz, dims);
+			return;
+		}
 		
 		SliceND slice = Slicer.getSliceNDFromSliceDimensions(dims, lz.getShape());
 		int[] axes = Slicer.getDataDimensions(lz.getShape(), dims);
+		visit(lz, slice, axes);
+	}
+
+	/**
+	 * Converts the slices of a dataset which is still being written as they arrive,
+	 * until the end of the scan. The slices are along the first dimension which is
+	 * not a data dimension, the last one is only converted once the next one has
+	 * arrived or the scan has ended as it might not be fully written.
+	 */
+	private void follow(ILazyDataset lz, final Map<Integer, String> dims) throws Exception {
+		
+		final SourceFollower follower = new SourceFollower(context.getSelectedConversionFile(), context.getSelectedH5Path(),
+				                                           getFollowEndMarker(), getFollowTimeout());
+		int done = 0;
+		while (context.getMonitor()==null || !context.getMonitor().isCancelled()) {
+			final boolean ended = follower.isEnded();
+			lz = follower.refresh(lz);
+			
+			final int[]   shape = lz.getShape();
+			final int[]   axes  = Slicer.getDataDimensions(shape, dims);
+			final SliceND slice = Slicer.getSliceNDFromSliceDimensions(dims, shape);
+			final int     dim   = getScanDimension(shape.length, axes);
+			if (dim < 0) { // Nothing to wait for
+				visit(lz, slice, axes);
+				return;
+			}
+			final int first = slice.getStart()[dim];
+			final int step  = Math.max(1, slice.getStep()[dim]);
+			// The next slice on the step grid which is not converted yet
+			final int start = first + (Math.max(0, done-first)+step-1)/step*step;
+			final int stop  = ended ? slice.getStop()[dim] : Math.min(slice.getStop()[dim], shape[dim]-1);
+			if (stop > start) {
+				slice.setSlice(dim, start, stop, step);
+				visit(lz, slice, axes);
+				done = stop;
+			}
+			if (ended) return;
+			Thread.sleep(SourceFollower.POLL_INTERVAL);
+		}
+	}
+
+	private static int getScanDimension(int rank, int[] axes) {
+		for (int i = 0; i < rank; i++) {
+			boolean data = false;
+			for (int axis : axes) data |= axis==i;
+			if (!data) return i;
+		}
+		return -1;
+	}
+
+	private void visit(final ILazyDataset lz, final SliceND slice, final int[] axes) throws Exception {
+		
 		final SliceViewIterator it = new SliceViewIterator(lz, slice, axes);
 		
-		Slicer.visit(it, new SliceVisitor() {
+		// The time waiting for a slice is the time since the thread last converted one
+		final long started = System.nanoTime();
+		final ThreadLocal<long[]> lastConverted = ThreadLocal.withInitial(() -> new long[] {started});
+		final SliceVisitor visitor = new SliceVisitor() {
 
 			@Override
 			public void visit(IDataset slice) throws Exception {
+				final long[] last = lastConverted.get();
+				final long   loadNanos = System.nanoTime()-last[0];
 				//no longer squeeze in slicer
 				slice.squeeze();
 				context.setSelectedSlice(slice.getFirstMetadata(SliceFromSeriesMetadata.class).getSliceInOutput());
 				context.setSelectedShape(it.getShape());
-				convert(slice);
+				convertSlice(slice, loadNanos);
+				last[0] = System.nanoTime();
 			}
 
 			@Override
@@ -215,7 +337,171 @@ public abstract class AbstractConversion implements IConversion {
 				return context.getMonitor()!=null ? context.getMonitor().isCancelled() : false;
 			}
 			
-		});
+		};
+		
+		final int parallelism = getParallelism();
+		if (parallelism > 1) {
+			new ConcurrentSliceRunner(parallelism, getMaxSlicesInFlight(), isConcurrentConvertSupported(), getStatistics()).run(it, visitor);
+		} else if (getPrefetchMemory() > 0) {
+			try (SlicePrefetcher prefetcher = new SlicePrefetcher(it, getPrefetchMemory(), getStatistics())) {
+				IDataset next;
+				while (!visitor.isCancelled() && (next = prefetcher.next()) != null) {
+					visitor.visit(next);
+				}
+			}
+		} else {
+			final SlicePlanner planner = new SlicePlanner(lz, getChunkShape(lz), getBlockReadMemory());
+			if (planner.isUseful()) {
+				planner.run(it, visitor);
+			} else {
+				Slicer.visit(it, visitor);
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * @param lz
+	 * @return the chunk shape of the selected dataset in the selected file, null if
+	 * it is not chunked or cannot be read.
+	 */
+	protected int[] getChunkShape(ILazyDataset lz) {
+		final File   file   = context.getSelectedConversionFile();
+		final String h5Path = context.getSelectedH5Path();
+		if (file == null || h5Path == null || !file.isFile()) return null;
+		try {
+			final IDataHolder dh = getDataHolder(file);
+			if (dh == null || dh.getTree() == null) return null;
+			final NodeLink link = dh.getTree().findNodeLink(h5Path.startsWith(Node.SEPARATOR) ? h5Path : Node.SEPARATOR+h5Path);
+			if (link == null || !(link.getDestination() instanceof DataNode node)) return null;
+			final int[] chunks = node.getChunkShape();
+			return chunks != null && chunks.length == lz.getRank() ? chunks : null;
+		} catch (Exception ne) {
+			return null; // Read the slices one by one
+		}
+	}
+
+	/**
+	 * 
+	 * @return the statistics of the conversion, which converters add their writes to.
+	 * Never null, if the context does not keep statistics they are only kept by this converter.
+	 */
+	protected ConversionStatistics getStatistics() {
+		if (context instanceof IExtendedConversionContext ext) return ext.getStatistics();
+		if (statistics == null) statistics = new ConversionStatistics();
+		return statistics;
+	}
+
+	/**
+	 * 
+	 * @return the number of threads the context asks for, 1 if the context does not
+	 * support parallel conversion.
+	 */
+	protected int getParallelism() {
+		if (context instanceof IExtendedConversionContext ext) return ext.getParallelism();
+		return 1;
+	}
+
+	/**
+	 * 
+	 * @return the maximum number of slices read but not yet converted when running
+	 * in parallel, 0 for the default.
+	 */
+	protected int getMaxSlicesInFlight() {
+		if (context instanceof IExtendedConversionContext ext) return ext.getMaxSlicesInFlight();
+		return 0;
+	}
+
+	/**
+	 * 
+	 * @return the memory budget in bytes for slices read ahead of the converter, 0 if
+	 * the context does not support read ahead.
+	 */
+	protected long getPrefetchMemory() {
+		if (context instanceof IExtendedConversionContext ext) return ext.getPrefetchMemory();
+		return 0;
+	}
+
+	/**
+	 * 
+	 * @return the memory budget in bytes for reading consecutive slices in one block,
+	 * 0 if the context does not support block reads.
+	 */
+	protected long getBlockReadMemory() {
+		if (context instanceof IExtendedConversionContext ext) return ext.getBlockReadMemory();
+		return 0;
+	}
+
+	/**
+	 * 
+	 * @return true if the file paths should be matched in sub-folders too.
+	 */
+	protected boolean isRecursive() {
+		if (context instanceof IExtendedConversionContext ext) return ext.isRecursive();
+		return false;
+	}
+
+	/**
+	 *
+	 * @return true if the conversion should keep a checkpoint journal beside its output.
+	 */
+	protected boolean isResumable() {
+		if (context instanceof IExtendedConversionContext ext) return ext.isResumable();
+		return false;
+	}
+
+	/**
+	 *
+	 * @return true if the source should be followed while it is written.
+	 */
+	protected boolean isFollowing() {
+		return getFollowTimeout() > 0;
+	}
+
+	/**
+	 *
+	 * @return time in ms without new slices after which a followed source is finished, 0 if not following.
+	 */
+	protected long getFollowTimeout() {
+		if (context instanceof IExtendedConversionContext ext) return ext.getFollowTimeout();
+		return 0;
+	}
+
+	/**
+	 *
+	 * @return path of the dataset marking the end of a followed scan, may be null.
+	 */
+	protected String getFollowEndMarker() {
+		if (context instanceof IExtendedConversionContext ext) return ext.getFollowEndMarker();
+		return null;
+	}
+
+	/**
+	 * Override to return true if {@link #convert(IDataset)} may be called from several
+	 * threads at once. When the context asks for parallelism, slices of converters which
+	 * return false (the default) are still read in parallel but are converted one at a time,
+	 * in order, on the thread which called process(...).
+	 * 
+	 * Converters returning true must not rely on the selected slice and shape held in the
+	 * context as these are shared between the workers.
+	 * 
+	 * @return true if convert is thread safe.
+	 */
+	protected boolean isConcurrentConvertSupported() {
+		return false;
+	}
+
+	/**
+	 * Override to return true if {@link #convert(IDataset)} can be given a dataset
+	 * converted without slice dimensions in blocks along its first dimension, each
+	 * named as the dataset, placing each block from the selected slice and shape held
+	 * in the context. Otherwise (the default) such a dataset is loaded whole and
+	 * converted with one call, whatever the block read memory.
+	 * 
+	 * @return true if convert places the blocks of a dataset.
+	 */
+	protected boolean isBlockConvertSupported() {
+		return false;
 	}
 
 	@Override
@@ -246,6 +532,9 @@ public abstract class AbstractConversion implements IConversion {
 	 * regexp for the dataset path and returns the Dataset which can be sliced to get
 	 * the array of numbers for the export.
 	 * 
+	 * The names of HDF5 and NeXus files are read from the DatasetIndex, which only
+	 * loads the file if it has changed since it was indexed.
+	 * 
 	 * @param ioFile
 	 * @param context
 	 * @return null if none match, the datasets otherwise
@@ -255,12 +544,34 @@ public abstract class AbstractConversion implements IConversion {
 	public List<String> getDataNames(File ioFile) throws Exception {
 
 		if (ioFile.isDirectory()) return Collections.emptyList();
-		final IDataHolder dh = ServiceProvider.getService(ILoaderService.class).getData(ioFile.getAbsolutePath(),null);
+		if (DatasetIndex.isIndexed(ioFile)) {
+			return new ArrayList<String>(DatasetIndex.getDefault().getDatasets(ioFile, () -> getDataHolder(ioFile)).keySet());
+		}
+		final IDataHolder dh = getDataHolder(ioFile);
 		
 		if (dh == null || dh.getNames() == null) return Collections.emptyList();
 		return Arrays.asList(dh.getNames());
 	}
 
+	/**
+	 * Loads the file once while it is converted, the holder is kept by the context
+	 * until the next file is converted if the context supports it.
+	 * 
+	 * @param ioFile
+	 * @return the data holder of the file, may be null
+	 * @throws Exception
+	 */
+	protected IDataHolder getDataHolder(File ioFile) throws Exception {
+		final String path = ioFile.getAbsolutePath();
+		final IExtendedConversionContext ext = context instanceof IExtendedConversionContext e ? e : null;
+		IDataHolder dh = ext!=null ? ext.getDataHolder(path) : null;
+		if (dh == null) {
+			dh = ServiceProvider.getService(ILoaderService.class).getData(path, null);
+			if (ext!=null && dh!=null) ext.setDataHolder(path, dh);
+		}
+		return dh;
+	}
+
 	/**
 	 * expand the regex according to the javadoc for getFilePath().
 	 * @param context
@@ -268,25 +579,31 @@ public abstract class AbstractConversion implements IConversion {
 	 */
 	@Override
 	public List<File> expand(String path) {
-		
 		if (path.isEmpty()) return null;
-		
-		final List<File> files = new ArrayList<File>(7);
-		path = path.replace('\\', '/');
-		final String dir    = path.substring(0, path.lastIndexOf("/"));
-		final String regexp = path.substring(path.lastIndexOf("/")+1);
-		
-		final File[] fa = new File(dir).listFiles();
-		for (File file : fa) {
-			if (regexp==null || "".equals(regexp)) {
-				files.add(file);
-				continue;
-			}
-			if (file.getName().matches(regexp) || file.getName().equals(regexp)) {
-				files.add(file);
-			}
-		}
-		
+		final List<File> files = FileSetExpander.of(path).recursive(isRecursive()).list();
+		return files.isEmpty() ? null : files;
+	}
+
+	/**
+	 * expand the regex according to the javadoc for getFilePath(), reading
+	 * the folder as the stream is consumed. The stream must be closed.
+	 * @param path
+	 * @return the matching files
+	 */
+	protected Stream<File> expandStream(String path) {
+		if (path.isEmpty()) return Stream.empty();
+		return FileSetExpander.of(path).recursive(isRecursive()).stream();
+	}
+
+	/**
+	 * expand the regex according to the javadoc for getFilePath(), without
+	 * needing a converter.
+	 * @param path
+	 * @return the matching files or null if none match
+	 */
+	public static List<File> expandPath(String path) {
+		if (path.isEmpty()) return null;
+		final List<File> files = FileSetExpander.of(path).list();
 		return files.isEmpty() ? null : files;
 	}
 	
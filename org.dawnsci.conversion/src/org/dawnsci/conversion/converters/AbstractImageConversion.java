@@ -12,10 +12,8 @@ import java.io.File;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
-import org.dawb.common.util.list.SortNatural;
 import org.eclipse.dawnsci.analysis.api.conversion.IConversionContext;
 import org.eclipse.dawnsci.analysis.api.downsample.DownsampleMode;
 import org.eclipse.dawnsci.analysis.api.io.IDataHolder;
@@ -69,14 +67,15 @@ public abstract class AbstractImageConversion extends AbstractConversion {
 				
 				// Directory parse wanted if not, null.
 				if (images!=null) {
+					final List<File> files = new ArrayList<File>(89);
 					for (String filePathRegEx : filePaths) {
 						final List<File> paths = expand(filePathRegEx);
-						for (File file : paths) images.add(file.getAbsolutePath());
+						if (paths!=null) files.addAll(paths);
 					}
+					for (File file : FileSetExpander.sortNatural(files)) images.add(file.getAbsolutePath());
 					
 					final IDataHolder holder = ServiceProvider.getService(ILoaderService.class)
 							.getData(images.get(0), context.getMonitor());
-		 		    Collections.sort(images, new SortNatural<String>(true));
 					ImageStackLoader loader = new ImageStackLoader(images, holder, context.getMonitor());
 					ILazyDataset lazyDataset = loader.createLazyDataset("Image Stack");
 				    context.setLazyDataset(lazyDataset);
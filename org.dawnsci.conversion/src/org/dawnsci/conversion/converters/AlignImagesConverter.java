@@ -10,15 +10,16 @@ package org.dawnsci.conversion.converters;
 
 import java.io.File;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
 
-import org.dawb.common.util.list.SortNatural;
 import org.eclipse.dawnsci.analysis.api.conversion.IConversionContext;
+import org.eclipse.dawnsci.analysis.api.image.IImageTransform;
 import org.eclipse.dawnsci.analysis.api.io.IDataHolder;
 import org.eclipse.dawnsci.analysis.api.io.ILoaderService;
 import org.eclipse.january.dataset.IDataset;
 import org.eclipse.january.dataset.ILazyDataset;
+import org.eclipse.january.dataset.Slice;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -30,6 +31,12 @@ import uk.ac.diamond.scisoft.analysis.io.JavaImageSaver;
 /**
  * Aligns a stack or directory of images
  * 
+ * The images are either already aligned, as a list or a lazy stack set in the
+ * {@link ConversionAlignBean}, shifted by the shifts set in the bean, or, when
+ * none of these is set, each image is registered against the reference image with
+ * {@link IImageTransform} as it is read and written at once. Only the reference
+ * and the current image are then held in memory.
+ * 
  * @author Baha El Kassaby
  * 
  */
@@ -37,6 +44,7 @@ public class AlignImagesConverter extends AbstractImageConversion {
 
 	private static final Logger logger = LoggerFactory.getLogger(AlignImagesConverter.class);
 	private List<IDataset> alignedImages;
+	private IDataset reference;
 	private int idx = 0;
 
 	public AlignImagesConverter() {
@@ -70,8 +78,7 @@ public class AlignImagesConverter extends AbstractImageConversion {
 		outputPath += File.separator + "aligned_" + originalFileName;
 
 		ConversionAlignBean conversionBean = (ConversionAlignBean) context.getUserObject();
-		alignedImages = conversionBean.getAligned();
-		saveImage(alignedImages.get(idx), outputPath);
+		saveImage(getAligned(conversionBean, slice, lazy), outputPath);
 		idx++;
 		if (idx == lazy.getShape()[0])
 			idx = 0;
@@ -79,6 +86,33 @@ public class AlignImagesConverter extends AbstractImageConversion {
 			context.getMonitor().worked(1);
 	}
 
+	private IDataset getAligned(ConversionAlignBean bean, IDataset slice, ILazyDataset lazy) throws Exception {
+		alignedImages = bean.getAligned();
+		if (alignedImages != null)
+			return alignedImages.get(idx);
+		if (bean.getAlignedStack() != null)
+			return bean.getAlignedStack().getSlice(new Slice(idx, idx + 1)).squeeze();
+
+		IDataset image = slice.squeeze();
+		IImageTransform transform = ServiceProvider.getService(IImageTransform.class);
+		List<double[]> shifts = bean.getShifts();
+		if (shifts != null) {
+			double[] shift = shifts.get(idx);
+			IDataset shifted = transform.affineTransform(image, 1, 0, 0, 1, shift[0], shift[1], true);
+			shifted.setName(image.getName());
+			return shifted;
+		}
+
+		// stream: register against the reference as the image is read
+		if (reference == null) {
+			reference = idx == bean.getReference() ? image
+					  : lazy.getSlice(new Slice(bean.getReference(), bean.getReference() + 1)).squeeze();
+		}
+		if (idx == bean.getReference())
+			return image;
+		return transform.align(Arrays.asList(reference, image), null).get(1);
+	}
+
 	private void saveImage(IDataset data, String outputPath) throws Exception {
 		final File outputFile = new File(outputPath);
 
@@ -112,22 +146,13 @@ public class AlignImagesConverter extends AbstractImageConversion {
 					return lazyDataset;
 			}
 		}
+		final List<File> files = new ArrayList<>(Math.max(regexs.size(), 10));
 		for (String regex : regexs) {
-			final List<File> files = expand(regex);
-			for (File file : files) {
-				try {
-					ILazyDataset data = ServiceProvider.getService(ILoaderService.class).getData(
-							file.getAbsolutePath(), context.getMonitor())
-							.getLazyDataset(0);
-					if (data.getRank() == 2)
-						paths.add(file.getAbsolutePath());
-				} catch (Exception ignored) {
-					logger.debug("Exception ignored: {}", ignored.getMessage());
-				}
-			}
+			final List<File> expanded = expand(regex);
+			if (expanded != null) files.addAll(expanded);
 		}
+		paths.addAll(ImageStackProbe.findImages(FileSetExpander.sortNatural(files), 2, context.getMonitor()));
 		if (!paths.isEmpty()) {
-			Collections.sort(paths, new SortNatural<String>(true));
 			ImageStackLoader loader = new ImageStackLoader(paths,
 					context.getMonitor());
 			lazyDataset = loader.createLazyDataset("Folder Stack");
@@ -157,6 +182,9 @@ public class AlignImagesConverter extends AbstractImageConversion {
 	 */
 	public static class ConversionAlignBean extends ConversionInfoBean {
 		private List<IDataset> aligned;
+		private ILazyDataset alignedStack;
+		private List<double[]> shifts;
+		private int reference;
 
 		public void setAligned(List<IDataset> aligned) {
 			this.aligned = aligned;
@@ -164,12 +192,50 @@ public class AlignImagesConverter extends AbstractImageConversion {
 		public List<IDataset> getAligned() {
 			return aligned;
 		}
+		/**
+		 * Set a stack of images already aligned, read one image at a time
+		 * as they are written, for instance the result of IImageTransform.align(ILazyDataset, IMonitor)
+		 * @param alignedStack
+		 */
+		public void setAlignedStack(ILazyDataset alignedStack) {
+			this.alignedStack = alignedStack;
+		}
+		public ILazyDataset getAlignedStack() {
+			return alignedStack;
+		}
+		/**
+		 * Set the shift of each image, as {row shift, column shift},
+		 * applied to each image as it is read.
+		 * @param shifts
+		 */
+		public void setShifts(List<double[]> shifts) {
+			this.shifts = shifts;
+		}
+		public List<double[]> getShifts() {
+			return shifts;
+		}
+		/**
+		 * 
+		 * @return index of the image the others are registered against when
+		 * neither aligned images nor shifts are set, 0 by default
+		 */
+		public int getReference() {
+			return reference;
+		}
+		public void setReference(int reference) {
+			this.reference = reference;
+		}
 		@Override
 		public int hashCode() {
 			final int prime = 31;
 			int result = super.hashCode();
 			result = prime * result
 					+ ((aligned == null) ? 0 : aligned.hashCode());
+			result = prime * result
+					+ ((alignedStack == null) ? 0 : alignedStack.hashCode());
+			result = prime * result + reference;
+			result = prime * result
+					+ ((shifts == null) ? 0 : shifts.hashCode());
 			return result;
 		}
 		@Override
@@ -186,6 +252,18 @@ public class AlignImagesConverter extends AbstractImageConversion {
 					return false;
 			} else if (!aligned.equals(other.aligned))
 				return false;
+			if (alignedStack == null) {
+				if (other.alignedStack != null)
+					return false;
+			} else if (!alignedStack.equals(other.alignedStack))
+				return false;
+			if (reference != other.reference)
+				return false;
+			if (shifts == null) {
+				if (other.shifts != null)
+					return false;
+			} else if (!shifts.equals(other.shifts))
+				return false;
 			return true;
 		}
 	}
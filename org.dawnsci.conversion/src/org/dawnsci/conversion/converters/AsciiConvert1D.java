@@ -14,13 +14,17 @@ import java.io.FileOutputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.text.DecimalFormat;
+import java.text.FieldPosition;
 import java.text.NumberFormat;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.TreeMap;
 
 import org.eclipse.dawnsci.analysis.api.conversion.IConversionContext;
+import org.eclipse.dawnsci.analysis.api.io.IDataHolder;
 import org.eclipse.january.dataset.IDataset;
+import org.eclipse.january.dataset.ILazyDataset;
+import org.eclipse.january.dataset.Slice;
 
 /**
  * This class converts neuxs data sets to .dat file syntax, @see  uk.ac.diamond.scisoft.analysis.io.DatLoader
@@ -31,18 +35,48 @@ import org.eclipse.january.dataset.IDataset;
  */
 public class AsciiConvert1D extends AbstractConversion {
 	
-	private TreeMap<String, IDataset> sortedData;
+	/**
+	 * Number of rows read from every column at a time when writing.
+	 */
+	private static final int BLOCK_ROWS = 1<<16;
+
+	private TreeMap<String, ILazyDataset> sortedData;
 
 	public AsciiConvert1D(IConversionContext context) throws Exception {
 		super(context);
 		if (context.getSliceDimensions()!=null) throw new Exception("Data converted to ascii with AsciiConvert1D, cannot be mixed with slicing!");
-		this.sortedData = new TreeMap<String, IDataset>();
+		this.sortedData = new TreeMap<String, ILazyDataset>();
 	}
 
 	private File selected = null;
 	
+	/**
+	 * Columns are kept lazy until the file is written so that only a block
+	 * of rows of each is in memory at a time.
+	 */
+	@Override
+	protected ILazyDataset getLazyDataset(final File                 path, 
+						                  final String               dsPath,
+						                  final IConversionContext   context) throws Exception {
+		if (context.getLazyDataset()!=null) return context.getLazyDataset();
+		
+		final IDataHolder dh = getDataHolder(path);
+		final ILazyDataset lazy = dh!=null ? dh.getLazyDataset(dsPath) : null;
+		if (lazy == null) return super.getLazyDataset(path, dsPath, context);
+		
+		context.setSelectedH5Path(dsPath);
+		final ILazyDataset column = lazy.getSliceView().squeezeEnds();
+		column.setName(dsPath);
+		add(column);
+		return null;
+	}
+
 	@Override
 	protected void convert(IDataset slice) throws Exception {
+		add(slice.squeeze());
+	}
+	
+	private void add(ILazyDataset column) throws Exception {
 		if (context.getMonitor()!=null && context.getMonitor().isCancelled()) {
 			throw new Exception(getClass().getSimpleName()+" is cancelled");
 		}
@@ -55,7 +89,7 @@ public class AsciiConvert1D extends AbstractConversion {
 			sortedData.clear();
 			selected = context.getSelectedConversionFile();
 		}
-        sortedData.put(slice.getName(), slice.squeeze());
+        sortedData.put(column.getName(), column);
         if (context.getMonitor()!=null) context.getMonitor().worked(1);
 	}
 	
@@ -85,23 +119,18 @@ public class AsciiConvert1D extends AbstractConversion {
 		
 	    int maxSize = Integer.MIN_VALUE;
 		for (String name : sortedData.keySet()) {
-			final IDataset set = sortedData.get(name);
+			final ILazyDataset set = sortedData.get(name);
 			if (set.getShape()==null)     continue;
 			if (set.getShape().length!=1) continue;
 			maxSize = Math.max(maxSize, set.getSize());
 		}
 
-		final StringBuilder contents = new StringBuilder();
-        writeData(contents, sortedData, maxSize, context);
-
-        if (file.exists()) {
-        	file.delete();
-        } else {
-        	file.getParentFile().mkdirs();   	
+        if (!file.exists()) file.getParentFile().mkdirs();
+        final long start = System.nanoTime();
+        try (AsciiRowWriter writer = new AsciiRowWriter(file)) {
+        	writeData(writer, sortedData, maxSize, context);
         }
-    	file.createNewFile();
-
-        write(file, contents.toString(), "US-ASCII");
+        getStatistics().addWrite(System.nanoTime()-start, file.length());
         sortedData.clear();
 	}
 
@@ -122,61 +151,123 @@ public class AsciiConvert1D extends AbstractConversion {
 	}
 
 
-	private void writeData(final StringBuilder        contents,
-							final Map<String, ? extends IDataset> sortedData,
+	private void writeData(final AsciiRowWriter       writer,
+							final Map<String, ? extends ILazyDataset> sortedData,
 							final int                  maxSize,
-							final IConversionContext   context) {
+							final IConversionContext   context) throws Exception {
 
 		final ConversionInfoBean bean = (ConversionInfoBean)context.getUserObject();
 		
-		if (isDat()) contents.append("# ");
+		if (isDat()) writer.append("# ");
 		for (Iterator<String> it = sortedData.keySet().iterator(); it.hasNext(); ) {
 
 			String name = it.next();
 			if (bean!=null && bean.getAlernativeNames()!=null && bean.getAlernativeNames().containsKey(name)) {
 				name = bean.getAlernativeNames().get(name);
 			}
-			if (isCsv()) contents.append("\"");
-			contents.append(name);
-			if (isCsv()) contents.append("\"");
+			if (isCsv()) writer.append('"');
+			writer.append(name);
+			if (isCsv()) writer.append('"');
 
 			if (it.hasNext()) {
-				if (isCsv()) contents.append(",");
-				contents.append("\t");
+				if (isCsv()) writer.append(',');
+				writer.append('\t');
 			}
 		}
-		contents.append("\r\n"); // Intentionally windows.
+		writer.append("\r\n"); // Intentionally windows.
 
 		NumberFormat format = null;
 		if (bean!=null && bean.getNumberFormat()!=null) {
 			format = new DecimalFormat(bean.getNumberFormat());
 		}
-		for (int i = 0; i < maxSize; i++) {
-			for (Iterator<String> it = sortedData.keySet().iterator(); it.hasNext(); ) {
-
-				final String name = it.next();
-
-				final IDataset set = sortedData.get(name);
-				final String     value;
-				
-				if (format!=null) {
-					value = format.format(set.getDouble(i));
-				} else {
-					value = (i<set.getSize()) ? set.getString(i) : "0";
-				}
-
-				
-				contents.append(value);
-				if (it.hasNext()) {
-					if (isCsv()) contents.append(",");
-					contents.append("\t");
+		final StringBuffer  formatted = new StringBuffer(32);
+		final FieldPosition position  = new FieldPosition(0);
+		
+		final Column[] columns = new Column[sortedData.size()];
+		int icol = 0;
+		for (ILazyDataset set : sortedData.values()) columns[icol++] = new Column(set);
+		
+		for (int start = 0; start < maxSize; start+=BLOCK_ROWS) {
+			
+			final int end = Math.min(maxSize, start+BLOCK_ROWS);
+			for (Column column : columns) column.load(start, end);
+			
+			for (int i = start; i < end; i++) {
+				for (int c = 0; c < columns.length; c++) {
+	
+					final Column column = columns[c];
+					if (format!=null) {
+						formatted.setLength(0);
+						format.format(i<column.size ? column.getDouble(i) : 0d, formatted, position);
+						writer.append(formatted);
+					} else if (i<column.size) {
+						column.append(writer, i);
+					} else {
+						writer.append('0');
+					}
+					
+					if (c<columns.length-1) {
+						if (isCsv()) writer.append(',');
+						writer.append('\t');
+					}
+	
+					if (context.getMonitor()!=null && i>=(maxSize-1))	context.getMonitor().worked(1);
+	
 				}
-
-				if (context.getMonitor()!=null && i>=(maxSize-1))	context.getMonitor().worked(1);
-
+				if (context.getMonitor()!=null) context.getMonitor().worked(1);
+				writer.append("\r\n"); // Intentionally windows because works on unix too.
+			}
+		}
+	}
+	
+	/**
+	 * One column of the file, of which a block of rows is loaded at a time.
+	 */
+	private static final class Column {
+		
+		private final ILazyDataset lazy;
+		private final int          size;
+		private final boolean      floating;
+		private final boolean      integer;
+		private IDataset           block;
+		private int                offset;
+		
+		Column(ILazyDataset lazy) {
+			this.lazy = lazy;
+			this.size = lazy.getSize();
+			final Class<?> clazz = lazy.getElementClass();
+			final boolean  single = lazy.getElementsPerItem()==1;
+			this.floating = single && (clazz==Double.class || clazz==Float.class);
+			this.integer  = single && (clazz==Long.class || clazz==Integer.class || clazz==Short.class || clazz==Byte.class);
+		}
+		
+		void load(int start, int end) throws Exception {
+			if (lazy.getRank()!=1) {
+				// Not a column, indexed by position in the whole dataset as it always was.
+				if (block==null) block = lazy.getSlice();
+				offset = 0;
+				return;
+			}
+			if (start>=size) {
+				block = null;
+				return;
+			}
+			block  = lazy.getSlice(new Slice(start, Math.min(end, size)));
+			offset = start;
+		}
+		
+		double getDouble(int i) {
+			return block.getDouble(i-offset);
+		}
+		
+		void append(AsciiRowWriter writer, int i) throws Exception {
+			if (floating) {
+				writer.append(block.getDouble(i-offset));
+			} else if (integer) {
+				writer.append(block.getLong(i-offset));
+			} else {
+				writer.append(block.getString(i-offset));
 			}
-			if (context.getMonitor()!=null) context.getMonitor().worked(1);
-			contents.append("\r\n"); // Intentionally windows because works on unix too.
 		}
 	}
 	
@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2026 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.dawnsci.conversion.converters;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+/**
+ * Writes US-ASCII text straight into a buffer which is flushed to a file channel
+ * when full. Numbers are formatted without creating strings, giving the same text
+ * as IDataset.getString(...), that is String.format("%d") for integers and
+ * String.format("%.8g") for floating point numbers.
+ *
+ * The few values which sit too close to a rounding boundary for the fast path to
+ * be sure of the result, and every value if the default locale does not use
+ * ASCII digits, are formatted with String.format(...).
+ */
+class AsciiRowWriter implements AutoCloseable {
+
+	private static final int    PRECISION = 8;
+	private static final long   LOWER     = 10_000_000L;   // 10^(PRECISION-1)
+	private static final long   UPPER     = 100_000_000L;  // 10^PRECISION
+	private static final double TIE_TOLERANCE = 1e-6;
+
+	private static final double[] POWERS = new double[23];
+	static {
+		POWERS[0] = 1;
+		for (int i = 1; i < POWERS.length; i++) POWERS[i] = POWERS[i-1]*10;
+	}
+
+	private final FileChannel channel;
+	private final ByteBuffer  buffer;
+	private final byte[]      digits = new byte[20];
+	private final char        decimalSeparator;
+	private final boolean     asciiDigits;
+
+	AsciiRowWriter(File file) throws IOException {
+		this(file, 1<<16);
+	}
+
+	AsciiRowWriter(File file, int bufferSize) throws IOException {
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		this.buffer  = ByteBuffer.allocateDirect(bufferSize);
+		final DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(Locale.getDefault(Locale.Category.FORMAT));
+		this.decimalSeparator = symbols.getDecimalSeparator();
+		this.asciiDigits      = symbols.getZeroDigit()=='0' && decimalSeparator < 128;
+	}
+
+	void append(char c) throws IOException {
+		if (!buffer.hasRemaining()) flush();
+		buffer.put(c < 128 ? (byte)c : (byte)'?'); // As the US-ASCII encoder would
+	}
+
+	void append(CharSequence text) throws IOException {
+		for (int i = 0; i < text.length(); i++) append(text.charAt(i));
+	}
+
+	/**
+	 * Appends the value as String.format("%d", value) would.
+	 * @param value
+	 * @throws IOException
+	 */
+	void append(long value) throws IOException {
+		if (!asciiDigits) {
+			append(String.format("%d", value));
+			return;
+		}
+		if (value == Long.MIN_VALUE) {
+			append(Long.toString(value));
+			return;
+		}
+		if (value < 0) {
+			append('-');
+			value = -value;
+		}
+		appendDigits(value, 1);
+	}
+
+	/**
+	 * Appends the value as String.format("%.8g", value) would.
+	 * @param value
+	 * @throws IOException
+	 */
+	void append(double value) throws IOException {
+
+		if (Double.isNaN(value)) {
+			append("NaN");
+			return;
+		}
+		if (Double.isInfinite(value)) {
+			append(value > 0 ? "Infinity" : "-Infinity");
+			return;
+		}
+		if (!asciiDigits) {
+			append(String.format("%.8g", value));
+			return;
+		}
+		final boolean negative = value < 0 || (value == 0 && 1/value < 0);
+		double abs = Math.abs(value);
+		if (abs == 0) {
+			if (negative) append('-');
+			appendFixed(0, 0);
+			return;
+		}
+
+		int exp = (int)Math.floor(Math.log10(abs));
+		double scaled = scale(abs, PRECISION-1-exp);
+		if (Double.isNaN(scaled)) {
+			append(String.format("%.8g", value));
+			return;
+		}
+		// log10 may be one out either side of a power of ten
+		if (scaled >= UPPER) {
+			exp++;
+			scaled = scale(abs, PRECISION-1-exp);
+		} else if (scaled < LOWER) {
+			exp--;
+			scaled = scale(abs, PRECISION-1-exp);
+		}
+		if (Double.isNaN(scaled)) {
+			append(String.format("%.8g", value));
+			return;
+		}
+
+		long mantissa = (long)scaled;
+		final double fraction = scaled - mantissa;
+		if (Math.abs(fraction-0.5) < TIE_TOLERANCE) {
+			// Too close to call, the formatter rounds the shortest decimal representation half up
+			append(String.format("%.8g", value));
+			return;
+		}
+		if (fraction > 0.5) mantissa++;
+		if (mantissa >= UPPER) {
+			mantissa /= 10;
+			exp++;
+		}
+
+		if (negative) append('-');
+		if (exp >= -4 && exp < PRECISION) {
+			appendFixed(mantissa, exp);
+		} else {
+			appendScientific(mantissa, exp);
+		}
+	}
+
+	/**
+	 *
+	 * @param abs
+	 * @param power
+	 * @return abs*10^power or NaN if that cannot be done exactly enough
+	 */
+	private static double scale(double abs, int power) {
+		if (power >= 0) {
+			if (power >= POWERS.length) return Double.NaN;
+			return abs * POWERS[power];
+		}
+		if (-power >= POWERS.length) return Double.NaN;
+		return abs / POWERS[-power];
+	}
+
+	private void appendFixed(long mantissa, int exp) throws IOException {
+		// mantissa has PRECISION digits, the first of which is at 10^exp
+		final int decimals = PRECISION-1-exp;
+		if (exp < 0) {
+			append('0');
+			append(decimalSeparator);
+			for (int i = -1; i > exp; i--) append('0');
+			appendDigits(mantissa, PRECISION);
+			return;
+		}
+		final int    len = toDigits(mantissa, PRECISION);
+		final int    intDigits = len-decimals;
+		for (int i = 0; i < len; i++) {
+			if (i == intDigits) append(decimalSeparator);
+			append((char)digits[i]);
+		}
+	}
+
+	private void appendScientific(long mantissa, int exp) throws IOException {
+		final int len = toDigits(mantissa, PRECISION);
+		append((char)digits[0]);
+		append(decimalSeparator);
+		for (int i = 1; i < len; i++) append((char)digits[i]);
+		append('e');
+		append(exp < 0 ? '-' : '+');
+		appendDigits(Math.abs(exp), 2);
+	}
+
+	private void appendDigits(long value, int minDigits) throws IOException {
+		final int len = toDigits(value, minDigits);
+		for (int i = 0; i < len; i++) append((char)digits[i]);
+	}
+
+	/**
+	 * Writes the decimal digits of a positive value, left padded with zeros
+	 * to minDigits, to the start of the digit buffer.
+	 * @return number of digits
+	 */
+	private int toDigits(long value, int minDigits) {
+		int pos = digits.length;
+		do {
+			digits[--pos] = (byte)('0' + (value % 10));
+			value /= 10;
+		} while (value > 0);
+		while (digits.length-pos < minDigits) digits[--pos] = '0';
+		final int len = digits.length-pos;
+		System.arraycopy(digits, pos, digits, 0, len);
+		return len;
+	}
+
+	void flush() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) channel.write(buffer);
+		buffer.clear();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			channel.close();
+		}
+	}
+}
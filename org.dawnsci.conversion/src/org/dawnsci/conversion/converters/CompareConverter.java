@@ -8,10 +8,16 @@
  */
 package org.dawnsci.conversion.converters;
 
+import java.io.File;
+import java.net.URI;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.eclipse.dawnsci.analysis.api.conversion.IConversionContext;
 import org.eclipse.dawnsci.analysis.api.tree.DataNode;
@@ -24,10 +30,10 @@ import org.eclipse.dawnsci.nexus.NexusConstants;
 import org.eclipse.dawnsci.nexus.NexusFile;
 import org.eclipse.dawnsci.nexus.NexusUtils;
 import org.eclipse.january.dataset.Dataset;
-import org.eclipse.january.dataset.DatasetFactory;
 import org.eclipse.january.dataset.DatasetUtils;
 import org.eclipse.january.dataset.IDataset;
-import org.eclipse.january.dataset.IndexIterator;
+import org.eclipse.january.dataset.ILazyDataset;
+import org.eclipse.january.dataset.ShapeUtils;
 import org.eclipse.january.dataset.StringDataset;
 
 import uk.ac.diamond.osgi.services.ServiceProvider;
@@ -35,6 +41,10 @@ import uk.ac.diamond.osgi.services.ServiceProvider;
 /**
  * This converter creates stacks from 
  * 
+ * When the bean links the sources, the datasets which have the same shape in every
+ * file are not copied, a group of external links to the dataset in each file is
+ * written instead. The other datasets are stacked as usual.
+ * 
  * @author Matthew Gerring
  *
  */
@@ -43,6 +53,7 @@ public class CompareConverter extends AbstractConversion{
 	private NexusFile hFile;
 	private Map<String,String>    groups;
 	private Map<String,Boolean>   written;
+	private Set<String>           linked = Collections.emptySet();
 
 	public CompareConverter(IConversionContext context) throws Exception {
 		super(context);
@@ -86,6 +97,73 @@ public class CompareConverter extends AbstractConversion{
 	}
 
 
+	@Override
+	public void process(IConversionContext context) throws Exception {
+		if (context.getUserObject() instanceof ConversionInfoBean bean && bean.isLinkSources()) {
+			linked = linkSources(bean);
+		}
+		super.process(context);
+	}
+
+	/**
+	 * Links the datasets which need no resizing, the shapes are read without reading the data.
+	 * @return the datasets linked
+	 */
+	private Set<String> linkSources(ConversionInfoBean bean) throws Exception {
+		final List<File> files = new ArrayList<File>();
+		for (String regex : context.getFilePaths()) {
+			final List<File> expanded = expand(regex);
+			if (expanded != null) for (File file : expanded) if (file.isFile()) files.add(file);
+		}
+		if (files.isEmpty()) return Collections.emptySet();
+
+		final Set<String> ret = new HashSet<String>();
+		for (String datasetPath : context.getDatasetNames()) {
+			if (!groups.containsKey(datasetPath) || !isLinkable(datasetPath, bean.getRequiredShape(datasetPath), files)) continue;
+
+			final String name  = datasetPath.substring(datasetPath.lastIndexOf(Node.SEPARATOR) + 1);
+			final String group = groups.get(datasetPath) + Node.SEPARATOR + name;
+			final String node  = datasetPath.startsWith(Node.SEPARATOR) ? datasetPath : Node.SEPARATOR + datasetPath;
+			final GroupNode groupNode = hFile.getGroup(group, true);
+			hFile.addAttribute(groupNode, TreeFactory.createAttribute("original_name", datasetPath));
+
+			final Set<String> names = new HashSet<String>();
+			for (int i = 0; i < files.size(); i++) {
+				final File file = files.get(i);
+				String link = getFileNameNoExtension(file);
+				if (!names.add(link)) link = link + "_" + i;
+				hFile.linkExternal(new URI("nxfile", null, file.getAbsoluteFile().toURI().getPath(), node), group + Node.SEPARATOR + link, false);
+			}
+			ret.add(datasetPath);
+		}
+		return ret;
+	}
+
+	/**
+	 * 
+	 * @return true if the dataset is in every file with the same shape, which is the required shape if there is one.
+	 */
+	private boolean isLinkable(String datasetPath, int[] requiredShape, List<File> files) throws Exception {
+		int[] shape = requiredShape;
+		for (File file : files) {
+			final ILazyDataset lz = getDataHolder(file).getLazyDataset(datasetPath);
+			if (lz == null) return false;
+			final int[] squeezed = ShapeUtils.squeezeShape(lz.getShape(), false);
+			if (shape == null) {
+				shape = squeezed;
+			} else if (!Arrays.equals(shape, squeezed)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	protected ILazyDataset getLazyDataset(File path, String dsPath, IConversionContext context) throws Exception {
+		if (linked.contains(dsPath)) return null; // Not read at all
+		return super.getLazyDataset(path, dsPath, context);
+	}
+
 	private Map<String, int[]> requiredShapes;
 	
 	@Override
@@ -104,7 +182,9 @@ public class CompareConverter extends AbstractConversion{
 		abs = resize(abs, requiredShape);
 		abs.setName(name);
 		GroupNode groupNode = hFile.getGroup(group, true);
+		final long start = System.nanoTime();
 		DataNode dNode = NexusUtils.appendData(hFile, groupNode, abs);
+		getStatistics().addWrite(System.nanoTime()-start, abs.getNbytes());
 		if (!written.get(datasetPath)) {
 			hFile.addAttribute(dNode, TreeFactory.createAttribute("original_name", datasetPath));
 			written.put(datasetPath, true);
@@ -115,18 +195,17 @@ public class CompareConverter extends AbstractConversion{
 		}
 	}
 
+	/**
+	 * Pads with NaN (zero for integer data) or crops a to shape, see {@link DatasetResizer}.
+	 * @param a
+	 * @param shape
+	 * @return a if it already has the shape or holds strings, a new dataset otherwise
+	 */
 	public static Dataset resize(final Dataset a, final int... shape) {
 
 		if (a instanceof StringDataset)
 			return a;
-		int size = a.getSize();
-		Dataset rdata = DatasetFactory.zeros(a);
-		IndexIterator it = rdata.getIterator();
-		while (it.hasNext()) {
-			rdata.setObjectAbs(it.index, it.index < size ? a.getObjectAbs(it.index) : Double.NaN);
-		}
-
-		return rdata;
+		return DatasetResizer.resize(a, shape);
 	}
 	
 	private int[] getRequiredShape(String path, int[] defaultShape) {
@@ -158,6 +237,26 @@ public class CompareConverter extends AbstractConversion{
 	public static final class ConversionInfoBean {
 
 		private Map<String, int[]> requiredShapes = new HashMap<String, int[]>();
+		private boolean            linkSources = false;
+
+		/**
+		 * 
+		 * @return true if datasets of the same shape in every file are linked rather than copied.
+		 */
+		public boolean isLinkSources() {
+			return linkSources;
+		}
+
+		/**
+		 * Set to write external links to the datasets which have the same shape in every
+		 * file instead of copying them into a stack, which writes the output in seconds
+		 * whatever the size of the data. The output then needs the source files to be read.
+		 * 
+		 * @param linkSources
+		 */
+		public void setLinkSources(boolean linkSources) {
+			this.linkSources = linkSources;
+		}
 
 		private int[] getRequiredShape(String path) {
 			if (requiredShapes == null)
@@ -173,6 +272,7 @@ public class CompareConverter extends AbstractConversion{
 		public int hashCode() {
 			final int prime = 31;
 			int result = 1;
+			result = prime * result + (linkSources ? 1231 : 1237);
 			result = prime * result + ((requiredShapes == null) ? 0 : requiredShapes.hashCode());
 			return result;
 		}
@@ -186,6 +286,8 @@ public class CompareConverter extends AbstractConversion{
 			if (getClass() != obj.getClass())
 				return false;
 			ConversionInfoBean other = (ConversionInfoBean) obj;
+			if (linkSources != other.linkSources)
+				return false;
 			if (requiredShapes == null) {
 				if (other.requiredShapes != null)
 					return false;
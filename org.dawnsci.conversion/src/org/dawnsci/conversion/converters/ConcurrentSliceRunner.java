@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2026 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.dawnsci.conversion.converters;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.dawnsci.conversion.ConversionStatistics;
+import org.eclipse.dawnsci.analysis.dataset.slicer.SliceViewIterator;
+import org.eclipse.dawnsci.analysis.dataset.slicer.SliceVisitor;
+import org.eclipse.january.dataset.DatasetUtils;
+import org.eclipse.january.dataset.IDataset;
+import org.eclipse.january.dataset.ILazyDataset;
+
+/**
+ * Drives a {@link SliceVisitor} from a bounded pool of worker threads.
+ *
+ * The slices are read by the workers and committed to the visitor in the order
+ * the iterator produced them. If the visitor may be called concurrently the
+ * workers visit the slices themselves and the commit stage only waits for them,
+ * in order, so that failures and cancellation are reported deterministically.
+ *
+ * The number of slices in flight, read or being read but not yet committed,
+ * is bounded which bounds the memory used to reorder the slices. By default
+ * two slices per worker may be in flight.
+ */
+class ConcurrentSliceRunner {
+
+	private static final AtomicInteger POOL_COUNT = new AtomicInteger();
+
+	private final int     nThreads;
+	private final int     window;
+	private final boolean concurrentVisit;
+	private final ConversionStatistics statistics;
+
+	/**
+	 *
+	 * @param nThreads number of worker threads
+	 * @param maxInFlight maximum number of slices not yet committed, 0 for twice nThreads
+	 * @param concurrentVisit true if the visitor may be called from several threads at once
+	 * @param statistics told of the memory held by slices waiting to be committed, may be null
+	 */
+	ConcurrentSliceRunner(int nThreads, int maxInFlight, boolean concurrentVisit, ConversionStatistics statistics) {
+		this.nThreads        = Math.max(1, nThreads);
+		this.window          = maxInFlight > 0 ? maxInFlight : 2*this.nThreads;
+		this.concurrentVisit = concurrentVisit;
+		this.statistics      = statistics;
+	}
+
+	void run(final SliceViewIterator it, final SliceVisitor visitor) throws Exception {
+
+		final String poolName = "Conversion worker "+POOL_COUNT.incrementAndGet()+"-";
+		final AtomicInteger threadCount = new AtomicInteger();
+		final ExecutorService pool = Executors.newFixedThreadPool(nThreads, r -> {
+			final Thread thread = new Thread(r, poolName+threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		final Deque<Future<IDataset>> inFlight = new ArrayDeque<>(window);
+		try {
+			while (it.hasNext()) {
+				if (visitor.isCancelled()) return;
+				final ILazyDataset view = it.next();
+				inFlight.add(pool.submit(() -> load(view, visitor)));
+				if (inFlight.size() >= window) commit(inFlight.poll(), visitor);
+			}
+			while (!inFlight.isEmpty()) {
+				if (visitor.isCancelled()) return;
+				commit(inFlight.poll(), visitor);
+			}
+		} finally {
+			for (Future<IDataset> future : inFlight) future.cancel(true);
+			pool.shutdownNow();
+		}
+	}
+
+	private IDataset load(ILazyDataset view, SliceVisitor visitor) throws Exception {
+		final IDataset slice = view.getSlice();
+		if (concurrentVisit) {
+			visitor.visit(slice);
+		} else if (statistics != null) {
+			statistics.queued(getBytes(slice));
+		}
+		return slice;
+	}
+
+	private void commit(Future<IDataset> future, SliceVisitor visitor) throws Exception {
+		final IDataset slice;
+		try {
+			slice = future.get();
+		} catch (ExecutionException ne) {
+			if (ne.getCause() instanceof Exception cause) throw cause;
+			throw ne;
+		}
+		if (!concurrentVisit) {
+			if (statistics != null) statistics.queued(-getBytes(slice));
+			visitor.visit(slice);
+		}
+	}
+
+	private static long getBytes(IDataset slice) {
+		return DatasetUtils.convertToDataset(slice).getNbytes();
+	}
+}
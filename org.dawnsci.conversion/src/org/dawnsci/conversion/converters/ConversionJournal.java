@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2026 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.dawnsci.conversion.converters;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A checkpoint journal kept beside the output of a conversion so that the
+ * conversion can be resumed. It records the size and modification time of each
+ * input and the ranges of slices committed to the output, as lines of text:
+ *
+ * <pre>
+ * input	&lt;size&gt;	&lt;modified&gt;	&lt;path&gt;
+ * slice	&lt;from&gt;	&lt;to&gt;
+ * </pre>
+ *
+ * The inputs are written when the conversion starts, replacing the file, and a
+ * slice line is appended and synced each time slices are committed. A line left
+ * incomplete by a crash is ignored when the journal is read.
+ *
+ * Slices must only be committed once they are safely in the output, for instance
+ * after the output file has been flushed.
+ */
+class ConversionJournal {
+
+	private static final Logger logger = LoggerFactory.getLogger(ConversionJournal.class);
+
+	private static final String EXTENSION = ".journal";
+	private static final String HEADER    = "# Conversion journal";
+	private static final String INPUT     = "input";
+	private static final String SLICE     = "slice";
+
+	private final File         file;
+	private final List<Input>  inputs;
+	private final BitSet       committed;
+
+	/**
+	 * Reads the journal of an output, if there is one.
+	 * @param output file or folder written by the conversion
+	 */
+	ConversionJournal(File output) {
+		this.file      = new File(output.getAbsolutePath()+EXTENSION);
+		this.inputs    = new ArrayList<>();
+		this.committed = new BitSet();
+		if (file.isFile()) read();
+	}
+
+	/**
+	 * Deletes the journal of an output, called when an output is written without
+	 * a journal so that a later resumable conversion does not trust a stale one.
+	 * @param output
+	 */
+	static void delete(File output) {
+		final File file = new File(output.getAbsolutePath()+EXTENSION);
+		if (file.exists() && !file.delete()) logger.warn("Cannot delete stale journal {}", file);
+	}
+
+	private void read() {
+		try {
+			for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+				final String[] parts = line.split("\t", 4);
+				try {
+					if (INPUT.equals(parts[0]) && parts.length==4) {
+						inputs.add(new Input(parts[3], Long.parseLong(parts[1]), Long.parseLong(parts[2])));
+					} else if (SLICE.equals(parts[0]) && parts.length==3) {
+						committed.set(Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+					}
+				} catch (RuntimeException ne) {
+					logger.debug("Ignoring incomplete journal line '{}'", line);
+				}
+			}
+		} catch (IOException ne) {
+			logger.warn("Cannot read journal {}, the conversion starts again", file, ne);
+			inputs.clear();
+			committed.clear();
+		}
+	}
+
+	/**
+	 *
+	 * @param current inputs of the conversion, in the order they are converted
+	 * @return true if the inputs recorded are the first inputs in current and none
+	 * of them has changed since, which means the slices committed are still valid.
+	 */
+	boolean isCurrent(List<File> current) {
+		if (inputs.isEmpty() || inputs.size() > current.size()) return false;
+		for (int i = 0; i < inputs.size(); i++) {
+			if (!inputs.get(i).matches(current.get(i))) return false;
+		}
+		return true;
+	}
+
+	/**
+	 *
+	 * @return the number of slices committed from the first, the slice to resume from.
+	 */
+	synchronized int getCommitted() {
+		return committed.nextClearBit(0);
+	}
+
+	/**
+	 *
+	 * @return the number of slices committed, in any order
+	 */
+	synchronized int getCommittedCount() {
+		return committed.cardinality();
+	}
+
+	/**
+	 *
+	 * @param index of a slice
+	 * @return true if the slice is committed
+	 */
+	synchronized boolean isCommitted(int index) {
+		return committed.get(index);
+	}
+
+	/**
+	 * Starts a conversion, replacing the journal.
+	 * @param current inputs of the conversion, in the order they are converted
+	 * @param resume true to keep the slices committed, false if the output is written from scratch
+	 * @throws IOException
+	 */
+	synchronized void start(List<File> current, boolean resume) throws IOException {
+		if (!resume) committed.clear();
+		inputs.clear();
+		for (File input : current) inputs.add(new Input(input));
+
+		final StringBuilder buf = new StringBuilder(HEADER).append('\n');
+		for (Input input : inputs) {
+			buf.append(INPUT).append('\t').append(input.size).append('\t').append(input.modified).append('\t').append(input.path).append('\n');
+		}
+		for (int from = committed.nextSetBit(0); from >= 0; from = committed.nextSetBit(from)) {
+			final int to = committed.nextClearBit(from);
+			buf.append(SLICE).append('\t').append(from).append('\t').append(to).append('\n');
+			from = to;
+		}
+
+		file.getAbsoluteFile().getParentFile().mkdirs();
+		final File tmp = new File(file.getAbsolutePath()+".tmp");
+		Files.writeString(tmp.toPath(), buf, StandardCharsets.UTF_8);
+		try {
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException ne) {
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Records slices committed to the output, the record is synced to disk before returning.
+	 * @param from first slice, inclusive
+	 * @param to last slice, exclusive
+	 * @throws IOException
+	 */
+	synchronized void commit(int from, int to) throws IOException {
+		if (to <= from) return;
+		final String line = SLICE+'\t'+from+'\t'+to+'\n';
+		try (FileOutputStream out = new FileOutputStream(file, true)) {
+			out.write(line.getBytes(StandardCharsets.UTF_8));
+			out.getChannel().force(false);
+		}
+		committed.set(from, to);
+	}
+
+	private static final class Input {
+		private final String path;
+		private final long   size;
+		private final long   modified;
+
+		Input(File file) {
+			this(file.getAbsolutePath(), file.length(), file.lastModified());
+		}
+
+		Input(String path, long size, long modified) {
+			this.path     = path;
+			this.size     = size;
+			this.modified = modified;
+		}
+
+		boolean matches(File file) {
+			return path.equals(file.getAbsolutePath()) && size == file.length() && modified == file.lastModified();
+		}
+	}
+}
@@ -31,17 +31,35 @@ import org.eclipse.january.dataset.Dataset;
 import org.eclipse.january.dataset.DatasetUtils;
 import org.eclipse.january.dataset.IDataset;
 import org.eclipse.january.dataset.ILazyDataset;
+import org.eclipse.january.dataset.ILazyWriteableDataset;
+import org.eclipse.january.dataset.LazyWriteableDataset;
+import org.eclipse.january.dataset.SliceND;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import uk.ac.diamond.osgi.services.ServiceProvider;
 
+/**
+ * Stacks the 1D datasets of several files into 2D datasets, or 3D datasets
+ * if the fast and slow axes of a {@link Convert1DInfoBean} are set.
+ * 
+ * By default the spectra are kept until the conversion is closed. If the bean
+ * asks for streaming the stacks are created in the output file, sized from the
+ * number of files, when the first spectrum of each dataset arrives and every
+ * spectrum is written to its place in the stack as it arrives.
+ */
 public class Convert1DtoND extends AbstractConversion {
 	
 	private final static Logger logger = LoggerFactory.getLogger(Convert1DtoND.class);
 	
 	Map<String, List<ILazyDataset>> dataMap = new HashMap<String, List<ILazyDataset>>();
 
+	// Streaming
+	private NexusFile          streamFile;
+	private Map<String, Stack> stacks;
+	private IDataset           axis;
+	private boolean            axisRead;
+
 	public Convert1DtoND(IConversionContext context) throws Exception {
 		super(context);
 		
@@ -63,45 +81,175 @@ public class Convert1DtoND extends AbstractConversion {
 
 	@Override
 	protected void convert(IDataset slice) throws Exception {
+		if (isStreaming()) {
+			write(slice);
+			return;
+		}
 		if (!dataMap.containsKey(slice.getName()))
 			dataMap.put(slice.getName(), new ArrayList<ILazyDataset>());
 		dataMap.get(slice.getName()).add(slice);
 
 	}
 	
+	private boolean isStreaming() {
+		return context.getUserObject() instanceof Convert1DInfoBean bean && bean.streaming;
+	}
+
+	/**
+	 * Writes the spectrum to its place in the stack of its dataset, creating
+	 * the stack for the first spectrum.
+	 * @param slice
+	 * @throws Exception
+	 */
+	private void write(IDataset slice) throws Exception {
+		if (streamFile == null) {
+			streamFile = ServiceProvider.getService(INexusFileFactory.class).newNexusFile(context.getOutputPath());
+			streamFile.openToWrite(true);
+			stacks = new HashMap<String, Stack>();
+		}
+		final String key = slice.getName();
+		final Dataset spectrum = DatasetUtils.convertToDataset(slice);
+		Stack stack = stacks.get(key);
+		if (stack == null) {
+			stack = createStack(key, spectrum);
+			stacks.put(key, stack);
+		}
+		final long start = System.nanoTime();
+		stack.write(spectrum);
+		getStatistics().addWrite(System.nanoTime()-start, spectrum.getNbytes());
+		
+		if (context.getMonitor() != null && context.getMonitor().isCancelled()) {
+			throw new Exception("Conversion is cancelled!");
+		}
+	}
+
+	private Stack createStack(String key, Dataset first) throws Exception {
+		
+		final String[]  paths     = getNexusPathAndNameFromKey(key);
+		final GroupNode groupNode = getGroup(streamFile, paths);
+		final int       length    = first.getSize();
+		final int       nSpectra  = getExpectedSpectra();
+		final Convert1DInfoBean bean = (Convert1DInfoBean)context.getUserObject();
+		
+		// Created empty and grown as the spectra are written, so that a conversion
+		// which stops early or matches fewer spectra does not leave empty ones at the end
+		final int[] shape, maxShape, chunks;
+		final int fast;
+		if (bean.fastAxis > 0 && bean.fastAxis*bean.slowAxis == nSpectra) {
+			fast     = bean.fastAxis;
+			shape    = new int[] {0, bean.fastAxis, length};
+			maxShape = new int[] {ILazyWriteableDataset.UNLIMITED, bean.fastAxis, length};
+			chunks   = new int[] {1, 1, length};
+		} else {
+			fast     = 0;
+			shape    = new int[] {0, length};
+			maxShape = new int[] {ILazyWriteableDataset.UNLIMITED, length};
+			chunks   = new int[] {1, length};
+		}
+		
+		final ILazyWriteableDataset writeable = new LazyWriteableDataset(paths[paths.length-1], first.getClass(), shape, maxShape, chunks, null);
+		final DataNode dNode = streamFile.createData(groupNode, writeable, NexusFile.COMPRESSION_NONE);
+		streamFile.addAttribute(dNode, TreeFactory.createAttribute("original_name", key));
+		if (length == getAxisLength())
+			streamFile.addAttribute(dNode, TreeFactory.createAttribute(NexusConstants.DATA_SIGNAL, "1"));
+		
+		return new Stack(writeable, dNode, fast, length);
+	}
+
+	/**
+	 * 
+	 * @return number of files expanded from the file paths, which is the number
+	 * of spectra expected for each dataset.
+	 */
+	private int getExpectedSpectra() {
+		int n = 0;
+		if (context.getFilePaths() == null) return n;
+		for (String path : context.getFilePaths()) {
+			final List<File> files = expand(path);
+			if (files == null) continue;
+			for (File file : files) if (file.isFile()) n++;
+		}
+		return n;
+	}
+
+	private IDataset getAxis() throws Exception {
+		if (!axisRead) {
+			axisRead = true;
+			String axisName = context.getAxisDatasetName();
+			// The file paths may be regular expressions, or quoted names for a shard
+			final List<File> files = axisName != null ? expand(context.getFilePaths().get(0)) : null;
+			if (files != null) {
+				axis = ServiceProvider.getService(ILoaderService.class)
+						.getDataset(files.get(0).getAbsolutePath(),axisName,null);
+			}
+		}
+		return axis;
+	}
+
+	private int getAxisLength() throws Exception {
+		final IDataset axis = getAxis();
+		return axis != null ? axis.getShape()[0] : -1;
+	}
+
+	/**
+	 * The last row of a grid is only part written if the conversion stopped early
+	 * or fewer spectra matched than expected, the number of spectra written is added
+	 * to the stacks for which this is the case.
+	 */
+	private void markIncomplete(NexusFile file) throws Exception {
+		for (Stack stack : stacks.values()) {
+			if (stack.fast > 0 && stack.count % stack.fast != 0) {
+				file.addAttribute(stack.node, TreeFactory.createAttribute("spectra_written", stack.count));
+			}
+		}
+	}
+
+	/**
+	 * Gets the group of the dataset at paths, creating the entry and the
+	 * groups down to it.
+	 */
+	private GroupNode getGroup(NexusFile file, String[] paths) throws Exception {
+		String entry = Tree.ROOT + paths[0];
+		GroupNode groupNode = file.getGroup(entry, true);
+		file.addAttribute(groupNode, TreeFactory.createAttribute(NexusConstants.NXCLASS, NexusConstants.ENTRY));
+
+		if (paths.length>2) {
+			String path = entry;
+			for (int i = 1; i < paths.length-1; i++) {
+				path += Node.SEPARATOR + paths[i];
+				groupNode = file.getGroup(path, true);
+				if (i<(paths.length-1))
+					file.addAttribute(groupNode, TreeFactory.createAttribute(NexusConstants.NXCLASS, NexusConstants.ENTRY));
+			}
+		}
+		return groupNode;
+	}
+
 	@Override
 	public void close(IConversionContext context) throws Exception {
 
+		if (streamFile != null) {
+			try {
+				markIncomplete(streamFile);
+				saveAxis(streamFile);
+			} catch (Exception e) {
+				logger.error(e.getMessage());
+			} finally {
+				streamFile.close();
+				streamFile = null;
+			}
+			super.close(context);
+			return;
+		}
+
 		try (NexusFile file = ServiceProvider.getService(INexusFileFactory.class).newNexusFile(context.getOutputPath())) {
 			file.openToWrite(true);
-			IDataset axis = null;
-			int axisLength = -1;
-			String axisName = context.getAxisDatasetName();
-			
-			if (axisName != null) {
-				axis = ServiceProvider.getService(ILoaderService.class)
-						.getDataset(context.getFilePaths().get(0),axisName,null);
-				axisLength = axis.getShape()[0];
-				
-			}
+			int axisLength = getAxisLength();
 
 			for (String key : dataMap.keySet()) {
 				List<ILazyDataset> out = dataMap.get(key);
 				String[] paths = getNexusPathAndNameFromKey(key);
-
-				String entry = Tree.ROOT + paths[0];
-				GroupNode groupNode = file.getGroup(entry, true);
-				file.addAttribute(groupNode, TreeFactory.createAttribute(NexusConstants.NXCLASS, NexusConstants.ENTRY));
-
-				if (paths.length>2) {
-					String path = entry;
-					for (int i = 1; i < paths.length-1; i++) {
-						path += Node.SEPARATOR + paths[i];
-						groupNode = file.getGroup(path, true);
-						if (i<(paths.length-1))
-							file.addAttribute(groupNode, TreeFactory.createAttribute(NexusConstants.NXCLASS, NexusConstants.ENTRY));
-					}
-				}
+				GroupNode groupNode = getGroup(file, paths);
 				
 				if (context.getUserObject() == null ||
 					!(context.getUserObject() instanceof Convert1DInfoBean)) {
@@ -115,23 +263,7 @@ public class Convert1DtoND extends AbstractConversion {
 					}
 				}
 			}
-			if (axis != null) {
-				String[] paths = getNexusPathAndNameFromKey(axisName);
-				String entry = Tree.ROOT + paths[0];
-				GroupNode groupNode = file.getGroup(entry, true);
-				file.addAttribute(groupNode, TreeFactory.createAttribute(NexusConstants.NXCLASS, NexusConstants.ENTRY));
-				
-				if (paths.length>2) {
-					String path = entry;
-					for (int i = 1; i < paths.length-1; i++) {
-						path += Node.SEPARATOR + paths[i];
-						groupNode = file.getGroup(path, true);
-						if (i<(paths.length-1))
-							file.addAttribute(groupNode, TreeFactory.createAttribute(NexusConstants.NXCLASS, NexusConstants.ENTRY));
-					}
-				}
-				saveAxis(file, groupNode, axis, paths);
-			}
+			saveAxis(file);
 			file.close();
 		} catch (Exception e) {
 			logger.error(e.getMessage());
@@ -139,6 +271,13 @@ public class Convert1DtoND extends AbstractConversion {
 		super.close(context);
 	}
 	
+	private void saveAxis(NexusFile file) throws Exception {
+		final IDataset axis = getAxis();
+		if (axis == null) return;
+		String[] paths = getNexusPathAndNameFromKey(context.getAxisDatasetName());
+		saveAxis(file, getGroup(file, paths), axis, paths);
+	}
+	
 	private void saveAxis(NexusFile file, GroupNode group, IDataset out, String[] paths) throws Exception {
 		
 		String name = paths[paths.length-1];
@@ -206,9 +345,51 @@ public class Convert1DtoND extends AbstractConversion {
 		return paths;
 	}
 	
+	/**
+	 * A stack in the output file and the number of spectra written to it.
+	 */
+	private static final class Stack {
+		private final ILazyWriteableDataset writeable;
+		private final DataNode              node;
+		private final int                   fast;
+		private final int                   length;
+		private int                         count;
+
+		Stack(ILazyWriteableDataset writeable, DataNode node, int fast, int length) {
+			this.writeable = writeable;
+			this.node      = node;
+			this.fast      = fast;
+			this.length    = length;
+		}
+
+		void write(Dataset spectrum) throws Exception {
+			if (spectrum.getSize() != length) {
+				throw new IllegalArgumentException("Spectrum "+spectrum.getName()+" has "+spectrum.getSize()+" points, expected "+length);
+			}
+			final int[] start, stop;
+			if (fast > 0) {
+				start = new int[] {count/fast, count%fast, 0};
+				stop  = new int[] {count/fast+1, count%fast+1, length};
+			} else {
+				start = new int[] {count, 0};
+				stop  = new int[] {count+1, length};
+			}
+			final int[] shape = new int[start.length];
+			Arrays.fill(shape, 1);
+			shape[shape.length-1] = length;
+			writeable.setSlice(null, spectrum.reshape(shape), new SliceND(writeable.getShape(), writeable.getMaxShape(), start, stop, null));
+			count++;
+		}
+	}
+	
 	public static final class Convert1DInfoBean {
 	 public int fastAxis = 0;
 	 public int slowAxis = 0;
+	 /**
+	  * Write each spectrum to the output file as it is read rather than
+	  * keeping every spectrum until the conversion is closed.
+	  */
+	 public boolean streaming = false;
 	}
 
 }
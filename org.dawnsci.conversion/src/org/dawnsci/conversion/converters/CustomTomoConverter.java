@@ -9,6 +9,8 @@
 package org.dawnsci.conversion.converters;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.regex.Matcher;
@@ -38,6 +40,15 @@ import uk.ac.diamond.scisoft.analysis.io.JavaImageSaver;
  * 
  * Manages the conversion of tomography nexus files containing NXtomo into image files
  * 
+ * When the context is resumable, a conversion run again after being stopped only
+ * writes the images which were not written, unless the nexus file has changed.
+ * 
+ * When the bean asks for a flat field correction, the dark and flat fields are
+ * averaged from the image key while the images are converted and the averages are
+ * written next to them. Projections are corrected with the averages as they are
+ * written if asked for, fields coming after the first projection are then read
+ * before it.
+ * 
  * @author Baha El Kassaby - Removal of IHierchicalDataFile and HObject usage
  */
 public class CustomTomoConverter extends AbstractConversion {
@@ -49,8 +60,17 @@ public class CustomTomoConverter extends AbstractConversion {
 	private static final String NXTOMO = "nxtomo";
 	private static final String DATA_LOCATION = "instrument/detector/data";
 	private static final String KEY_LOCATION = "instrument/detector/image_key";
+	// JavaImageSaver writes 32 bit float tiffs for 33
+	private static final int FLOAT_BITS = 33;
 	private int counter;
 	private int nImages;
+	private List<String>    fileNames;
+	private ImageWriterPool writers;
+	private int             reported;
+	private int             skipped;
+	private int             written;
+	private ConversionJournal journal;
+	private DarkFlatAccumulator fields;
 	
 	public CustomTomoConverter(IConversionContext context) {
 		super(context);
@@ -63,13 +83,68 @@ public class CustomTomoConverter extends AbstractConversion {
 		
 		//Overriding getLazyDataset allows us to process the tomography bean before calling the super
 		if (context.getUserObject() != null && context.getUserObject() instanceof TomoInfoBean) {
+			finishWriting();
 			processTomoInfoBeanContext(path, context);
 		} else {
 			throw new IllegalArgumentException("Not a recognised tomography file");
 		}
 		counter = 0;
+		reported = 0;
+		written = 0;
 		nImages = ((TomoInfoBean)context.getUserObject()).getNumberOfImages();
-		return super.getLazyDataset(path, dsPath, context);	
+		// Named up front so that the names do not depend on the order the writers finish
+		fileNames = ((TomoInfoBean)context.getUserObject()).getFileNames();
+		final int first = startJournal(path, (TomoInfoBean)context.getUserObject());
+		// The images written before the conversion was stopped are reported now, they are not written again
+		skipped = journal != null ? Math.min(nImages, journal.getCommittedCount()) : 0;
+		worked(skipped);
+
+		final ILazyDataset lz = super.getLazyDataset(path, dsPath, context);
+		startFields(lz, first, (TomoInfoBean)context.getUserObject());
+		// A followed source is read again as it grows, the images written are skipped in convert instead
+		if (first < 1 || lz == null || lz.getShape()[0] != nImages || isFollowing()) return lz;
+		if (first >= nImages) return null; // Every image is written already
+		counter  = first;
+		return lz.getSliceView(new Slice(first, null));
+	}
+
+	/**
+	 * Reads the journal of the images of a file when the context is resumable.
+	 * @return the index of the first image not yet written
+	 */
+	private int startJournal(File path, TomoInfoBean bean) throws Exception {
+		final File output = new File(bean.getOutputPath()!=null ? bean.getOutputPath() : path.getParent()+File.separator+getFileNameNoExtension(path));
+		if (!isResumable()) {
+			journal = null;
+			ConversionJournal.delete(output);
+			return 0;
+		}
+		journal = new ConversionJournal(output);
+		final List<File> inputs  = List.of(path.getAbsoluteFile());
+		final boolean    current = journal.isCurrent(inputs);
+		journal.start(inputs, current);
+		return current ? journal.getCommitted() : 0;
+	}
+
+	/**
+	 * Starts averaging the dark and flat fields of a file if the bean asks for it.
+	 * The fields which are not converted before the first projection to write, because
+	 * they were written before the conversion was stopped or come after it when
+	 * projections are corrected, are read first.
+	 */
+	private void startFields(ILazyDataset lz, int first, TomoInfoBean bean) throws Exception {
+		fields = null;
+		if (lz == null || first >= nImages || bean.getFlatFieldCorrection() == FlatFieldCorrection.NONE) return;
+		fields = new DarkFlatAccumulator(bean.getImageKey(), bean.getDarkAverageName(), bean.getFlatAverageName());
+
+		final boolean correct = bean.getFlatFieldCorrection() == FlatFieldCorrection.CORRECTED;
+		final int n = Math.min(nImages, lz.getShape()[0]);
+		int firstProjection = first;
+		while (firstProjection < n && !fields.isProjection(firstProjection)) firstProjection++;
+		for (int i = 0; i < n; i++) {
+			if (!fields.isField(i)) continue;
+			if (i < first || (correct && i > firstProjection)) fields.add(i, lz.getSlice(new Slice(i, i + 1)).squeeze());
+		}
 	}
 
 	@Override
@@ -78,22 +153,95 @@ public class CustomTomoConverter extends AbstractConversion {
 			throw new Exception(getClass().getSimpleName()+" is cancelled");
 		}
 
-		String filename = ((TomoInfoBean)context.getUserObject()).getNextFileName();
-		int nBits = ((TomoInfoBean)context.getUserObject()).getBits();
+		final TomoInfoBean bean = (TomoInfoBean)context.getUserObject();
+		String filename = fileNames!=null ? fileNames.get(counter) : bean.getNextFileName();
+		int nBits = bean.getBits();
+
+		final int index = counter++;
+		if (fields != null) fields.add(index, slice);
+		if (journal != null && journal.isCommitted(index)) {
+			// Written before the conversion was stopped, reported already
+			return;
+		}
+
+		IDataset image = slice;
+		int      bits  = nBits;
+		if (fields != null && bean.getFlatFieldCorrection() == FlatFieldCorrection.CORRECTED && fields.isProjection(index)) {
+			image = fields.correct(slice);
+			bits  = FLOAT_BITS;
+		}
+		if (bean.getWriters() > 1) {
+			if (writers == null) writers = new ImageWriterPool(bean.getWriters(), bean.getMaxPendingImages(), "tiff", getStatistics());
+			writers.submit(filename, image, bits, journal, index);
+			worked(skipped+writers.getWritten());
+			return;
+		}
+
+		write(filename, image, bits);
+		if (journal != null) journal.commit(index, index+1);
+
+		worked(skipped+(++written));
+	}
 
+	private void write(String filename, IDataset image, int bits) throws Exception {
 		File file = new File(filename);
 		file.getParentFile().mkdirs();
 
-		final JavaImageSaver saver = new JavaImageSaver(filename, "tiff", nBits, true);
+		final long start = System.nanoTime();
+		final JavaImageSaver saver = new JavaImageSaver(filename, "tiff", bits, true);
 		final DataHolder     dh    = new DataHolder();
-		dh.addDataset(slice.getName(), slice);
+		dh.addDataset(image.getName(), image);
 		saver.saveFile(dh);
+		getStatistics().addWrite(System.nanoTime()-start, file.length());
+	}
+
+	/**
+	 * Writes the averages of the dark and flat fields of the current file.
+	 */
+	private void writeAverages() throws Exception {
+		final DarkFlatAccumulator averaged = fields;
+		fields = null;
+		if (averaged == null || (context.getMonitor()!=null && context.getMonitor().isCancelled())) return;
+		final IDataset dark = averaged.getDarkAverage();
+		if (dark != null) write(averaged.getDarkName(), dark, FLOAT_BITS);
+		final IDataset flat = averaged.getFlatAverage();
+		if (flat != null) write(averaged.getFlatName(), flat, FLOAT_BITS);
+	}
 
-		if (nImages < 101 || counter%(nImages/100) == 0) {
-			if (context.getMonitor()!=null) context.getMonitor().worked((100)/(nImages));
+	/**
+	 * Reports the progress of the images done, skipped or written, up to done.
+	 */
+	private void worked(int done) {
+		for (; reported < done; reported++) {
+			if (nImages < 101 || reported%(nImages/100) == 0) {
+				if (context.getMonitor()!=null) context.getMonitor().worked((100)/(nImages));
+			}
 		}
+	}
 
-		counter++;
+	/**
+	 * Waits for the images of the current file to be written.
+	 */
+	private void finishWriting() throws Exception {
+		writeAverages();
+		if (writers == null) return;
+		final ImageWriterPool pool = writers;
+		writers = null;
+		if (context.getMonitor()!=null && context.getMonitor().isCancelled()) {
+			pool.cancel();
+			return;
+		}
+		pool.close();
+		worked(skipped+pool.getWritten());
+	}
+
+	@Override
+	public void close(IConversionContext context) throws Exception {
+		try {
+			finishWriting();
+		} finally {
+			super.close(context);
+		}
 	}
 
 	private void processTomoInfoBeanContext(File path, IConversionContext context) throws Exception {
@@ -115,7 +263,7 @@ public class CustomTomoConverter extends AbstractConversion {
 
 	private IDataset getImageKey(TomoInfoBean bean, File path) {
 		try {
-			IDataHolder dh = ServiceProvider.getService(ILoaderService.class).getData(path.getAbsolutePath(), null);
+			IDataHolder dh = getDataHolder(path);
 			String nodepath = bean.tomoPath + KEY_LOCATION;
 			//path should start with /
 			nodepath = !nodepath.startsWith("/") ? "/" + nodepath : nodepath;
@@ -164,6 +312,25 @@ public class CustomTomoConverter extends AbstractConversion {
 		return null;
 	}
 
+	/**
+	 * What is done with the dark and flat fields while the images are converted.
+	 */
+	public enum FlatFieldCorrection {
+		/**
+		 * The images are written as they are.
+		 */
+		NONE,
+		/**
+		 * The images are written as they are, with the averages of the dark and flat fields.
+		 */
+		AVERAGES,
+		/**
+		 * The projections are written flat field corrected as floats, the dark and flat
+		 * fields as they are, with their averages.
+		 */
+		CORRECTED;
+	}
+
 	/**
 	 * Bean to handle the custom aspects of converting tomography data
 	 *
@@ -177,6 +344,9 @@ public class CustomTomoConverter extends AbstractConversion {
 		private String extension = "tiff";
 		private int dark,flat,projection = 0;
 		private int nBits = 8;
+		private int writers = 1;
+		private int maxPendingImages = 0;
+		private FlatFieldCorrection flatFieldCorrection = FlatFieldCorrection.NONE;
 		
 		/**
 		 * Method to produce a full file path when given the path and
@@ -271,6 +441,20 @@ public class CustomTomoConverter extends AbstractConversion {
 			return null;
 		}
 		
+		/**
+		 * Names every image of the image key, from the current counters, as
+		 * calling getNextFileName() for each image would.
+		 * @return the file names in image key order
+		 */
+		public List<String> getFileNames() {
+			final int n = getNumberOfImages();
+			final List<String> names = new ArrayList<String>(Math.max(0, n));
+			for (int i = dark+flat+projection; i < n; i++) {
+				names.add(getNextFileName());
+			}
+			return names;
+		}
+		
 		private String getNextFlatFieldName() {
 			String path = buildPath(flatPath,flat);
 			flat++;
@@ -299,6 +483,30 @@ public class CustomTomoConverter extends AbstractConversion {
 			return createFullPath(outputPath,path, number);
 		}
 		
+		/**
+		 * 
+		 * @return the file name of the average of the dark fields, the dark field
+		 * path with "average" for the number
+		 */
+		public String getDarkAverageName() {
+			return buildAveragePath(darkPath);
+		}
+		
+		/**
+		 * 
+		 * @return the file name of the average of the flat fields, the flat field
+		 * path with "average" for the number
+		 */
+		public String getFlatAverageName() {
+			return buildAveragePath(flatPath);
+		}
+		
+		private String buildAveragePath(String path) {
+			String name = path.replaceAll("%0\\d+d", "average");
+			if (name.equals(path)) name = path + "_average";
+			return buildPath(name, 0);
+		}
+		
 		private static String createFullPath(String path, String name, int number) {
 			String output = name.replace("%s", path);
 			
@@ -334,5 +542,44 @@ public class CustomTomoConverter extends AbstractConversion {
 			return nBits;
 			
 		}
+
+		/**
+		 * Set the number of threads encoding and writing the images, each image
+		 * still gets the name it would get if they were written one at a time.
+		 * @param writers 1 (the default) to write on the converting thread
+		 */
+		public void setWriters(int writers) {
+			this.writers = Math.max(1, writers);
+		}
+
+		public int getWriters() {
+			return writers;
+		}
+
+		/**
+		 * Set the maximum number of images waiting to be written, which bounds
+		 * the memory used when writing with several threads.
+		 * @param maxPendingImages 0 (the default) for twice the number of writers
+		 */
+		public void setMaxPendingImages(int maxPendingImages) {
+			this.maxPendingImages = Math.max(0, maxPendingImages);
+		}
+
+		public int getMaxPendingImages() {
+			return maxPendingImages;
+		}
+
+		/**
+		 * Set what is done with the dark and flat fields, in the same pass as the
+		 * conversion, which saves reading the images again to normalise them.
+		 * @param flatFieldCorrection NONE (the default) to write the images as they are
+		 */
+		public void setFlatFieldCorrection(FlatFieldCorrection flatFieldCorrection) {
+			this.flatFieldCorrection = flatFieldCorrection != null ? flatFieldCorrection : FlatFieldCorrection.NONE;
+		}
+
+		public FlatFieldCorrection getFlatFieldCorrection() {
+			return flatFieldCorrection;
+		}
 	}
 }
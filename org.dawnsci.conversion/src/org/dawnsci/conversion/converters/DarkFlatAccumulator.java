@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2026 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.dawnsci.conversion.converters;
+
+import java.util.BitSet;
+
+import org.eclipse.january.dataset.Dataset;
+import org.eclipse.january.dataset.DatasetFactory;
+import org.eclipse.january.dataset.DatasetUtils;
+import org.eclipse.january.dataset.DoubleDataset;
+import org.eclipse.january.dataset.FloatDataset;
+import org.eclipse.january.dataset.IDataset;
+
+/**
+ * Averages the dark and flat fields of a tomography scan as its images are
+ * converted, from the image key, and corrects projections with them:
+ * (projection-dark)/(flat-dark), 0 where the flat is not brighter than the dark.
+ *
+ * Each field is added once whatever the number of times it is read.
+ */
+class DarkFlatAccumulator {
+
+	private static final int PROJECTION = 0;
+	private static final int FLAT       = 1;
+	private static final int DARK       = 2;
+
+	private final IDataset key;
+	private final String   darkName;
+	private final String   flatName;
+	private final BitSet   added = new BitSet();
+
+	private int[]    shape;
+	private double[] dark, flat;
+	private int      nDark, nFlat;
+	private double[] darkAverage, scale;
+
+	/**
+	 *
+	 * @param key image key of the scan
+	 * @param darkName file name of the dark average
+	 * @param flatName file name of the flat average
+	 */
+	DarkFlatAccumulator(IDataset key, String darkName, String flatName) {
+		this.key      = key;
+		this.darkName = darkName;
+		this.flatName = flatName;
+	}
+
+	boolean isProjection(int index) {
+		return key.getInt(index) == PROJECTION;
+	}
+
+	boolean isField(int index) {
+		final int type = key.getInt(index);
+		return type == FLAT || type == DARK;
+	}
+
+	/**
+	 * Adds an image to its average if it is a dark or flat field not added yet.
+	 * @param index of the image in the image key
+	 * @param image
+	 */
+	synchronized void add(int index, IDataset image) {
+		if (!isField(index) || added.get(index)) return;
+		added.set(index);
+
+		final double[] values = getValues(image);
+		if (shape == null) shape = image.getShape();
+		if (key.getInt(index) == DARK) {
+			if (dark == null) dark = new double[values.length];
+			sum(dark, values);
+			nDark++;
+		} else {
+			if (flat == null) flat = new double[values.length];
+			sum(flat, values);
+			nFlat++;
+		}
+		scale = null;
+	}
+
+	private static void sum(double[] sum, double[] values) {
+		if (sum.length != values.length) throw new IllegalArgumentException("The fields are not all of the same size");
+		for (int i = 0; i < sum.length; i++) sum[i] += values[i];
+	}
+
+	private static double[] getValues(IDataset image) {
+		DoubleDataset values = DatasetUtils.cast(DoubleDataset.class, image);
+		if (values.getStrides() != null) values = values.clone();
+		return values.getData();
+	}
+
+	/**
+	 *
+	 * @param projection
+	 * @return the projection corrected with the fields added so far, as floats
+	 */
+	synchronized Dataset correct(IDataset projection) {
+		if (nFlat == 0) throw new IllegalArgumentException("No flat field read before projection "+projection.getName());
+		if (scale == null) {
+			darkAverage = nDark > 0 ? average(dark, nDark) : new double[flat.length];
+			scale = average(flat, nFlat);
+			for (int i = 0; i < scale.length; i++) {
+				final double range = scale[i]-darkAverage[i];
+				scale[i] = range > 0 ? 1/range : 0;
+			}
+		}
+
+		final double[] values = getValues(projection);
+		if (values.length != scale.length) throw new IllegalArgumentException("Projection "+projection.getName()+" is not of the size of the fields");
+		final float[] corrected = new float[values.length];
+		for (int i = 0; i < corrected.length; i++) {
+			corrected[i] = (float)((values[i]-darkAverage[i])*scale[i]);
+		}
+		final Dataset result = DatasetFactory.createFromObject(FloatDataset.class, corrected, projection.getShape());
+		result.setName(projection.getName());
+		return result;
+	}
+
+	private static double[] average(double[] sum, int count) {
+		final double[] average = new double[sum.length];
+		for (int i = 0; i < sum.length; i++) average[i] = sum[i]/count;
+		return average;
+	}
+
+	/**
+	 *
+	 * @return the average of the dark fields, null if there are none
+	 */
+	synchronized Dataset getDarkAverage() {
+		return toDataset(dark, nDark, "dark_average");
+	}
+
+	/**
+	 *
+	 * @return the average of the flat fields, null if there are none
+	 */
+	synchronized Dataset getFlatAverage() {
+		return toDataset(flat, nFlat, "flat_average");
+	}
+
+	private Dataset toDataset(double[] sum, int count, String name) {
+		if (count == 0) return null;
+		final double[] average = average(sum, count);
+		final float[]  values  = new float[average.length];
+		for (int i = 0; i < values.length; i++) values[i] = (float)average[i];
+		final Dataset result = DatasetFactory.createFromObject(FloatDataset.class, values, shape);
+		result.setName(name);
+		return result;
+	}
+
+	String getDarkName() {
+		return darkName;
+	}
+
+	String getFlatName() {
+		return flatName;
+	}
+}
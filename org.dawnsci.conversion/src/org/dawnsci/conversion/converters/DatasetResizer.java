@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2026 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.dawnsci.conversion.converters;
+
+import java.util.Arrays;
+
+import org.eclipse.january.dataset.Dataset;
+import org.eclipse.january.dataset.DatasetFactory;
+
+/**
+ * Pads or crops a dataset to a new shape of the same rank. The part of the data
+ * which fits in the new shape keeps its position, the rest of the new shape is
+ * filled.
+ *
+ * The data is copied a row (last dimension) at a time with System.arraycopy on
+ * the primitive buffers of the datasets, so no element is boxed whatever the
+ * type of the dataset, compound datasets included.
+ */
+final class DatasetResizer {
+
+	private DatasetResizer() {
+		// Static methods only
+	}
+
+	/**
+	 * Resizes with NaN for floating point datasets and zero (false, null) for the others.
+	 * @param a
+	 * @param shape
+	 * @return a if it already has the shape, a new dataset otherwise
+	 */
+	static Dataset resize(final Dataset a, final int... shape) {
+		return resize(a, Double.NaN, shape);
+	}
+
+	/**
+	 *
+	 * @param a
+	 * @param fill value for the elements outside a, converted to the type of a.
+	 *        NaN becomes zero for integer datasets.
+	 * @param shape
+	 * @return a if it already has the shape, a new dataset otherwise
+	 */
+	static Dataset resize(Dataset a, final Number fill, final int... shape) {
+
+		final int[] from = a.getShapeRef();
+		if (Arrays.equals(from, shape)) return a;
+
+		// The buffer is only laid out by the shape if the dataset is not a view
+		if (a.getStrides() != null || a.getOffset() != 0) a = a.clone();
+
+		final int     isize = a.getElementsPerItem();
+		final Dataset r     = isize == 1 ? DatasetFactory.zeros(a.getClass(), shape)
+				                         : DatasetFactory.zeros(isize, a.getClass(), shape);
+
+		final Object src = a.getBuffer();
+		final Object dst = r.getBuffer();
+
+		if (!fits(from, shape)) fill(dst, fill);
+
+		if (from.length != shape.length || shape.length == 0) {
+			// Different rank, keep the elements in order
+			System.arraycopy(src, 0, dst, 0, Math.min(a.getSize(), r.getSize())*isize);
+			return r;
+		}
+		if (r.getSize() == 0 || a.getSize() == 0) return r;
+
+		final int rank = shape.length;
+		final int[] count = new int[rank];
+		for (int i = 0; i < rank; i++) count[i] = Math.min(from[i], shape[i]);
+
+		final int row = count[rank-1]*isize;
+		final int srcRow = from[rank-1]*isize;
+		final int dstRow = shape[rank-1]*isize;
+
+		// Position in the outer dimensions, counted in rows
+		final int[] pos = new int[Math.max(0, rank-1)];
+		int srcPos = 0, dstPos = 0;
+		while (true) {
+			System.arraycopy(src, srcPos, dst, dstPos, row);
+
+			// Next row, carrying over the outer dimensions which are done
+			int dim = rank-2;
+			while (dim >= 0) {
+				pos[dim]++;
+				if (pos[dim] < count[dim]) break;
+				pos[dim] = 0;
+				dim--;
+			}
+			if (dim < 0) break;
+
+			srcPos = offset(pos, from, srcRow);
+			dstPos = offset(pos, shape, dstRow);
+		}
+		return r;
+	}
+
+	private static int offset(int[] pos, int[] shape, int rowLength) {
+		int rows = 0;
+		for (int i = 0; i < pos.length; i++) rows = rows*shape[i] + pos[i];
+		return rows*rowLength;
+	}
+
+	private static boolean fits(int[] from, int[] shape) {
+		if (from.length != shape.length) return false;
+		for (int i = 0; i < shape.length; i++) if (from[i] < shape[i]) return false;
+		return true;
+	}
+
+	private static void fill(Object buffer, Number fill) {
+		if (buffer instanceof double[] d) {
+			Arrays.fill(d, fill.doubleValue());
+		} else if (buffer instanceof float[] f) {
+			Arrays.fill(f, fill.floatValue());
+		} else if (isZero(fill)) {
+			return; // Already zero
+		} else if (buffer instanceof long[] l) {
+			Arrays.fill(l, fill.longValue());
+		} else if (buffer instanceof int[] i) {
+			Arrays.fill(i, fill.intValue());
+		} else if (buffer instanceof short[] s) {
+			Arrays.fill(s, fill.shortValue());
+		} else if (buffer instanceof byte[] b) {
+			Arrays.fill(b, fill.byteValue());
+		} else if (buffer instanceof boolean[] b) {
+			Arrays.fill(b, fill.doubleValue() != 0);
+		}
+	}
+
+	private static boolean isZero(Number fill) {
+		final double value = fill.doubleValue();
+		return value == 0 || Double.isNaN(value);
+	}
+}
@@ -0,0 +1,371 @@
+/*
+ * Copyright (c) 2026 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.dawnsci.conversion.converters;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Expands a file path of a conversion context, a folder followed by a regular
+ * expression for the file names, see IConversionContext.getFilePaths(). If the
+ * name part starts with glob: it is a glob instead, for instance
+ * /dls/i12/data/glob:*.tif
+ *
+ * The expression is compiled once and the folder is read with a directory stream,
+ * so that folders with hundreds of thousands of files can be streamed without
+ * holding them all. Folders which cannot be read are skipped. A name without
+ * regular expression characters other than '.' which exists in the folder exactly
+ * as written is taken literally without listing the folder, so copy_1.nxs matches
+ * that file only, not copy_1xnxs. If it does not exist the name is matched as a
+ * regular expression.
+ *
+ * Usage:
+ * <pre>
+ * try (Stream&lt;File&gt; files = FileSetExpander.of(path).recursive(true).stream()) {
+ *     ...
+ * }
+ * List&lt;File&gt; files = FileSetExpander.of(path).listNatural();
+ * </pre>
+ */
+public final class FileSetExpander {
+
+	private static final Logger logger = LoggerFactory.getLogger(FileSetExpander.class);
+
+	private static final String GLOB = "glob:";
+	private static final Pattern REGEX_CHARS = Pattern.compile("[\\\\\\[\\](){}*+?^$|]");
+
+	private final Path              dir;
+	private final String            name;
+	private final String            literal;
+	private final Predicate<String> matcher;
+	private boolean                 recursive;
+
+	private FileSetExpander(Path dir, String name, String literal, Predicate<String> matcher) {
+		this.dir     = dir;
+		this.name    = name;
+		this.literal = literal;
+		this.matcher = matcher;
+	}
+
+	/**
+	 * The path of a file as a path of a conversion context which matches that file only,
+	 * whatever characters its name holds, for instance scan(1).nxs or [a].tif.
+	 *
+	 * @param file
+	 * @return the folder of the file followed by the quoted name of the file
+	 */
+	public static String quote(File file) {
+		final File abs = file.getAbsoluteFile();
+		return abs.getParent()+File.separator+Pattern.quote(abs.getName());
+	}
+
+	/**
+	 * Replaces the backslashes of a path with /, so that its regular expression can be
+	 * parsed, except those of a name from quote(File) which are part of the expression.
+	 *
+	 * @param path
+	 * @return the path / separated
+	 */
+	public static String toSlashes(String path) {
+		final int quote = getQuote(path);
+		if (quote < 0) return path.replace('\\', '/');
+		return path.substring(0, quote).replace('\\', '/')+"/"+path.substring(quote+1);
+	}
+
+	/**
+	 *
+	 * @param path
+	 * @return position of the separator before a name from quote(File), -1 if there is none
+	 */
+	private static int getQuote(String path) {
+		final int quote = Math.max(path.lastIndexOf("/\\Q"), path.lastIndexOf("\\\\Q"));
+		return quote >= 0 && path.endsWith("\\E") ? quote : -1;
+	}
+
+	/**
+	 *
+	 * @param path folder followed by the regular expression or glob for the file names, / separated.
+	 *        An empty name matches every file, a name from quote(File) matches that file only.
+	 * @return the expander for path
+	 */
+	public static FileSetExpander of(String path) {
+
+		// The name of quote(File), the backslashes of which are not separators
+		final int quote = getQuote(path);
+		if (quote >= 0) {
+			final String  dir     = quote > 0 ? path.substring(0, quote).replace('\\', '/') : "/";
+			final String  name    = path.substring(quote+1);
+			final Pattern pattern = Pattern.compile(name);
+			final String  inner   = name.substring(2, name.length()-2);
+			return new FileSetExpander(Paths.get(dir), name, inner.contains("\\E") ? null : inner, n -> pattern.matcher(n).matches());
+		}
+
+		path = path.replace('\\', '/');
+		final int    sep  = path.lastIndexOf('/');
+		final String dir  = sep > 0 ? path.substring(0, sep) : sep == 0 ? "/" : ".";
+		final String name = path.substring(sep+1);
+
+		final Predicate<String> matcher;
+		if (name.isEmpty()) {
+			matcher = n -> true;
+		} else if (name.startsWith(GLOB)) {
+			final PathMatcher glob = FileSystems.getDefault().getPathMatcher(name);
+			matcher = n -> glob.matches(Paths.get(n));
+		} else {
+			Predicate<String> regex;
+			try {
+				final Pattern pattern = Pattern.compile(name);
+				regex = n -> pattern.matcher(n).matches();
+			} catch (PatternSyntaxException ne) {
+				// File names like scan[1].nxs
+				regex = n -> false;
+			}
+			matcher = regex.or(name::equals);
+		}
+		final boolean literal = !name.isEmpty() && !name.startsWith(GLOB) && !REGEX_CHARS.matcher(name).find();
+		return new FileSetExpander(Paths.get(dir), name, literal ? name : null, matcher);
+	}
+
+	/**
+	 *
+	 * @param recursive true to match the file names in the sub-folders too,
+	 *        symbolic links to folders are not followed. False by default.
+	 * @return this
+	 */
+	public FileSetExpander recursive(boolean recursive) {
+		this.recursive = recursive;
+		return this;
+	}
+
+	/**
+	 * The matching files and folders, in the order the file system lists them.
+	 * The folders are read as the stream is consumed, the stream must be closed.
+	 *
+	 * @return stream of matches
+	 */
+	public Stream<File> stream() {
+		final File literal = getLiteral();
+		if (literal != null) return Stream.of(literal);
+
+		final Matches matches = new Matches();
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(matches, Spliterator.ORDERED | Spliterator.NONNULL), false)
+				            .onClose(matches::close);
+	}
+
+	/**
+	 *
+	 * @return the matches, in the order the file system lists them
+	 */
+	public List<File> list() {
+		try (Stream<File> files = stream()) {
+			final List<File> ret = new ArrayList<File>(7);
+			files.forEach(ret::add);
+			return ret;
+		}
+	}
+
+	/**
+	 *
+	 * @return the matches, sorted by folder then by name with numbers compared by value
+	 */
+	public List<File> listNatural() {
+		return sortNatural(list());
+	}
+
+	/**
+	 * Sorts files by folder, then by name with the numbers in the folders and names
+	 * compared by value, so that image_9.tif comes before image_10.tif, run2/ before
+	 * run10/, and the files of one folder are not mixed with those of another. The sort
+	 * key of each file is worked out once rather than the paths being parsed again
+	 * for every comparison.
+	 *
+	 * @param files
+	 * @return new sorted list
+	 */
+	public static List<File> sortNatural(Collection<File> files) {
+		final Keyed[] keyed = new Keyed[files.size()];
+		int i = 0;
+		for (File file : files) keyed[i++] = new Keyed(file);
+		Arrays.sort(keyed);
+		final List<File> ret = new ArrayList<File>(keyed.length);
+		for (Keyed k : keyed) ret.add(k.file);
+		return ret;
+	}
+
+	private File getLiteral() {
+		if (recursive || literal == null) return null;
+		final Path path = dir.resolve(literal);
+		return Files.exists(path) ? path.toFile() : null;
+	}
+
+	/**
+	 * Reads the folders one at a time, queueing the sub-folders when recursive.
+	 */
+	private class Matches implements Iterator<File>, AutoCloseable {
+
+		private final Deque<Path>     folders = new ArrayDeque<Path>(7);
+		private DirectoryStream<Path> current;
+		private Iterator<Path>        entries;
+		private File                  next;
+
+		Matches() {
+			folders.add(dir);
+		}
+
+		@Override
+		public boolean hasNext() {
+			while (next == null) {
+				if (entries != null && entries.hasNext()) {
+					final Path entry;
+					try {
+						entry = entries.next();
+					} catch (DirectoryIteratorException ne) {
+						logger.debug("Cannot read all of {}", current, ne);
+						closeCurrent();
+						continue;
+					}
+					if (recursive && Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS)) folders.add(entry);
+					final Path fileName = entry.getFileName();
+					if (fileName != null && matcher.test(fileName.toString())) next = entry.toFile();
+				} else {
+					closeCurrent();
+					if (folders.isEmpty()) return false;
+					final Path folder = folders.poll();
+					try {
+						current = Files.newDirectoryStream(folder);
+						entries = current.iterator();
+					} catch (IOException | SecurityException ne) {
+						logger.debug("Cannot read {}", folder, ne);
+					}
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public File next() {
+			if (!hasNext()) throw new NoSuchElementException();
+			final File ret = next;
+			next = null;
+			return ret;
+		}
+
+		private void closeCurrent() {
+			entries = null;
+			if (current == null) return;
+			try {
+				current.close();
+			} catch (IOException ne) {
+				logger.debug("Cannot close {}", current, ne);
+			}
+			current = null;
+		}
+
+		@Override
+		public void close() {
+			closeCurrent();
+			folders.clear();
+		}
+	}
+
+	/**
+	 * A file with its natural sort key, in the order of SortNatural. Each number in
+	 * the name is replaced by '0', the number of significant digits then the significant
+	 * digits, so that comparing keys as strings compares the numbers by value. No
+	 * character other than a digit sorts between '0' and '9' so a number still sorts
+	 * against the other characters as its digits would. Leading zeros are dropped and
+	 * only break ties. The folders are keyed in the same way, so that run2/ comes
+	 * before run10/.
+	 */
+	private static final class Keyed implements Comparable<Keyed> {
+		private final File   file;
+		private final String parent;
+		private final String parentKey;
+		private final String name;
+		private final String key;
+		private final int    zeros;
+
+		Keyed(File file) {
+			this.file   = file;
+			this.parent = String.valueOf(file.getAbsoluteFile().getParent());
+			this.name   = file.getName();
+
+			final StringBuilder buf = new StringBuilder(parent.length()+8);
+			appendKey(parent, buf);
+			this.parentKey = buf.toString();
+
+			buf.setLength(0);
+			this.zeros = appendKey(name, buf);
+			this.key   = buf.toString();
+		}
+
+		/**
+		 *
+		 * @param value
+		 * @param buf the key of value is appended to
+		 * @return number of leading zeros dropped
+		 */
+		private static int appendKey(String value, StringBuilder buf) {
+			int leading = 0;
+			for (int i = 0; i < value.length();) {
+				final char c = value.charAt(i);
+				if (!Character.isDigit(c)) {
+					buf.append(c);
+					i++;
+					continue;
+				}
+				int start = i;
+				while (start < value.length() && value.charAt(start) == '0') start++;
+				int end = start;
+				while (end < value.length() && Character.isDigit(value.charAt(end))) end++;
+				leading += start-i;
+				if (end > start) buf.append('0').append((char)(end-start)).append(value, start, end);
+				i = end;
+			}
+			return leading;
+		}
+
+		@Override
+		public int compareTo(Keyed other) {
+			int ret = parentKey.compareTo(other.parentKey);
+			if (ret == 0) ret = parent.compareTo(other.parent);
+			if (ret == 0) ret = key.compareTo(other.key);
+			if (ret == 0) ret = Integer.compare(zeros, other.zeros);
+			if (ret == 0) ret = name.compareTo(other.name);
+			if (ret == 0) ret = file.compareTo(other.file);
+			return ret;
+		}
+	}
+}
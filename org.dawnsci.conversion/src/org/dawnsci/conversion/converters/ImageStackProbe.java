@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2026 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.dawnsci.conversion.converters;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.dawnsci.analysis.api.io.ILoaderService;
+import org.eclipse.january.IMonitor;
+import org.eclipse.january.dataset.ILazyDataset;
+import org.eclipse.january.metadata.IMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.ac.diamond.osgi.services.ServiceProvider;
+
+/**
+ * Finds which files of a directory are images which can go in a stack,
+ * reading only their headers where the loader supports it.
+ *
+ * The shape and element class of every file probed are cached by path,
+ * size and modification time so that converting the same directory again
+ * does not touch the files. Files are probed in parallel.
+ */
+final class ImageStackProbe {
+
+	private static final Logger logger = LoggerFactory.getLogger(ImageStackProbe.class);
+
+	private static final int CACHE_SIZE = 1<<17;
+
+	@SuppressWarnings("serial")
+	private static final Map<Key, Probe> CACHE = Collections.synchronizedMap(new LinkedHashMap<Key, Probe>(1024, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key, Probe> eldest) {
+			return size() > CACHE_SIZE;
+		}
+	});
+
+	private ImageStackProbe() {
+		// Static methods only
+	}
+
+	private record Key(String path, long size, long modified) {
+		Key(File file) {
+			this(file.getAbsolutePath(), file.length(), file.lastModified());
+		}
+	}
+
+	/**
+	 * The shape and element class of the first dataset of a file. The shape is
+	 * null if the file cannot be loaded and the element class is null if the
+	 * header does not say.
+	 */
+	static final class Probe {
+		private final int[]    shape;
+		private final Class<?> elementClass;
+
+		private Probe(int[] shape, Class<?> elementClass) {
+			this.shape        = shape;
+			this.elementClass = elementClass;
+		}
+		int[] getShape() {
+			return shape;
+		}
+		Class<?> getElementClass() {
+			return elementClass;
+		}
+		int getRank() {
+			return shape!=null ? shape.length : -1;
+		}
+	}
+
+	/**
+	 *
+	 * @param file
+	 * @return the shape of the first dataset in the file, read from the cache if the file has not changed.
+	 */
+	static Probe probe(File file) {
+		final Key key = new Key(file);
+		Probe probe = CACHE.get(key);
+		if (probe == null) {
+			probe = read(file);
+			CACHE.put(key, probe);
+		}
+		return probe;
+	}
+
+	private static Probe read(File file) {
+		final ILoaderService service = ServiceProvider.getService(ILoaderService.class);
+		final String path = file.getAbsolutePath();
+		try {
+			final IMetadata meta = service.getMetadata(path, null);
+			if (meta != null) {
+				final Collection<String> names  = meta.getDataNames();
+				final Map<String, int[]> shapes = meta.getDataShapes();
+				if (names != null && !names.isEmpty() && shapes != null) {
+					final int[] shape = shapes.get(names.iterator().next());
+					if (shape != null) return new Probe(shape, null);
+				}
+			}
+		} catch (Exception ne) {
+			logger.trace("No header for {}, loading it", path, ne);
+		}
+		try {
+			final ILazyDataset data = service.getData(path, null).getLazyDataset(0);
+			return new Probe(data.getShape(), data.getElementClass());
+		} catch (Exception ignored) {
+			logger.debug("Exception ignored: {}", ignored.getMessage());
+			return new Probe(null, null);
+		}
+	}
+
+	/**
+	 * Probes the files in parallel.
+	 *
+	 * @param files
+	 * @param rank of the images wanted
+	 * @param monitor checked for cancellation
+	 * @return the absolute paths of the files of the rank, in the order of files
+	 * @throws Exception if the monitor is cancelled
+	 */
+	static List<String> findImages(List<File> files, int rank, IMonitor monitor) throws Exception {
+
+		final List<String> paths = new ArrayList<>(Math.max(files.size(), 10));
+		final int nThreads = Math.max(1, Math.min(files.size(), Runtime.getRuntime().availableProcessors()));
+		final AtomicInteger count = new AtomicInteger();
+		final ExecutorService pool = Executors.newFixedThreadPool(nThreads, r -> {
+			final Thread thread = new Thread(r, "Image probe "+count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			final List<Future<Probe>> probes = new ArrayList<>(files.size());
+			for (File file : files) probes.add(pool.submit(() -> probe(file)));
+
+			for (int i = 0; i < files.size(); i++) {
+				if (monitor != null && monitor.isCancelled()) throw new Exception("Conversion is cancelled!");
+				final Probe probe;
+				try {
+					probe = probes.get(i).get();
+				} catch (ExecutionException ne) {
+					continue;
+				}
+				if (probe.getRank() == rank) paths.add(files.get(i).getAbsolutePath());
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+		return paths;
+	}
+}
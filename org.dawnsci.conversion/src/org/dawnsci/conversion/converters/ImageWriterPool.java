@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2026 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.dawnsci.conversion.converters;
+
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.dawnsci.conversion.ConversionStatistics;
+import org.eclipse.january.dataset.DatasetUtils;
+import org.eclipse.january.dataset.IDataset;
+
+import uk.ac.diamond.scisoft.analysis.io.DataHolder;
+import uk.ac.diamond.scisoft.analysis.io.JavaImageSaver;
+
+/**
+ * Encodes and writes images on a pool of threads. The file name of each image
+ * is chosen by the caller so that the names do not depend on the order in which
+ * the writes complete.
+ *
+ * The number of images submitted but not yet written is bounded, submit blocks
+ * when the bound is reached, which bounds the memory held by the pool. The first
+ * write to fail is thrown from the next call to submit or from close.
+ */
+class ImageWriterPool implements AutoCloseable {
+
+	private static final AtomicInteger POOL_COUNT = new AtomicInteger();
+
+	private final ExecutorService pool;
+	private final Semaphore       pending;
+	private final String          format;
+	private final AtomicInteger   written = new AtomicInteger();
+	private final ConversionStatistics statistics;
+
+	private volatile Exception    error;
+
+	/**
+	 *
+	 * @param nThreads number of writer threads
+	 * @param maxPending maximum number of images submitted and not yet written, 0 for twice nThreads
+	 * @param format of the images, as JavaImageSaver takes it
+	 * @param statistics told of the writes and of the memory held by pending images, may be null
+	 */
+	ImageWriterPool(int nThreads, int maxPending, String format, ConversionStatistics statistics) {
+		nThreads     = Math.max(1, nThreads);
+		this.statistics = statistics;
+		this.pending = new Semaphore(maxPending > 0 ? maxPending : 2*nThreads);
+		this.format  = format;
+
+		final String poolName = "Image writer "+POOL_COUNT.incrementAndGet()+"-";
+		final AtomicInteger threadCount = new AtomicInteger();
+		this.pool = Executors.newFixedThreadPool(nThreads, r -> {
+			final Thread thread = new Thread(r, poolName+threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Queue an image to be written, waiting if too many images are pending.
+	 * @param filename
+	 * @param image
+	 * @param bits bit depth of this image, instead of the one of the pool
+	 * @param journal the image is committed to once written, may be null
+	 * @param index of the image in the journal
+	 * @throws Exception if an earlier write failed
+	 */
+	void submit(final String filename, final IDataset image, final int bits, final ConversionJournal journal, final int index) throws Exception {
+		checkError();
+		pending.acquire();
+		final long bytes = statistics != null ? DatasetUtils.convertToDataset(image).getNbytes() : 0;
+		if (statistics != null) statistics.queued(bytes);
+		try {
+			pool.execute(() -> {
+				try {
+					if (error == null) {
+						write(filename, image, bits);
+						if (journal != null) journal.commit(index, index+1);
+						written.incrementAndGet();
+					}
+				} catch (Exception ne) {
+					if (error == null) error = ne;
+				} finally {
+					if (statistics != null) statistics.queued(-bytes);
+					pending.release();
+				}
+			});
+		} catch (RuntimeException ne) {
+			if (statistics != null) statistics.queued(-bytes);
+			pending.release();
+			throw ne;
+		}
+	}
+
+	private void write(String filename, IDataset image, int bits) throws Exception {
+		final File file = new File(filename);
+		file.getParentFile().mkdirs();
+
+		final long start = System.nanoTime();
+		final JavaImageSaver saver = new JavaImageSaver(filename, format, bits, true);
+		final DataHolder     dh    = new DataHolder();
+		dh.addDataset(image.getName(), image);
+		saver.saveFile(dh);
+		if (statistics != null) statistics.addWrite(System.nanoTime()-start, file.length());
+	}
+
+	/**
+	 *
+	 * @return the number of images written so far
+	 */
+	int getWritten() {
+		return written.get();
+	}
+
+	private void checkError() throws Exception {
+		if (error != null) throw error;
+	}
+
+	/**
+	 * Stops the writers without waiting for the pending images.
+	 */
+	void cancel() {
+		pool.shutdownNow();
+	}
+
+	/**
+	 * Waits for the pending images to be written.
+	 * @throws Exception if a write failed
+	 */
+	@Override
+	public void close() throws Exception {
+		pool.shutdown();
+		while (!pool.awaitTermination(1, TimeUnit.SECONDS)) {
+			// Keep waiting, the writers always finish
+		}
+		checkError();
+	}
+}
@@ -11,12 +11,9 @@ package org.dawnsci.conversion.converters;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
 
-import org.dawb.common.util.list.SortNatural;
 import org.eclipse.dawnsci.analysis.api.conversion.IConversionContext;
-import org.eclipse.dawnsci.analysis.api.io.ILoaderService;
 import org.eclipse.dawnsci.analysis.api.tree.DataNode;
 import org.eclipse.dawnsci.analysis.api.tree.GroupNode;
 import org.eclipse.dawnsci.analysis.api.tree.Node;
@@ -25,12 +22,15 @@ import org.eclipse.dawnsci.analysis.tree.TreeFactory;
 import org.eclipse.dawnsci.nexus.INexusFileFactory;
 import org.eclipse.dawnsci.nexus.NexusConstants;
 import org.eclipse.dawnsci.nexus.NexusFile;
-import org.eclipse.dawnsci.nexus.NexusUtils;
 import org.eclipse.january.IMonitor;
 import org.eclipse.january.dataset.Dataset;
 import org.eclipse.january.dataset.DatasetUtils;
 import org.eclipse.january.dataset.IDataset;
-import org.eclipse.january.dataset.ILazyDataset;
+import org.eclipse.january.dataset.ILazyWriteableDataset;
+import org.eclipse.january.dataset.LazyWriteableDataset;
+import org.eclipse.january.dataset.SliceND;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import uk.ac.diamond.osgi.services.ServiceProvider;
 import uk.ac.diamond.scisoft.analysis.io.ImageStackLoader;
@@ -39,89 +39,156 @@ import uk.ac.diamond.scisoft.analysis.io.ImageStackLoader;
  * This converter converts a directory of images to a stack in HDF5
  * which allows slicing tools to be run in a faster way.
  * 
+ * Set the parallelism of the context to decode images on several threads,
+ * the stack is still written by one thread in image order.
+ * 
+ * When the context is resumable, running the conversion again appends the images
+ * which are not in the stack yet, the images already written are not read again.
+ * The stack is written again if one of its images has changed.
+ * 
  * @author Matthew Gerring
  *
  */
 public class ImagesToHDFConverter extends AbstractConversion{
 
+	private static final Logger logger = LoggerFactory.getLogger(ImagesToHDFConverter.class);
+
+	private static final ConversionInfoBean DEFAULT_BEAN = new ConversionInfoBean();
+
 	private NexusFile hFile;
 	private String name;
 	private GroupNode group;
+	private ConversionJournal journal;
+	private boolean upToDate;
 
 	public ImagesToHDFConverter(IConversionContext context) throws Exception {
 		super(context);
 
-		// We open the file here, and create the group.
+		// The images are found first so that a resumed conversion knows which of them are new.
+		final List<String> images = findImages();
+		final List<File>   inputs = new ArrayList<>(images.size());
+		for (String image : images) inputs.add(new File(image));
+
+		final File output = new File(context.getOutputPath());
+		int from = 0;
+		if (isResumable()) {
+			journal = new ConversionJournal(output);
+			if (output.isFile() && journal.isCurrent(inputs)) from = journal.getCommitted();
+		} else {
+			ConversionJournal.delete(output);
+		}
+
 		hFile   = ServiceProvider.getService(INexusFileFactory.class).newNexusFile(context.getOutputPath());
-		hFile.createAndOpenToWrite();
-		// We make the group
-		final String datasetNameStr = context.getDatasetNames().get(0);
-		String[]  paths = datasetNameStr.split(Node.SEPARATOR);
-		if ("".equals(paths[0]))
-			paths = Arrays.copyOfRange(paths, 1, paths.length);
-		final String entry = Tree.ROOT + paths[0];
-		group = hFile.getGroup(entry, true);
-		hFile.addAttribute(group, TreeFactory.createAttribute(NexusConstants.NXCLASS, NexusConstants.ENTRY));
-
-		if (paths.length>2) {
-			String path = "";
-			for (int i = 1; i < paths.length-1; i++) {
-				path = path + Node.SEPARATOR + paths[i];
-				group = hFile.getGroup(path, true);
-				if (i<(paths.length-2))
-					hFile.addAttribute(group, TreeFactory.createAttribute(NexusConstants.NXCLASS, NexusConstants.ENTRY));
+		try {
+			final String datasetNameStr = context.getDatasetNames().get(0);
+			String[]  paths = datasetNameStr.split(Node.SEPARATOR);
+			if ("".equals(paths[0]))
+				paths = Arrays.copyOfRange(paths, 1, paths.length);
+			name = paths[paths.length-1];
+
+			if (from > 0 && !openStack(Tree.ROOT + String.join(Node.SEPARATOR, paths), from)) from = 0;
+			if (from == 0) {
+				// We open the file here, and create the group.
+				hFile.createAndOpenToWrite();
+				// We make the group
+				final String entry = Tree.ROOT + paths[0];
+				group = hFile.getGroup(entry, true);
+				hFile.addAttribute(group, TreeFactory.createAttribute(NexusConstants.NXCLASS, NexusConstants.ENTRY));
+
+				if (paths.length>2) {
+					String path = "";
+					for (int i = 1; i < paths.length-1; i++) {
+						path = path + Node.SEPARATOR + paths[i];
+						group = hFile.getGroup(path, true);
+						if (i<(paths.length-2))
+							hFile.addAttribute(group, TreeFactory.createAttribute(NexusConstants.NXCLASS, NexusConstants.ENTRY));
+					}
+				}
 			}
-		}
-		name = paths[paths.length-1];
+			if (journal != null) journal.start(inputs, from > 0);
+			written = from;
 
-		// We put the many files in one ILazyDataset and set that in the context as an override.
-		ILazyDataset set = getLazyDataset();
-		context.setLazyDataset(set);
-		context.addSliceDimension(0, "all");
+			if (from >= images.size()) {
+				upToDate = true;
+				return;
+			}
+			// We put the many files in one ILazyDataset and set that in the context as an override.
+			ImageStackLoader loader = new ImageStackLoader(images.subList(from, images.size()), context.getMonitor());
+			context.setLazyDataset(loader.createLazyDataset("Folder Stack"));
+			context.addSliceDimension(0, "all");
+		} catch (Exception ne) {
+			// The file is only closed by close(...) once the converter is made
+			try {
+				hFile.close();
+			} catch (Exception ignored) {
+				logger.debug("Cannot close {}", context.getOutputPath(), ignored);
+			}
+			throw ne;
+		}
 	}
 
-	private ILazyDataset getLazyDataset() throws Exception {
+	private List<String> findImages() throws Exception {
 
 		final List<String> regexs = context.getFilePaths();
-		final List<String> paths = new ArrayList<>(Math.max(regexs.size(),10));
+		final List<File>   files  = new ArrayList<>(Math.max(regexs.size(),10));
 		for (String regex : regexs) {
-			final List<File>   files = expand(regex);
-			for (File file : files) {
-				try {
-					ILazyDataset data = ServiceProvider.getService(ILoaderService.class)
-							.getData(file.getAbsolutePath(), context.getMonitor()).getLazyDataset(0);
-					if (data.getRank()==2) paths.add(file.getAbsolutePath());
-				} catch (Exception ignored) {
-					continue;
-				}
-				
-				if (context.getMonitor()!=null && context.getMonitor().isCancelled()) {
-					hFile.close();
-					throw new Exception("Conversion is cancelled!");
-				}
+			final List<File> expanded = expand(regex);
+			if (expanded != null) files.addAll(expanded);
+		}
+		return ImageStackProbe.findImages(FileSetExpander.sortNatural(files), 2, context.getMonitor());
+	}
+
+	/**
+	 * Opens the stack written by an earlier conversion to append to it.
+	 * @param path of the stack
+	 * @param frames number of images committed to the stack
+	 * @return false if the stack cannot be appended to, in which case it is written again
+	 */
+	private boolean openStack(String path, int frames) {
+		try {
+			hFile.openToWrite(false);
+			final DataNode node = hFile.getData(path);
+			final ILazyWriteableDataset stack = node != null ? node.getWriteableDataset() : null;
+			if (stack != null && stack.getShape()[0] >= frames) {
+				writeable = stack;
+				pending   = new ArrayList<>(getBean().getBatchSize());
+				return true;
 			}
+			logger.warn("Cannot append to {} in {}, it is written again", path, context.getOutputPath());
+		} catch (Exception ne) {
+			logger.warn("Cannot append to {} in {}, it is written again", path, context.getOutputPath(), ne);
+		}
+		try {
+			hFile.close();
+		} catch (Exception ne) {
+			logger.debug("Cannot close {}", context.getOutputPath(), ne);
 		}
-		Collections.sort(paths, new SortNatural<String>(true));
-		ImageStackLoader loader = new ImageStackLoader(paths, context.getMonitor());
-		return loader.createLazyDataset("Folder Stack");
+		return false;
 	}
 
-	private boolean first = true;
+	@Override
+	public void process(IConversionContext context) throws Exception {
+		// Every image is already in the stack
+		if (upToDate) return;
+		super.process(context);
+	}
+
+	private ILazyWriteableDataset writeable;
+	private List<Dataset>         pending;
+	private int                   written;
 
 	@Override
 	protected void convert(IDataset slice) throws Exception {
-		final String datasetPath = context.getDatasetNames().get(0);
 		Dataset data = DatasetUtils.convertToDataset(slice);
-		data.setName(name);
-		DataNode d = NexusUtils.appendData(hFile, group, data);
-		if (first) {
-			hFile.addAttribute(d, TreeFactory.createAttribute("original_name", datasetPath));
-			first = false;
-		}
+		if (writeable == null) createWriteable(data);
+		
+		pending.add(data);
+		if (pending.size() >= getBean().getBatchSize()) flush();
 		
 		IMonitor mon = context.getMonitor();
 		if (mon != null) {
 			if (mon.isCancelled()) {
+				pending.clear();
 				hFile.close();
 				throw new Exception("Conversion is cancelled!");
 			} else {
@@ -130,8 +197,170 @@ public class ImagesToHDFConverter extends AbstractConversion{
 		}
 	}
 
+	/**
+	 * Creates an empty stack in the output file, with the chunking and compression
+	 * of the bean. The stack grows as the images are written so that a conversion
+	 * which stops early does not leave empty images at the end of it.
+	 * @param first image
+	 * @throws Exception
+	 */
+	private void createWriteable(Dataset first) throws Exception {
+		final ConversionInfoBean bean = getBean();
+		
+		final int[] frame = first.getShape();
+		final int[] shape = new int[frame.length+1];
+		shape[0] = context.getLazyDataset().getShape()[0];
+		System.arraycopy(frame, 0, shape, 1, frame.length);
+		// Chunked for the full stack
+		final int[] chunks = bean.getChunks(shape);
+		shape[0] = 0;
+		
+		final int[] maxShape = shape.clone();
+		maxShape[0] = ILazyWriteableDataset.UNLIMITED;
+		
+		writeable = new LazyWriteableDataset(name, first.getClass(), shape, maxShape, chunks, null);
+		final DataNode d = hFile.createData(group, writeable, bean.isCompressed() ? NexusFile.COMPRESSION_LZW_L1 : NexusFile.COMPRESSION_NONE);
+		hFile.addAttribute(d, TreeFactory.createAttribute("original_name", context.getDatasetNames().get(0)));
+		
+		pending = new ArrayList<>(bean.getBatchSize());
+	}
+
+	/**
+	 * Writes the pending images in one hyperslab.
+	 * @throws Exception
+	 */
+	private void flush() throws Exception {
+		if (pending == null || pending.isEmpty()) return;
+		
+		final int nFrames = pending.size();
+		final Dataset[] frames = new Dataset[nFrames];
+		for (int i = 0; i < nFrames; i++) {
+			final Dataset frame = pending.get(i);
+			final int[] fshape = frame.getShape();
+			final int[] rshape = new int[fshape.length+1];
+			rshape[0] = 1;
+			System.arraycopy(fshape, 0, rshape, 1, fshape.length);
+			frames[i] = frame.reshape(rshape);
+		}
+		final Dataset block = nFrames==1 ? frames[0] : DatasetUtils.concatenate(frames, 0);
+		
+		final int[] start = new int[block.getRank()];
+		final int[] stop  = block.getShape();
+		start[0] = written;
+		stop[0]  = written+nFrames;
+		final long begin = System.nanoTime();
+		writeable.setSlice(null, block, new SliceND(writeable.getShape(), writeable.getMaxShape(), start, stop, null));
+		getStatistics().addWrite(System.nanoTime()-begin, block.getNbytes());
+		
+		written += nFrames;
+		pending.clear();
+		if (journal != null) {
+			// The images are only committed once they are on disk
+			hFile.flush();
+			journal.commit(written-nFrames, written);
+		}
+	}
+
+	private ConversionInfoBean getBean() {
+		if (context.getUserObject() instanceof ConversionInfoBean bean) return bean;
+		return DEFAULT_BEAN;
+	}
+
 	public void close(IConversionContext context) throws Exception{
-		hFile.close();
+		try {
+			flush();
+		} finally {
+			hFile.close();
+		}
 		super.close(context);
 	}
+
+	/**
+	 * To be used as the user object to set how the stack is written.
+	 * 
+	 * The defaults write one image at a time, chunked by image, without compression.
+	 */
+	public static final class ConversionInfoBean {
+		
+		private int[]   chunkShape;
+		private boolean compressed = false;
+		private int     batchSize  = 1;
+		
+		/**
+		 * 
+		 * @return shape of a chunk of one image, for instance {256,256} for tiles, null
+		 * to chunk by whole images.
+		 */
+		public int[] getChunkShape() {
+			return chunkShape;
+		}
+		/**
+		 * 
+		 * @param chunkShape shape of a chunk of one image, or of the stack when of rank 3,
+		 * null to chunk by whole images.
+		 */
+		public void setChunkShape(int... chunkShape) {
+			this.chunkShape = chunkShape;
+		}
+		/**
+		 * 
+		 * @return true if the stack is written with the deflate filter
+		 */
+		public boolean isCompressed() {
+			return compressed;
+		}
+		public void setCompressed(boolean compressed) {
+			this.compressed = compressed;
+		}
+		/**
+		 * 
+		 * @return number of images stacked into each write to the file
+		 */
+		public int getBatchSize() {
+			return batchSize;
+		}
+		public void setBatchSize(int batchSize) {
+			this.batchSize = Math.max(1, batchSize);
+		}
+		
+		int[] getChunks(int[] shape) {
+			final int[] chunks = shape.clone();
+			chunks[0] = 1;
+			if (chunkShape != null) {
+				final int offset = shape.length - chunkShape.length;
+				for (int i = 0; i < chunkShape.length; i++) {
+					if (i+offset < 0 || chunkShape[i] < 1) continue;
+					chunks[i+offset] = Math.min(chunkShape[i], Math.max(1, shape[i+offset]));
+				}
+			}
+			return chunks;
+		}
+		
+		@Override
+		public int hashCode() {
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + batchSize;
+			result = prime * result + Arrays.hashCode(chunkShape);
+			result = prime * result + (compressed ? 1231 : 1237);
+			return result;
+		}
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (obj == null)
+				return false;
+			if (getClass() != obj.getClass())
+				return false;
+			ConversionInfoBean other = (ConversionInfoBean) obj;
+			if (batchSize != other.batchSize)
+				return false;
+			if (!Arrays.equals(chunkShape, other.chunkShape))
+				return false;
+			if (compressed != other.compressed)
+				return false;
+			return true;
+		}
+	}
 }
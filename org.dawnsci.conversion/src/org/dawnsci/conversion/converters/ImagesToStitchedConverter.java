@@ -10,10 +10,9 @@ package org.dawnsci.conversion.converters;
 
 import java.io.File;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
-import org.dawb.common.util.list.SortNatural;
+import org.dawb.common.util.dataset.TileStore;
 import org.eclipse.dawnsci.analysis.api.conversion.IConversionContext;
 import org.eclipse.dawnsci.analysis.api.image.IImageStitchingProcess;
 import org.eclipse.dawnsci.analysis.api.image.IImageTransform;
@@ -21,9 +20,7 @@ import org.eclipse.dawnsci.analysis.api.io.IDataHolder;
 import org.eclipse.dawnsci.analysis.api.io.ILoaderService;
 import org.eclipse.dawnsci.analysis.api.roi.IROI;
 import org.eclipse.dawnsci.analysis.dataset.impl.Image;
-import org.eclipse.dawnsci.hdf5.HDF5Utils;
 import org.eclipse.january.IMonitor;
-import org.eclipse.january.dataset.FloatDataset;
 import org.eclipse.january.dataset.IDataset;
 import org.eclipse.january.dataset.ILazyDataset;
 import org.eclipse.january.dataset.ILazyWriteableDataset;
@@ -35,17 +32,20 @@ import uk.ac.diamond.osgi.services.ServiceProvider;
 import uk.ac.diamond.scisoft.analysis.io.DataHolder;
 import uk.ac.diamond.scisoft.analysis.io.ImageStackLoader;
 import uk.ac.diamond.scisoft.analysis.io.JavaImageSaver;
-import uk.ac.diamond.scisoft.analysis.utils.FileUtils;
 
 /**
  * Converts a directory of images to a stitched image
  * 
+ * Set the parallelism of the context to decode images on several threads,
+ * they are still rotated and stored one at a time in image order.
+ * 
  * @author Baha El Kassaby
  * 
  */
 public class ImagesToStitchedConverter extends AbstractImageConversion {
 
 	private static final Logger logger = LoggerFactory.getLogger(ImagesToStitchedConverter.class);
+	private TileStore tiles;
 	private ILazyWriteableDataset lazyfile;
 
 	public ImagesToStitchedConverter() {
@@ -76,17 +76,19 @@ public class ImagesToStitchedConverter extends AbstractImageConversion {
 		double angle = conversionBean.getAngle();
 		IDataset rotatedSlice = ServiceProvider.getService(IImageTransform.class).rotate(slice, angle);
 
-		if (lazyfile == null)
-			lazyfile = createTempLazyFile(lazy.getShape(), "stitchedconverter.h5");
+		if (lazyfile == null) {
+			tiles = new TileStore(lazy.getShape(), conversionBean.getTileMemory());
+			lazyfile = tiles.createLazyDataset("stitchedconverter");
+		}
 		
 		// crop each image given an elliptical roi
 		IROI roi = conversionBean.getRoi();
 		if (roi != null) {
 			IDataset cropped = Image.maxRectangleFromEllipticalImage(rotatedSlice, roi);
-			//save to temp file
+			// store the tile off heap, or in a temp file when too large
 			appendDataset(lazyfile, cropped, idx, context.getMonitor());
 		} else {
-			//save to temp file
+			// store the tile off heap, or in a temp file when too large
 			appendDataset(lazyfile,rotatedSlice, idx, context.getMonitor());
 		}
 
@@ -104,6 +106,7 @@ public class ImagesToStitchedConverter extends AbstractImageConversion {
 					.stitch(lazyfile, rows, columns, fieldOfView, translationsArray,
 							useFeatureAssociation, lazy.getShape(), context.getMonitor());
 
+			tiles.close();
 			stitched.setName("stitched");
 			final File outputFile = new File(outputPath);
 
@@ -140,20 +143,12 @@ public class ImagesToStitchedConverter extends AbstractImageConversion {
 					return lazyDataset;
 			}
 		}
+		final List<File> files = new ArrayList<>(Math.max(regexs.size(), 10));
 		for (String regex : regexs) {
-			final List<File> files = expand(regex);
-			for (File file : files) {
-				try {
-					ILazyDataset data = ServiceProvider.getService(ILoaderService.class)
-							.getData(file.getAbsolutePath(), context.getMonitor()).getLazyDataset(0);
-					if (data.getRank() == 2)
-						paths.add(file.getAbsolutePath());
-				} catch (Exception ignored) {
-					logger.debug("Exception ignored:"+ignored.getMessage());
-				}
-			}
+			final List<File> expanded = expand(regex);
+			if (expanded != null) files.addAll(expanded);
 		}
-		Collections.sort(paths, new SortNatural<String>(true));
+		paths.addAll(ImageStackProbe.findImages(FileSetExpander.sortNatural(files), 2, context.getMonitor()));
 		ImageStackLoader loader = new ImageStackLoader(paths,
 				context.getMonitor());
 		lazyDataset = loader.createLazyDataset("Folder Stack");
@@ -172,22 +167,6 @@ public class ImagesToStitchedConverter extends AbstractImageConversion {
 		return ((ConversionInfoBean) context.getUserObject()).getBits();
 	}
 
-	/**
-	 * Method that creates an hdf5 file in the temp directory of the OS
-	 * 
-	 * @param name
-	 * @return lazy writable dataset on disk
-	 */
-	private ILazyWriteableDataset createTempLazyFile(int[] newShape, String name) {
-		// save on a temp file
-		String nodepath = "/entry/data/";
-		String file = FileUtils.getTempFilePath(name);
-		File tmpFile = new File(file);
-		if (tmpFile.exists())
-			tmpFile.delete();
-		return HDF5Utils.createLazyDataset(file, nodepath, name, newShape, null, newShape, FloatDataset.class, null, false);
-	}
-
 	/**
 	 * Method that appends a dataset to an existing lazy writable dataset
 	 * 
@@ -204,6 +183,15 @@ public class ImagesToStitchedConverter extends AbstractImageConversion {
 		lazy.setSlice(monitor, data, ndSlice);
 	}
 
+	@Override
+	public void close(IConversionContext context) throws Exception {
+		try {
+			if (tiles != null) tiles.close();
+		} finally {
+			super.close(context);
+		}
+	}
+
 	/**
 	 * To be used as the user object to convey data about the stitched conversion.
 	 *
@@ -217,6 +205,7 @@ public class ImagesToStitchedConverter extends AbstractImageConversion {
 		private List<double[]> translations;
 		private IROI roi;
 		private double[][][] translArray;
+		private long tileMemory = TileStore.DEFAULT_MEMORY;
 
 		public int getRows() {
 			return rows;
@@ -266,6 +255,16 @@ public class ImagesToStitchedConverter extends AbstractImageConversion {
 		public double[][][] getTranslationsArray() {
 			return translArray;
 		}
+		/**
+		 * 
+		 * @return bytes of rotated images held off heap before they are spilled to a temporary file
+		 */
+		public long getTileMemory() {
+			return tileMemory;
+		}
+		public void setTileMemory(long tileMemory) {
+			this.tileMemory = Math.max(0, tileMemory);
+		}
 		@Override
 		public int hashCode() {
 			final int prime = 31;
@@ -280,6 +279,7 @@ public class ImagesToStitchedConverter extends AbstractImageConversion {
 			result = prime * result
 					+ ((roi == null) ? 0 : roi.hashCode());
 			result = prime * result + rows;
+			result = prime * result + (int) (tileMemory ^ (tileMemory >>> 32));
 			result = prime * result
 					+ ((translations == null) ? 0 : translations.hashCode());
 			return result;
@@ -310,6 +310,8 @@ public class ImagesToStitchedConverter extends AbstractImageConversion {
 				return false;
 			if (rows != other.rows)
 				return false;
+			if (tileMemory != other.tileMemory)
+				return false;
 			if (translations == null) {
 				if (other.translations != null)
 					return false;
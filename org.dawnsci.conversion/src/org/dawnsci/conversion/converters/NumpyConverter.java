@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2026 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.dawnsci.conversion.converters;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.dawnsci.analysis.api.conversion.IConversionContext;
+import org.eclipse.dawnsci.analysis.api.tree.Node;
+import org.eclipse.dawnsci.analysis.dataset.slicer.SliceFromSeriesMetadata;
+import org.eclipse.january.dataset.Dataset;
+import org.eclipse.january.dataset.DatasetUtils;
+import org.eclipse.january.dataset.IDataset;
+import org.eclipse.january.dataset.ILazyDataset;
+import org.eclipse.january.dataset.SliceND;
+
+/**
+ * Converts datasets to NumPy arrays. The output path is a .npy file when one
+ * dataset is converted, otherwise a .npz archive with an array per dataset named
+ * as the dataset path, prefixed by the name of its file. Files of the same name
+ * in different folders are told apart by their index, as in {@link CompareConverter}.
+ * A .npy file holds one array so only one input file may be converted to it.
+ *
+ * Each array is created with the shape of its dataset, or of the slices selected,
+ * before its first slice is written so slices are written at their place in the file
+ * in any order. Set the parallelism of the context to read and write slices on
+ * several threads.
+ */
+public class NumpyConverter extends AbstractConversion {
+
+	private final NumpyWriter writer;
+	private final Map<String, NumpyWriter.Entry> arrays = new HashMap<String, NumpyWriter.Entry>();
+	private final Map<File, String> prefixes = new HashMap<File, String>();
+	private final Set<String> names = new HashSet<String>();
+	private String current;
+	private String prefix;
+
+	public NumpyConverter(IConversionContext context) throws Exception {
+		super(context);
+		final File output = new File(context.getOutputPath());
+		writer = new NumpyWriter(output, !output.getName().toLowerCase().endsWith(".npy"));
+	}
+
+	@Override
+	protected void iterate(ILazyDataset lz, String nameFrag, IConversionContext context) throws Exception {
+		current = nameFrag;
+		prefix  = getPrefix(context.getSelectedConversionFile());
+		super.iterate(lz, nameFrag, context);
+	}
+
+	@Override
+	protected void convert(IDataset slice) throws Exception {
+		if (context.getMonitor()!=null && context.getMonitor().isCancelled()) {
+			throw new Exception(getClass().getSimpleName()+" is cancelled");
+		}
+
+		final Dataset data = DatasetUtils.convertToDataset(slice);
+
+		// Where the slice goes in the array, in the slices selected
+		final SliceFromSeriesMetadata meta = slice.getFirstMetadata(SliceFromSeriesMetadata.class);
+		final int[]   shape;
+		final SliceND place;
+		if (meta != null) {
+			shape = meta.getSubSampledShape();
+			place = new SliceND(shape, meta.getSliceInOutput());
+		} else {
+			shape = context.getSelectedShape()!=null ? context.getSelectedShape() : data.getShape();
+			place = context.getSelectedSlice()!=null ? new SliceND(shape, context.getSelectedSlice()) : new SliceND(shape);
+		}
+
+		final NumpyWriter.Entry array = getArray(getArrayName(slice), data, shape);
+		final long start = System.nanoTime();
+		array.write(place.getStart(), place.getShape(), data);
+		getStatistics().addWrite(System.nanoTime()-start, data.getNbytes());
+	}
+
+	private NumpyWriter.Entry getArray(String name, Dataset type, int[] shape) throws Exception {
+		synchronized (arrays) {
+			NumpyWriter.Entry array = arrays.get(name);
+			if (array == null) {
+				array = writer.create(name, type, shape);
+				arrays.put(name, array);
+			}
+			return array;
+		}
+	}
+
+	/**
+	 * 
+	 * @param file may be null
+	 * @return the prefix of the arrays of the file, the file name unless another file had it
+	 * @throws Exception if a second file is converted to a .npy file
+	 */
+	private String getPrefix(File file) throws Exception {
+		if (file == null) return null;
+		final File abs = file.getAbsoluteFile();
+		String ret = prefixes.get(abs);
+		if (ret != null) return ret;
+		if (!writer.isZip() && !prefixes.isEmpty()) {
+			throw new Exception("Only one file can be converted to a .npy file, use a .npz file for "+abs+" and "+prefixes.keySet().iterator().next());
+		}
+		ret = getFileNameNoExtension(abs);
+		if (!names.add(ret)) {
+			ret = ret + "_" + prefixes.size();
+			names.add(ret);
+		}
+		prefixes.put(abs, ret);
+		return ret;
+	}
+
+	private String getArrayName(IDataset slice) {
+		String name = context.getSelectedH5Path()!=null ? context.getSelectedH5Path()
+				    : current!=null ? current : slice.getName();
+		if (name.startsWith(Node.SEPARATOR)) name = name.substring(1);
+		if (prefix != null && writer.isZip()) name = prefix+Node.SEPARATOR+name;
+		return name+".npy";
+	}
+
+	@Override
+	protected boolean isBlockConvertSupported() {
+		// Each block is written to its place in the array of its dataset
+		return true;
+	}
+
+	@Override
+	protected boolean isConcurrentConvertSupported() {
+		// Each slice is written to its own place in the file
+		return true;
+	}
+
+	@Override
+	public void close(IConversionContext context) throws Exception {
+		try {
+			writer.close();
+		} finally {
+			super.close(context);
+		}
+	}
+}
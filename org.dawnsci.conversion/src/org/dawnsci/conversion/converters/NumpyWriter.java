@@ -0,0 +1,377 @@
+/*
+ * Copyright (c) 2026 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.dawnsci.conversion.converters;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.eclipse.january.dataset.Dataset;
+
+/**
+ * Writes arrays in the NumPy format, one array to a .npy file or several to a
+ * .npz archive. The header of each array is written from its shape when the
+ * array is created so that every slice has a fixed place in the file, slices
+ * are then copied straight into the file mapped in memory, from any thread.
+ *
+ * The arrays of a .npz archive are stored uncompressed, one after the other, in
+ * a zip64 archive. The CRC of each array is computed from the mapped file when
+ * the archive is closed, before the central directory is written.
+ *
+ * Data is little endian. Arrays of compound datasets have an extra last
+ * dimension for the elements of each item, strings are not supported.
+ *
+ * @see <a href="https://numpy.org/doc/stable/reference/generated/numpy.lib.format.html">numpy.lib.format</a>
+ */
+class NumpyWriter implements AutoCloseable {
+
+	/**
+	 * Size of each mapping, a multiple of every element size so that no element
+	 * is split between two mappings.
+	 */
+	private static final long   WINDOW = 1L << 30;
+	private static final byte[] MAGIC  = {(byte)0x93, 'N', 'U', 'M', 'P', 'Y'};
+	private static final int    ALIGN  = 64;
+	private static final long   ZIP64  = 0xFFFFFFFFL;
+	private static final int    ZIP_VERSION = 45;
+	private static final int    ZIP_UTF8    = 0x0800;
+	private static final int    ZIP_DATE    = 0x21; // 1980-01-01
+
+	private final FileChannel channel;
+	private final boolean     zip;
+	private final List<Entry> entries = new ArrayList<>();
+	private long              end;
+
+	/**
+	 *
+	 * @param file replaced if it exists
+	 * @param zip true to write a .npz archive, false for a .npy file holding one array
+	 * @throws IOException
+	 */
+	NumpyWriter(File file, boolean zip) throws IOException {
+		file.getAbsoluteFile().getParentFile().mkdirs();
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+				                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		this.zip = zip;
+	}
+
+	boolean isZip() {
+		return zip;
+	}
+
+	/**
+	 * Creates an array after the last one.
+	 * @param name of the array in a .npz archive, ignored for a .npy file
+	 * @param type any dataset of the type of the array
+	 * @param shape of the array
+	 * @return the array to write slices to
+	 * @throws IOException
+	 */
+	synchronized Entry create(String name, Dataset type, int[] shape) throws IOException {
+		if (!zip && !entries.isEmpty()) {
+			throw new IllegalArgumentException("A .npy file holds one array, write several datasets to a .npz file");
+		}
+		final int elementBytes = getElementBytes(type.getBuffer());
+		final int isize        = type.getElementsPerItem();
+		final long size        = (long)elementBytes*isize*getSize(shape);
+
+		final byte[] header = getHeader(getDescription(type.getBuffer()), isize, shape);
+		final byte[] local  = zip ? getLocalHeader(name, header.length+size) : new byte[0];
+
+		final long offset = end;
+		write(local, offset);
+		write(header, offset+local.length);
+		end = offset+local.length+header.length+size;
+		if (size > 0) write(new byte[1], end-1); // Slices not written read as zero
+
+		final Entry entry = new Entry(name, offset, header, offset+local.length+header.length, size, shape, elementBytes, isize);
+		entries.add(entry);
+		return entry;
+	}
+
+	private void write(byte[] bytes, long position) throws IOException {
+		final ByteBuffer buf = ByteBuffer.wrap(bytes);
+		while (buf.hasRemaining()) position += channel.write(buf, position);
+	}
+
+	/**
+	 * Writes the archive directory, if any, and closes the file.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		try {
+			for (Entry entry : entries) entry.force();
+			if (zip) writeDirectory();
+			channel.truncate(end);
+		} finally {
+			channel.close();
+		}
+	}
+
+	private static byte[] getHeader(String descr, int isize, int[] shape) {
+		final List<String> dims = new ArrayList<>(shape.length+1);
+		for (int s : shape) dims.add(String.valueOf(s));
+		if (isize > 1) dims.add(String.valueOf(isize));
+		final String tuple = dims.size() == 1 ? "("+dims.get(0)+",)" : "("+String.join(", ", dims)+")";
+		final StringBuilder dict = new StringBuilder("{'descr': '").append(descr)
+				.append("', 'fortran_order': False, 'shape': ").append(tuple).append(", }");
+
+		// Version 1.0 has a 2 byte header length, 2.0 a 4 byte one
+		int preamble = MAGIC.length+2+2;
+		int length   = pad(preamble+dict.length()+1);
+		if (length-preamble > 0xFFFF) {
+			preamble = MAGIC.length+2+4;
+			length   = pad(preamble+dict.length()+1);
+		}
+		while (preamble+dict.length()+1 < length) dict.append(' ');
+		dict.append('\n');
+
+		final ByteBuffer buf = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+		buf.put(MAGIC);
+		if (preamble == MAGIC.length+4) {
+			buf.put((byte)1).put((byte)0).putShort((short)(length-preamble));
+		} else {
+			buf.put((byte)2).put((byte)0).putInt(length-preamble);
+		}
+		buf.put(dict.toString().getBytes(StandardCharsets.ISO_8859_1));
+		return buf.array();
+	}
+
+	private static int pad(int length) {
+		return ((length+ALIGN-1)/ALIGN)*ALIGN;
+	}
+
+	private static String getDescription(Object buffer) {
+		if (buffer instanceof double[])  return "<f8";
+		if (buffer instanceof float[])   return "<f4";
+		if (buffer instanceof long[])    return "<i8";
+		if (buffer instanceof int[])     return "<i4";
+		if (buffer instanceof short[])   return "<i2";
+		if (buffer instanceof byte[])    return "|i1";
+		if (buffer instanceof boolean[]) return "|b1";
+		throw new IllegalArgumentException("Datasets of "+(buffer!=null ? buffer.getClass().getSimpleName() : "nothing")+" cannot be written to NumPy files");
+	}
+
+	private static int getElementBytes(Object buffer) {
+		if (buffer instanceof double[] || buffer instanceof long[]) return 8;
+		if (buffer instanceof float[]  || buffer instanceof int[])  return 4;
+		if (buffer instanceof short[]) return 2;
+		if (buffer instanceof byte[] || buffer instanceof boolean[]) return 1;
+		getDescription(buffer); // Throws
+		return 0;
+	}
+
+	private static byte[] getLocalHeader(String name, long size) {
+		final byte[] bname = name.getBytes(StandardCharsets.UTF_8);
+		final ByteBuffer buf = ByteBuffer.allocate(30+bname.length+20).order(ByteOrder.LITTLE_ENDIAN);
+		buf.putInt(0x04034b50);
+		buf.putShort((short)ZIP_VERSION);
+		buf.putShort((short)ZIP_UTF8);
+		buf.putShort((short)0); // Stored
+		buf.putShort((short)0).putShort((short)ZIP_DATE);
+		buf.putInt(0); // CRC, written when closed
+		buf.putInt((int)ZIP64).putInt((int)ZIP64);
+		buf.putShort((short)bname.length);
+		buf.putShort((short)20);
+		buf.put(bname);
+		buf.putShort((short)1).putShort((short)16).putLong(size).putLong(size);
+		return buf.array();
+	}
+
+	private void writeDirectory() throws IOException {
+		final long directory = end;
+		for (Entry entry : entries) {
+			final long crc = entry.getCRC();
+			final ByteBuffer patch = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt((int)crc);
+			write(patch.array(), entry.localOffset+14);
+
+			final byte[] bname = entry.name.getBytes(StandardCharsets.UTF_8);
+			final long   size  = entry.header.length+entry.dataBytes;
+			final ByteBuffer buf = ByteBuffer.allocate(46+bname.length+28).order(ByteOrder.LITTLE_ENDIAN);
+			buf.putInt(0x02014b50);
+			buf.putShort((short)ZIP_VERSION).putShort((short)ZIP_VERSION);
+			buf.putShort((short)ZIP_UTF8);
+			buf.putShort((short)0);
+			buf.putShort((short)0).putShort((short)ZIP_DATE);
+			buf.putInt((int)crc);
+			buf.putInt((int)ZIP64).putInt((int)ZIP64);
+			buf.putShort((short)bname.length);
+			buf.putShort((short)28);
+			buf.putShort((short)0).putShort((short)0).putShort((short)0);
+			buf.putInt(0);
+			buf.putInt((int)ZIP64);
+			buf.put(bname);
+			buf.putShort((short)1).putShort((short)24).putLong(size).putLong(size).putLong(entry.localOffset);
+			write(buf.array(), end);
+			end += buf.capacity();
+		}
+		final long directorySize = end-directory;
+		final long record        = end;
+
+		final ByteBuffer buf = ByteBuffer.allocate(56+20+22).order(ByteOrder.LITTLE_ENDIAN);
+		buf.putInt(0x06064b50).putLong(44);
+		buf.putShort((short)ZIP_VERSION).putShort((short)ZIP_VERSION);
+		buf.putInt(0).putInt(0);
+		buf.putLong(entries.size()).putLong(entries.size());
+		buf.putLong(directorySize).putLong(directory);
+
+		buf.putInt(0x07064b50).putInt(0).putLong(record).putInt(1);
+
+		buf.putInt(0x06054b50);
+		buf.putShort((short)0).putShort((short)0);
+		buf.putShort((short)0xFFFF).putShort((short)0xFFFF);
+		buf.putInt((int)ZIP64).putInt((int)ZIP64);
+		buf.putShort((short)0);
+		write(buf.array(), end);
+		end += buf.capacity();
+	}
+
+	/**
+	 * An array of the file.
+	 */
+	class Entry {
+
+		private final String name;
+		private final long   localOffset;
+		private final byte[] header;
+		private final long   dataOffset;
+		private final long   dataBytes;
+		private final int[]  shape;
+		private final int    elementBytes;
+		private final int    isize;
+		private final MappedByteBuffer[] windows;
+
+		private Entry(String name, long localOffset, byte[] header, long dataOffset, long dataBytes, int[] shape, int elementBytes, int isize) {
+			this.name         = name;
+			this.localOffset  = localOffset;
+			this.header       = header;
+			this.dataOffset   = dataOffset;
+			this.dataBytes    = dataBytes;
+			this.shape        = shape;
+			this.elementBytes = elementBytes;
+			this.isize        = isize;
+			this.windows      = new MappedByteBuffer[(int)((dataBytes+WINDOW-1)/WINDOW)];
+		}
+
+		int[] getShape() {
+			return shape.clone();
+		}
+
+		/**
+		 * Copies a slice into the array. The slice is in C order and of the type of the
+		 * array, its shape may be squeezed.
+		 * @param start of the slice in the array
+		 * @param count of the slice in each dimension of the array
+		 * @param data
+		 * @throws IOException
+		 */
+		void write(int[] start, int[] count, Dataset data) throws IOException {
+			if (start.length != shape.length) throw new IllegalArgumentException("Slice of rank "+start.length+" in array of rank "+shape.length);
+			if (data.getStrides() != null || data.getOffset() != 0) data = data.clone();
+			final Object buffer = data.getBuffer();
+			if (getElementBytes(buffer) != elementBytes || data.getElementsPerItem() != isize) {
+				throw new IllegalArgumentException("Slice of "+data.getClass().getSimpleName()+" does not match the type of "+name);
+			}
+			if (getSize(count) != data.getSize()) throw new IllegalArgumentException("Slice does not match its place in "+name);
+			if (data.getSize() == 0) return;
+
+			// The last dimensions covered whole are written as one run
+			final int rank = shape.length;
+			int d = rank-1;
+			while (d > 0 && count[d] == shape[d] && start[d] == 0) d--;
+			final long[] strides = new long[rank];
+			long stride = isize;
+			for (int i = rank-1; i >= 0; i--) {
+				strides[i] = stride;
+				stride *= shape[i];
+			}
+			final long run = rank == 0 ? isize : count[d]*strides[d];
+
+			final int[] pos = new int[Math.max(0, d)];
+			int src = 0;
+			while (true) {
+				long offset = rank == 0 ? 0 : start[d]*strides[d];
+				for (int i = 0; i < d; i++) offset += (start[i]+pos[i])*strides[i];
+				writeRun(offset, buffer, src, run);
+				src += (int)run;
+
+				int i = d-1;
+				for (; i >= 0; i--) {
+					if (++pos[i] < count[i]) break;
+					pos[i] = 0;
+				}
+				if (i < 0) return;
+			}
+		}
+
+		private void writeRun(long element, Object buffer, int src, long n) throws IOException {
+			while (n > 0) {
+				final long byteOffset = element*elementBytes;
+				final int  w          = (int)(byteOffset/WINDOW);
+				final int  within     = (int)(byteOffset%WINDOW);
+				final int  k          = (int)Math.min(n, (WINDOW-within)/elementBytes);
+
+				final ByteBuffer buf = getWindow(w).duplicate().order(ByteOrder.LITTLE_ENDIAN);
+				buf.position(within);
+				if (buffer instanceof double[] a) {
+					buf.asDoubleBuffer().put(a, src, k);
+				} else if (buffer instanceof float[] a) {
+					buf.asFloatBuffer().put(a, src, k);
+				} else if (buffer instanceof long[] a) {
+					buf.asLongBuffer().put(a, src, k);
+				} else if (buffer instanceof int[] a) {
+					buf.asIntBuffer().put(a, src, k);
+				} else if (buffer instanceof short[] a) {
+					buf.asShortBuffer().put(a, src, k);
+				} else if (buffer instanceof byte[] a) {
+					buf.put(a, src, k);
+				} else if (buffer instanceof boolean[] a) {
+					for (int i = 0; i < k; i++) buf.put(a[src+i] ? (byte)1 : (byte)0);
+				}
+				element += k;
+				src     += k;
+				n       -= k;
+			}
+		}
+
+		private synchronized MappedByteBuffer getWindow(int w) throws IOException {
+			if (windows[w] == null) {
+				final long position = w*WINDOW;
+				windows[w] = channel.map(MapMode.READ_WRITE, dataOffset+position, Math.min(WINDOW, dataBytes-position));
+			}
+			return windows[w];
+		}
+
+		private synchronized void force() {
+			for (MappedByteBuffer window : windows) if (window != null) window.force();
+		}
+
+		private long getCRC() throws IOException {
+			final CRC32 crc = new CRC32();
+			crc.update(header);
+			for (int w = 0; w < windows.length; w++) crc.update(getWindow(w).duplicate().clear());
+			return crc.getValue();
+		}
+	}
+
+	private static long getSize(int[] shape) {
+		long size = 1;
+		for (int s : shape) size *= s;
+		return size;
+	}
+}
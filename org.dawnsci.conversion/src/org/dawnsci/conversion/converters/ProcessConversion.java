@@ -134,8 +134,7 @@ public class ProcessConversion extends AbstractConversion {
 		if (lazyDataset != null) return lazyDataset;
 		
 
-		final IDataHolder dh = ServiceProvider.getService(ILoaderService.class)
-				.getData(path.getAbsolutePath(),null);
+		final IDataHolder dh = getDataHolder(path);
 		context.setSelectedH5Path(dsPath);
 		if (context.getMonitor()!=null) {
 			context.getMonitor().subTask("Process '"+path.getAbsolutePath());
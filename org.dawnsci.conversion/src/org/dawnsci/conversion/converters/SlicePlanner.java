@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2026 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.dawnsci.conversion.converters;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.dawnsci.analysis.dataset.slicer.SliceFromSeriesMetadata;
+import org.eclipse.dawnsci.analysis.dataset.slicer.SliceViewIterator;
+import org.eclipse.dawnsci.analysis.dataset.slicer.SliceVisitor;
+import org.eclipse.january.dataset.Dataset;
+import org.eclipse.january.dataset.DatasetUtils;
+import org.eclipse.january.dataset.ILazyDataset;
+import org.eclipse.january.dataset.Slice;
+import org.eclipse.january.dataset.SliceND;
+import org.eclipse.january.metadata.MetadataType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads the slices of a slice iterator in blocks, rather than one by one, when the
+ * chunking of the source means that neighbouring slices are stored in the same chunks
+ * or when a memory budget for block reads is given.
+ *
+ * Slicing across the chunks, for instance taking sinograms from tomography data which
+ * is chunked by projection, reads every chunk once per slice and thrashes the chunk
+ * cache. Consecutive slices along one dimension which fall in the same chunks are read
+ * with one getSlice(...) and split in memory, so each chunk is read once per block.
+ *
+ * With a budget, consecutive slices are read together up to the budget wherever
+ * the chunks fall, which saves the cost of a read per slice for small slices.
+ *
+ * The slices are visited in the order of the iterator and carry the metadata of their
+ * slice view, so the converter cannot tell the difference. A block never holds more
+ * than the memory budget, a slice larger than the budget is read on its own.
+ */
+class SlicePlanner {
+
+	private static final Logger logger = LoggerFactory.getLogger(SlicePlanner.class);
+
+	static final long DEFAULT_BLOCK_MEMORY = 64L<<20;
+
+	private final ILazyDataset lz;
+	private final int[]        chunks;
+	private final long         memoryBudget;
+	private final boolean      budgeted;
+
+	private final List<ILazyDataset> views = new ArrayList<ILazyDataset>();
+	private final List<SliceND>      slices = new ArrayList<SliceND>();
+	private int                      dim = -1;
+	private int                      maxViews;
+
+	/**
+	 *
+	 * @param lz the dataset the iterator slices
+	 * @param chunks chunk shape of lz in its file, null if not chunked or not known
+	 * @param memoryBudget maximum bytes read in one block, 0 to group only slices
+	 *        sharing chunks, up to a default budget
+	 */
+	SlicePlanner(ILazyDataset lz, int[] chunks, long memoryBudget) {
+		this.lz           = lz;
+		this.chunks       = chunks != null && chunks.length == lz.getRank() ? chunks : null;
+		this.memoryBudget = memoryBudget > 0 ? memoryBudget : DEFAULT_BLOCK_MEMORY;
+		this.budgeted     = memoryBudget > 0;
+	}
+
+	/**
+	 *
+	 * @return true if blocks of more than one slice might be read
+	 */
+	boolean isUseful() {
+		if (budgeted) return true;
+		if (chunks == null) return false;
+		for (int c : chunks) if (c > 1) return true;
+		return false;
+	}
+
+	void run(final SliceViewIterator it, final SliceVisitor visitor) throws Exception {
+
+		while (it.hasNext()) {
+			if (visitor.isCancelled()) return;
+			final ILazyDataset view = it.next();
+			final SliceFromSeriesMetadata meta = view.getFirstMetadata(SliceFromSeriesMetadata.class);
+			final Slice[]  input = meta != null ? meta.getSliceFromInput() : null;
+			final SliceND slice = input != null ? new SliceND(lz.getShape(), input) : null;
+			if (slice == null) {
+				flush(visitor);
+				visitor.visit(view.getSlice());
+				continue;
+			}
+			if (!canAdd(slice)) flush(visitor);
+			if (views.isEmpty()) {
+				maxViews = getMaxViews(view);
+			}
+			views.add(view);
+			slices.add(slice);
+		}
+		if (!visitor.isCancelled()) flush(visitor);
+	}
+
+	private int getMaxViews(ILazyDataset view) {
+		return getItemsInBudget(view.getSize()*(long)getItemBytes(lz), memoryBudget);
+	}
+
+	/**
+	 *
+	 * @param bytes size of one item
+	 * @param budget
+	 * @return how many items fit in budget, at least one
+	 */
+	static int getItemsInBudget(long bytes, long budget) {
+		return (int)Math.max(1L, Math.min(Integer.MAX_VALUE, budget/Math.max(1L, bytes)));
+	}
+
+	/**
+	 *
+	 * @param lz
+	 * @return estimated bytes taken by an item of lz once loaded
+	 */
+	static int getItemBytes(ILazyDataset lz) {
+		final Class<?> clazz = lz.getElementClass();
+		final int elementBytes;
+		if (clazz == Byte.class || clazz == Boolean.class) {
+			elementBytes = 1;
+		} else if (clazz == Short.class) {
+			elementBytes = 2;
+		} else if (clazz == Integer.class || clazz == Float.class) {
+			elementBytes = 4;
+		} else {
+			elementBytes = 8;
+		}
+		return elementBytes*Math.max(1, lz.getElementsPerItem());
+	}
+
+	/**
+	 * A slice can join the block if it follows the last slice along the dimension
+	 * of the block, with unit step, and may be grouped with the first slice of the block.
+	 */
+	private boolean canAdd(SliceND slice) {
+		if (views.isEmpty()) return true;
+		if (views.size() >= maxViews) return false;
+
+		final SliceND first = slices.get(0);
+		final SliceND last  = slices.get(slices.size()-1);
+		final int[] start = slice.getStart(), stop = slice.getStop(), step = slice.getStep();
+		final int[] lastStart = last.getStart(), lastStop = last.getStop();
+
+		int moved = -1;
+		for (int i = 0; i < start.length; i++) {
+			if (start[i] == lastStart[i] && stop[i] == lastStop[i]) continue;
+			if (moved > -1) return false;
+			moved = i;
+		}
+		if (moved < 0 || (dim > -1 && moved != dim)) return false;
+		if (step[moved] != 1 || start[moved] != lastStop[moved] || stop[moved] != start[moved]+1) return false;
+
+		if (!canGroup(moved, first.getStart()[moved], start[moved])) return false;
+		dim = moved;
+		return true;
+	}
+
+	/**
+	 * Override point for the grouping rule.
+	 * @param dim the slices move along
+	 * @param first index of the first slice of the block along dim
+	 * @param index of the slice to add along dim
+	 * @return true if the slice at index may be read with the slice at first,
+	 *         always with a budget and if they are in the same chunk otherwise
+	 */
+	protected boolean canGroup(int dim, int first, int index) {
+		if (budgeted) return true;
+		return chunks != null && chunks[dim] > 1 && first/chunks[dim] == index/chunks[dim];
+	}
+
+	private void flush(SliceVisitor visitor) throws Exception {
+		try {
+			if (views.isEmpty()) return;
+			if (views.size() == 1) {
+				visitor.visit(views.get(0).getSlice());
+				return;
+			}
+
+			final SliceND first = slices.get(0);
+			final int[] start = first.getStart().clone();
+			final int[] stop  = first.getStop().clone();
+			final int[] step  = first.getStep().clone();
+			stop[dim] = slices.get(slices.size()-1).getStop()[dim];
+
+			final Dataset block = DatasetUtils.convertToDataset(lz.getSlice(new SliceND(lz.getShape(), start, stop, step)));
+			logger.trace("Read {} slices along dimension {} in one block", views.size(), dim);
+
+			final int[] shape = block.getShape();
+			for (int i = 0; i < views.size(); i++) {
+				if (visitor.isCancelled()) return;
+				final int[] from = new int[shape.length];
+				final int[] to   = shape.clone();
+				from[dim] = i;
+				to[dim]   = i+1;
+				final Dataset slice = block.getSliceView(from, to, null);
+				copyMetadata(views.get(i), slice);
+				visitor.visit(slice);
+			}
+		} finally {
+			views.clear();
+			slices.clear();
+			dim = -1;
+		}
+	}
+
+	/**
+	 * The slice gets the name and metadata of its view, as it would have if the
+	 * view had been read on its own.
+	 */
+	private static void copyMetadata(ILazyDataset view, Dataset slice) throws Exception {
+		slice.setName(view.getName());
+		final List<MetadataType> metadata = view.getMetadata();
+		if (metadata == null) return;
+		for (MetadataType m : metadata) slice.addMetadata(m);
+	}
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2026 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.dawnsci.conversion.converters;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.dawnsci.conversion.ConversionStatistics;
+import org.eclipse.dawnsci.analysis.dataset.slicer.SliceViewIterator;
+import org.eclipse.january.dataset.DatasetUtils;
+import org.eclipse.january.dataset.IDataset;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads slices ahead of the converter on a background thread.
+ *
+ * The loaded slices are held in a bounded queue, the length of which is
+ * worked out from the memory budget and the size of the first slice. All
+ * slices of one iterator have the same shape so the first slice is a good
+ * measure for the rest. At least one slice is always read ahead.
+ */
+class SlicePrefetcher implements AutoCloseable {
+
+	private static final Logger logger = LoggerFactory.getLogger(SlicePrefetcher.class);
+
+	private final SliceViewIterator it;
+	private final long              memoryBudget;
+	private final ConversionStatistics statistics;
+
+	private BlockingQueue<Entry> queue;
+	private Thread               reader;
+	private volatile boolean     closed;
+	private boolean              finished;
+
+	/**
+	 *
+	 * @param it
+	 * @param memoryBudget
+	 * @param statistics told of the memory held by the queue, may be null
+	 */
+	SlicePrefetcher(SliceViewIterator it, long memoryBudget, ConversionStatistics statistics) {
+		this.it           = it;
+		this.memoryBudget = memoryBudget;
+		this.statistics   = statistics;
+	}
+
+	/**
+	 *
+	 * @return the next loaded slice or null if there are no more slices.
+	 * @throws Exception if reading the slice failed on the background thread
+	 */
+	IDataset next() throws Exception {
+
+		if (finished) return null;
+		if (queue == null) {
+			if (!it.hasNext()) {
+				finished = true;
+				return null;
+			}
+			// The first slice is read here to size the queue.
+			final IDataset first = it.next().getSlice();
+			queue = new ArrayBlockingQueue<>(getCapacity(first));
+			start();
+			return first;
+		}
+
+		final Entry entry = queue.take();
+		if (statistics != null) statistics.queued(-entry.bytes);
+		if (entry.error != null) {
+			finished = true;
+			throw entry.error;
+		}
+		if (entry.slice == null) finished = true;
+		return entry.slice;
+	}
+
+	private int getCapacity(IDataset slice) {
+		final long bytes = Math.max(1L, DatasetUtils.convertToDataset(slice).getNbytes());
+		final long capacity = memoryBudget / bytes;
+		logger.debug("Prefetching {} slices of {} bytes", Math.max(1, capacity), bytes);
+		return (int) Math.max(1L, Math.min(Integer.MAX_VALUE, capacity));
+	}
+
+	private void start() {
+		reader = new Thread(() -> {
+			Entry last;
+			try {
+				while (!closed && it.hasNext()) {
+					final Entry entry = new Entry(it.next().getSlice(), null);
+					if (statistics != null) statistics.queued(entry.bytes);
+					queue.put(entry);
+				}
+				last = new Entry(null, null);
+			} catch (InterruptedException ie) {
+				return;
+			} catch (Exception ne) {
+				last = new Entry(null, ne);
+			}
+			try {
+				if (!closed) queue.put(last);
+			} catch (InterruptedException ie) {
+				// Closed while waiting for the converter.
+			}
+		}, "Conversion prefetch");
+		reader.setDaemon(true);
+		reader.start();
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		if (reader != null) reader.interrupt();
+		if (queue != null) {
+			Entry entry;
+			while ((entry = queue.poll()) != null) {
+				if (statistics != null) statistics.queued(-entry.bytes);
+			}
+		}
+	}
+
+	private static final class Entry {
+		private final IDataset  slice;
+		private final Exception error;
+		private final long      bytes;
+		private Entry(IDataset slice, Exception error) {
+			this.slice = slice;
+			this.error = error;
+			this.bytes = slice != null ? DatasetUtils.convertToDataset(slice).getNbytes() : 0;
+		}
+	}
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2026 Diamond Light Source Ltd.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.dawnsci.conversion.converters;
+
+import java.io.File;
+
+import org.eclipse.dawnsci.analysis.api.tree.DataNode;
+import org.eclipse.dawnsci.analysis.api.tree.Node;
+import org.eclipse.dawnsci.nexus.INexusFileFactory;
+import org.eclipse.dawnsci.nexus.NexusFile;
+import org.eclipse.january.dataset.DatasetUtils;
+import org.eclipse.january.dataset.IDynamicDataset;
+import org.eclipse.january.dataset.ILazyDataset;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.ac.diamond.osgi.services.ServiceProvider;
+
+/**
+ * Follows a dataset of a NeXus file which is still being written, for instance
+ * by a detector during a scan. The file is opened for SWMR reading each time the
+ * dataset is refreshed so that the shape read is the one last flushed by the writer.
+ *
+ * The scan is over when the end marker, a dataset of the file, is found and is not
+ * zero, or when the dataset has not grown for the idle timeout.
+ */
+class SourceFollower {
+
+	private static final Logger logger = LoggerFactory.getLogger(SourceFollower.class);
+
+	/**
+	 * Time between two refreshes of the dataset in ms.
+	 */
+	static final long POLL_INTERVAL = 250;
+
+	private final File   file;
+	private final String path;
+	private final String marker;
+	private final long   timeout;
+
+	private int[] lastShape;
+	private long  lastGrown;
+
+	/**
+	 *
+	 * @param file being written
+	 * @param path of the dataset followed
+	 * @param marker path of the end of scan marker, may be null to stop on the timeout only
+	 * @param timeout in ms without the dataset growing after which the scan is considered over
+	 */
+	SourceFollower(File file, String path, String marker, long timeout) {
+		this.file    = file;
+		this.path    = absolute(path);
+		this.marker  = marker!=null && !marker.isEmpty() ? absolute(marker) : null;
+		this.timeout = timeout;
+		this.lastGrown = System.currentTimeMillis();
+	}
+
+	private static String absolute(String path) {
+		return path.startsWith(Node.SEPARATOR) ? path : Node.SEPARATOR+path;
+	}
+
+	/**
+	 * Reads the current shape of the dataset.
+	 * @param lz dataset last read, refreshed in place if it supports it
+	 * @return the dataset with the shape last written
+	 * @throws Exception
+	 */
+	ILazyDataset refresh(ILazyDataset lz) throws Exception {
+		ILazyDataset current = lz;
+		if (lz instanceof IDynamicDataset dynamic) {
+			dynamic.refreshShape();
+		} else {
+			try (NexusFile nfile = open()) {
+				final DataNode node = nfile.getData(path);
+				if (node != null && node.getDataset() != null) current = node.getDataset();
+			}
+		}
+		if (lastShape == null || current.getSize() > size(lastShape)) {
+			lastShape = current.getShape();
+			lastGrown = System.currentTimeMillis();
+		}
+		return current;
+	}
+
+	/**
+	 *
+	 * @return true if the end marker is set or the dataset has not grown for the timeout
+	 */
+	boolean isEnded() {
+		if (System.currentTimeMillis()-lastGrown > timeout) return true;
+		if (marker == null) return false;
+		try (NexusFile nfile = open()) {
+			final DataNode node = nfile.getData(marker);
+			if (node == null || node.getDataset() == null) return false;
+			return DatasetUtils.sliceAndConvertLazyDataset(node.getDataset()).getElementDoubleAbs(0) != 0;
+		} catch (Exception ne) {
+			logger.trace("End marker {} not readable in {}", marker, file, ne);
+			return false;
+		}
+	}
+
+	private NexusFile open() throws Exception {
+		final INexusFileFactory factory = ServiceProvider.getService(INexusFileFactory.class);
+		try {
+			final NexusFile nfile = factory.newNexusFile(file.getAbsolutePath(), true);
+			nfile.openToRead();
+			return nfile;
+		} catch (Exception ne) {
+			// Not written for SWMR, the shape is still refreshed when the writer closes it
+			final NexusFile nfile = factory.newNexusFile(file.getAbsolutePath());
+			nfile.openToRead();
+			return nfile;
+		}
+	}
+
+	private static long size(int[] shape) {
+		long size = 1;
+		for (int s : shape) size *= s;
+		return size;
+	}
+}
@@ -3,6 +3,7 @@ package org.dawnsci.conversion.schemes;
 import java.util.Arrays;
 
 import org.eclipse.dawnsci.analysis.api.conversion.IConversion;
+import org.eclipse.dawnsci.analysis.api.conversion.IConversionContext;
 import org.eclipse.dawnsci.analysis.api.conversion.IConversionScheme;
 
 public abstract class AbstractConversionScheme implements IConversionScheme {
@@ -74,6 +75,28 @@ public abstract class AbstractConversionScheme implements IConversionScheme {
 		return nexusSourceAllowed;
 	}
 	
+	/**
+	 * Override to stop a sharded conversion from being split, when the outputs of
+	 * its shards could not be merged into the output of one conversion.
+	 * 
+	 * @param context of the conversion
+	 * @return true if the conversion may be split into shards, by file or by slice
+	 */
+	public boolean isShardable(IConversionContext context) {
+		return true;
+	}
+
+	/**
+	 * Override to let a conversion of one file be split into shards by slice
+	 * range. Only converters which place or name what they write by the position
+	 * of the slice, rather than by counting the slices, may be split this way.
+	 * 
+	 * @return true if a conversion of one file may be split by slice range, false by default
+	 */
+	public boolean isSliceShardable() {
+		return false;
+	}
+
 	public String getDescription() {
 		final StringBuilder buf = new StringBuilder();
 		buf.append("Conversion Name:\t");
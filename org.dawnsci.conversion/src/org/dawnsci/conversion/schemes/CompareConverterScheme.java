@@ -1,9 +1,23 @@
 package org.dawnsci.conversion.schemes;
 
 import org.dawnsci.conversion.converters.CompareConverter;
+import org.dawnsci.conversion.converters.CompareConverter.ConversionInfoBean;
+import org.eclipse.dawnsci.analysis.api.conversion.IConversionContext;
 
 public class CompareConverterScheme extends AbstractConversionScheme {
 	public CompareConverterScheme() {
 		super(CompareConverter.class, " compare data",    true,  false, 0,1,2,3,4,5);
 	}
+
+	@Override
+	public boolean isShardable(IConversionContext context) {
+		// Linking the sources is quick, each shard would only link its own files
+		return !(context.getUserObject() instanceof ConversionInfoBean bean && bean.isLinkSources());
+	}
+
+	@Override
+	public boolean isSliceShardable() {
+		// Each slice is appended to the stack of its dataset in order
+		return true;
+	}
 }
@@ -1,9 +1,17 @@
 package org.dawnsci.conversion.schemes;
 
 import org.dawnsci.conversion.converters.Convert1DtoND;
+import org.dawnsci.conversion.converters.Convert1DtoND.Convert1DInfoBean;
+import org.eclipse.dawnsci.analysis.api.conversion.IConversionContext;
 
 public class Convert1DtoNDScheme extends AbstractConversionScheme {
 	public Convert1DtoNDScheme() {
 		super(Convert1DtoND.class, " nexus from 1D data",   true, false,  1);
 	}
+
+	@Override
+	public boolean isShardable(IConversionContext context) {
+		// A grid of spectra needs every file of the grid in one conversion
+		return !(context.getUserObject() instanceof Convert1DInfoBean bean && bean.fastAxis > 0);
+	}
 }
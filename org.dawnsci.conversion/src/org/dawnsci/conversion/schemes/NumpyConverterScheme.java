@@ -0,0 +1,9 @@
+package org.dawnsci.conversion.schemes;
+
+import org.dawnsci.conversion.converters.NumpyConverter;
+
+public class NumpyConverterScheme extends AbstractConversionScheme {
+	public NumpyConverterScheme() {
+		super(NumpyConverter.class, " numpy arrays from data", false, false, 1, 2, 3);
+	}
+}